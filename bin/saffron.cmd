@@ -1,3 +1,3 @@
 @echo off
 
-java -jar "%~dp0\saffron.jar" "%~1"
+java -jar "%~dp0\saffron.jar" %*
@@ -18,7 +18,7 @@ if (-not (Test-Path $installDir)) {
 
 # URLs for downloads
 $saffronUrl = "https://github.com/senthilvsh/saffron/releases/latest/download/saffron.zip"
-$jreUrl = "https://github.com/adoptium/temurin17-binaries/releases/download/jdk-17.0.8%2B7/OpenJDK17U-jre_x64_windows_hotspot_17.0.8_7.zip"
+$jreUrl = "https://github.com/adoptium/temurin21-binaries/releases/download/jdk-21.0.1%2B12/OpenJDK21U-jre_x64_windows_hotspot_21.0.1_12.zip"
 
 # Function to check if bundled JRE exists and works
 function Test-BundledJre {
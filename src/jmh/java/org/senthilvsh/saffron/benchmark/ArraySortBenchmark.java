@@ -0,0 +1,48 @@
+package org.senthilvsh.saffron.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.senthilvsh.saffron.runtime.Array;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorts 10 million random numbers as a Saffron array and as a {@code double[]}. An array of numbers keeps
+ * them unboxed, so sorting it should take about as long as {@link Arrays#sort(double[])}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArraySortBenchmark {
+    private static final int SIZE = 10_000_000;
+
+    private double[] numbers;
+    private double[] copy;
+
+    @Setup
+    public void setup() {
+        numbers = new SplittableRandom(42).doubles(SIZE).toArray();
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        copy = numbers.clone();
+    }
+
+    @Benchmark
+    public Array array() throws Exception {
+        Array array = new Array(copy);
+        array.sort();
+        return array;
+    }
+
+    @Benchmark
+    public double[] javaArray() {
+        Arrays.sort(copy);
+        return copy;
+    }
+}
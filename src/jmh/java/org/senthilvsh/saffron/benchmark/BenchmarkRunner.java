@@ -0,0 +1,72 @@
+package org.senthilvsh.saffron.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Entry point of the benchmarks JAR. Takes the same options as the JMH command line, and by default
+ * also measures allocation with the GC profiler and saves the results as JSON in
+ * target/jmh/&lt;commit&gt;.json, so that results can be compared across commits:
+ * <pre>
+ * mvn -B -Pbenchmarks package
+ * java -jar target/benchmarks.jar [JMH options] [benchmark regex]
+ * </pre>
+ * Passing {@code -rf} or {@code -prof} replaces the default result format or profiler.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+                || commandLine.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (commandLine.getResultFormat().hasValue()) {
+            new Runner(options.build()).run();
+            return;
+        }
+        Path result = Path.of("target", "jmh", revision() + ".json");
+        Files.createDirectories(result.getParent());
+        options.resultFormat(ResultFormatType.JSON).result(result.toString());
+        new Runner(options.build()).run();
+        System.out.println("Results saved to " + result);
+    }
+
+    /**
+     * Returns the short hash of the commit being benchmarked, or "unknown" outside a Git working tree.
+     */
+    private static String revision() {
+        try {
+            Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD")
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            String hash;
+            try (InputStream in = git.getInputStream()) {
+                hash = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+            }
+            if (git.waitFor() == 0 && !hash.isEmpty()) {
+                return hash;
+            }
+        } catch (IOException e) {
+            // Git is not installed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "unknown";
+    }
+}
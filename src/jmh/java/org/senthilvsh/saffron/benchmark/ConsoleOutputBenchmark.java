@@ -0,0 +1,55 @@
+package org.senthilvsh.saffron.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.senthilvsh.saffron.stdlib.console.ConsoleOutput;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes 10 million lines to /dev/null, the way writeln did before (through a PrintStream that flushes
+ * every line, like System.out) and through the buffered {@link ConsoleOutput}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConsoleOutputBenchmark {
+    private static final int LINES = 10_000_000;
+    private static final String LINE = "The quick brown fox jumps over the lazy dog";
+
+    private FileOutputStream devNull;
+
+    @Setup
+    public void setup() throws IOException {
+        devNull = new FileOutputStream("/dev/null");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        devNull.close();
+    }
+
+    @Benchmark
+    public void printStream() {
+        PrintStream out = new PrintStream(devNull, true, StandardCharsets.UTF_8);
+        for (int i = 0; i < LINES; i++) {
+            out.println(LINE);
+        }
+        out.flush();
+    }
+
+    @Benchmark
+    public void consoleOutput() {
+        ConsoleOutput out = new ConsoleOutput(devNull, StandardCharsets.UTF_8, 1 << 16, 100, false);
+        for (int i = 0; i < LINES; i++) {
+            out.writeLine(LINE);
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,75 @@
+package org.senthilvsh.saffron.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.senthilvsh.saffron.embed.Execution;
+import org.senthilvsh.saffron.embed.Script;
+import org.senthilvsh.saffron.runtime.SaffronException;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one compiled {@link Script} from one thread and from as many threads as there are processors,
+ * each with an {@link Execution} of its own. The script is shared and nothing else is, so the
+ * throughput of the second benchmark should be close to that of the first times the number of
+ * processors. To see the scaling in between, run the first benchmark with a higher thread count, for
+ * example {@code java -jar target/benchmarks.jar EmbeddingBenchmark.singleThread -t 4}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmbeddingBenchmark {
+    private static final String PRICING = """
+            fun discount(total, count) {
+                if (count > 10) {
+                    return total * 0.1;
+                }
+                return 0;
+            }
+
+            var total = 0;
+            var i = 0;
+            while (i < quantity) {
+                total = total + price;
+                i = i + 1;
+            }
+            total = total - discount(total, quantity);
+            var summary = customer + ": " + total;
+            """;
+
+    @State(Scope.Benchmark)
+    public static class Compiled {
+        Script script;
+
+        @Setup
+        public void setup() throws SaffronException {
+            script = Script.compile(PRICING);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PerThread {
+        Execution execution;
+        Map<String, Object> inputs;
+
+        @Setup
+        public void setup(Compiled compiled) {
+            execution = compiled.script.newExecution();
+            inputs = Map.of("price", 12.5, "quantity", 20, "customer", "ACME-" + Thread.currentThread().getId());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object singleThread(PerThread state) throws SaffronException {
+        return state.execution.run(state.inputs).get("summary");
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object allThreads(PerThread state) throws SaffronException {
+        return state.execution.run(state.inputs).get("summary");
+    }
+}
@@ -0,0 +1,126 @@
+package org.senthilvsh.saffron.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.senthilvsh.saffron.ast.Program;
+import org.senthilvsh.saffron.closure.ClosureInterpreter;
+import org.senthilvsh.saffron.optimizer.Optimizer;
+import org.senthilvsh.saffron.parser.Parser;
+import org.senthilvsh.saffron.resolver.Resolver;
+import org.senthilvsh.saffron.runtime.Interpreter;
+import org.senthilvsh.saffron.vm.Compiler;
+import org.senthilvsh.saffron.vm.VirtualMachine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs typical workloads on each execution engine: recursive calls, nested loops, building a long
+ * string and calling native functions. Programs are prepared the same way as by the command line,
+ * and only their execution is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterpreterBenchmark {
+    private static final String FIB = """
+            fun fib(n) {
+                if (n < 2) {
+                    return n;
+                }
+                return fib(n - 1) + fib(n - 2);
+            }
+            var result = fib(22);
+            """;
+
+    private static final String NESTED_LOOPS = """
+            var total = 0;
+            var i = 0;
+            while (i < 300) {
+                var j = 0;
+                while (j < 300) {
+                    if (j < i) {
+                        total = total + j;
+                    } else {
+                        total = total - 1;
+                    }
+                    j = j + 1;
+                }
+                i = i + 1;
+            }
+            """;
+
+    private static final String STRING_BUILDING = """
+            var s = "";
+            var i = 0;
+            while (i < 20000) {
+                s = s + "item " + i + ", ";
+                i = i + 1;
+            }
+            var length = str_length(s);
+            """;
+
+    private static final String NATIVE_CALLS = """
+            var count = 0;
+            var i = 0;
+            while (i < 20000) {
+                var s = str_trim("  item " + i + "  ");
+                var matches = str_contains(s, "7") || str_endswith(s, "1.0");
+                if (matches) {
+                    count = count + str_length(str_substr(s, 0, 3)) + to_num("1.5");
+                }
+                i = i + 1;
+            }
+            """;
+
+    @Param({"interpreter", "closure", "vm"})
+    public String engine;
+
+    private Program fib;
+    private Program nestedLoops;
+    private Program stringBuilding;
+    private Program nativeCalls;
+
+    @Setup
+    public void setup() throws Exception {
+        fib = load(FIB);
+        nestedLoops = load(NESTED_LOOPS);
+        stringBuilding = load(STRING_BUILDING);
+        nativeCalls = load(NATIVE_CALLS);
+    }
+
+    @Benchmark
+    public void fib() throws Exception {
+        execute(fib);
+    }
+
+    @Benchmark
+    public void nestedLoops() throws Exception {
+        execute(nestedLoops);
+    }
+
+    @Benchmark
+    public void stringBuilding() throws Exception {
+        execute(stringBuilding);
+    }
+
+    @Benchmark
+    public void nativeCalls() throws Exception {
+        execute(nativeCalls);
+    }
+
+    private static Program load(String source) throws Exception {
+        Program program = new Optimizer().optimize(new Parser(source).parse());
+        new Resolver().resolve(program);
+        return program;
+    }
+
+    private void execute(Program program) throws Exception {
+        switch (engine) {
+            case "closure" -> new ClosureInterpreter().execute(program);
+            case "vm" -> new VirtualMachine().execute(new Compiler().compile(program));
+            default -> new Interpreter().execute(program);
+        }
+    }
+}
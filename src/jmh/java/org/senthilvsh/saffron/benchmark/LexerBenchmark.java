@@ -0,0 +1,61 @@
+package org.senthilvsh.saffron.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.senthilvsh.saffron.parser.Lexer;
+import org.senthilvsh.saffron.parser.Token;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexes synthetic sources of increasing size. The time per operation should grow linearly with the
+ * size of the input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LexerBenchmark {
+    private static final String SNIPPET = """
+            /* Computes the sum of all even numbers */
+            fun sum_even(limit) {
+                var i = 0;
+                var total = 0;
+                while (i <= limit) {
+                    if (i % 2 == 0 && true) {
+                        total = total + i; // accumulate
+                    }
+                    i = i + 1.5;
+                }
+                return total;
+            }
+            writeln("Sum: " + sum_even(100));
+            """;
+
+    @Param({"1024", "102400", "10485760"})
+    public int size;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder(size + SNIPPET.length());
+        while (sb.length() < size) {
+            sb.append(SNIPPET);
+        }
+        source = sb.toString();
+    }
+
+    @Benchmark
+    public int lex() {
+        Lexer lexer = new Lexer(source);
+        int count = 0;
+        Token token = lexer.next();
+        while (token != null) {
+            count++;
+            token = lexer.next();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,54 @@
+package org.senthilvsh.saffron.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.senthilvsh.saffron.ast.Program;
+import org.senthilvsh.saffron.parser.Parser;
+import org.senthilvsh.saffron.resolver.Resolver;
+import org.senthilvsh.saffron.runtime.Interpreter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the same loop with an increasing number of global variables in scope. Entering the loop body
+ * and the if-block inside it should cost the same regardless of how many globals exist.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoopScopeBenchmark {
+    private static final String LOOP = """
+            var i = 0;
+            var total = 0;
+            while (i < 100000) {
+                var square = i * i;
+                if (square % 2 == 0) {
+                    total = total + 1;
+                }
+                i = i + 1;
+            }
+            """;
+
+    @Param({"0", "100", "10000"})
+    public int globals;
+
+    private Program program;
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < globals; i++) {
+            sb.append("var global_").append(i).append(" = ").append(i).append(";\n");
+        }
+        sb.append(LOOP);
+        program = new Parser(sb.toString()).parse();
+        new Resolver().resolve(program);
+    }
+
+    @Benchmark
+    public void loop() throws Exception {
+        new Interpreter().execute(program);
+    }
+}
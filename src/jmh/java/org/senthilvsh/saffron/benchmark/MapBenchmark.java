@@ -0,0 +1,117 @@
+package org.senthilvsh.saffron.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.senthilvsh.saffron.runtime.Dictionary;
+
+import java.util.HashMap;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts 10 million number or string keys, in random order, into a Saffron map, and looks all of them
+ * up again, next to the same work on a {@link HashMap}. The insert benchmarks also print the memory the
+ * map holds on to per entry after each iteration. The keys and values exist before the map does, so only
+ * the memory of the map itself is counted.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class MapBenchmark {
+    private static final int SIZE = 10_000_000;
+
+    @Param({"number", "string"})
+    public String keyType;
+
+    private Object[] keys;
+    private Object[] values;
+    private Dictionary filled;
+    private HashMap<Object, Object> filledHashMap;
+
+    @State(Scope.Thread)
+    public static class Footprint {
+        private long before;
+        private Object map;
+
+        @Setup(Level.Invocation)
+        public void before() {
+            map = null;
+            before = usedMemory();
+        }
+
+        @TearDown(Level.Invocation)
+        public void after() {
+            System.out.printf("%.1f bytes per entry%n", (double) (usedMemory() - before) / SIZE);
+            map = null;
+        }
+
+        private static long usedMemory() {
+            Runtime runtime = Runtime.getRuntime();
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+            }
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        keys = new Object[SIZE];
+        values = new Object[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            keys[i] = "number".equals(keyType) ? (Object) (i * 7.0) : "key" + i;
+            values[i] = (double) i;
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = SIZE - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Object key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+        }
+        filled = new Dictionary();
+        filledHashMap = new HashMap<>();
+        for (int i = 0; i < SIZE; i++) {
+            filled.put(keys[i], values[i]);
+            filledHashMap.put(keys[i], values[i]);
+        }
+    }
+
+    @Benchmark
+    public void insert(Footprint footprint) throws Exception {
+        Dictionary map = new Dictionary();
+        for (int i = 0; i < SIZE; i++) {
+            map.put(keys[i], values[i]);
+        }
+        footprint.map = map;
+    }
+
+    @Benchmark
+    public void insertHashMap(Footprint footprint) {
+        HashMap<Object, Object> map = new HashMap<>();
+        for (int i = 0; i < SIZE; i++) {
+            map.put(keys[i], values[i]);
+        }
+        footprint.map = map;
+    }
+
+    @Benchmark
+    public double lookup() throws Exception {
+        double total = 0;
+        for (int i = 0; i < SIZE; i++) {
+            total += (Double) filled.get(keys[i]);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double lookupHashMap() {
+        double total = 0;
+        for (int i = 0; i < SIZE; i++) {
+            total += (Double) filledHashMap.get(keys[i]);
+        }
+        return total;
+    }
+}
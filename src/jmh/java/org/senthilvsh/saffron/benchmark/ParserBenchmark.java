@@ -0,0 +1,54 @@
+package org.senthilvsh.saffron.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.senthilvsh.saffron.ast.Program;
+import org.senthilvsh.saffron.parser.Parser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses expressions of increasing depth, both nested in parentheses and as long chains of binary
+ * operators. The time per operation should grow linearly with the depth.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({"10", "100", "1000"})
+    public int depth;
+
+    private String nested;
+    private String chained;
+
+    @Setup
+    public void setup() {
+        // var x = ((((1 + 1) * 2) - 3) ...);
+        StringBuilder sb = new StringBuilder("var x = ");
+        sb.append("(".repeat(depth)).append("1");
+        String[] operators = {" + ", " * ", " - ", " / "};
+        for (int i = 0; i < depth; i++) {
+            sb.append(operators[i % operators.length]).append(i).append(")");
+        }
+        nested = sb.append(";\n").toString();
+
+        // var y = 0 + 1 * 2 - 3 ... < 10 && true;
+        sb = new StringBuilder("var y = 0");
+        for (int i = 0; i < depth; i++) {
+            sb.append(operators[i % operators.length]).append(i + 1);
+        }
+        chained = sb.append(" < 10 && true;\n").toString();
+    }
+
+    @Benchmark
+    public Program nested() throws Exception {
+        return new Parser(nested).parse();
+    }
+
+    @Benchmark
+    public Program chained() throws Exception {
+        return new Parser(chained).parse();
+    }
+}
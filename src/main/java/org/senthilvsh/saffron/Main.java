@@ -1,11 +1,25 @@
 package org.senthilvsh.saffron;
 
+import org.senthilvsh.saffron.aot.ScriptJar;
 import org.senthilvsh.saffron.ast.Program;
+import org.senthilvsh.saffron.cache.ProgramCache;
+import org.senthilvsh.saffron.closure.ClosureInterpreter;
+import org.senthilvsh.saffron.daemon.Daemon;
+import org.senthilvsh.saffron.module.ModuleLoader;
+import org.senthilvsh.saffron.optimizer.Optimizer;
 import org.senthilvsh.saffron.runtime.SaffronException;
-import org.senthilvsh.saffron.parser.Parser;
+import org.senthilvsh.saffron.profiler.Profiler;
+import org.senthilvsh.saffron.resolver.Resolver;
+import org.senthilvsh.saffron.runtime.CallStack;
 import org.senthilvsh.saffron.runtime.Interpreter;
+import org.senthilvsh.saffron.stdlib.Environment;
+import org.senthilvsh.saffron.stdlib.console.ConsoleOutput;
+import org.senthilvsh.saffron.vm.Compiler;
+import org.senthilvsh.saffron.vm.VirtualMachine;
 
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
@@ -15,7 +29,7 @@ import java.util.Properties;
 public class Main {
     public static void main(String[] args) {
         if (args.length < 1 || args[0].trim().isEmpty()) {
-            System.out.println("Usage: saffron <input>");
+            printUsage();
             return;
         }
 
@@ -35,36 +49,249 @@ public class Main {
             return;
         }
 
-        String input = args[0];
+        ProgramCache cache = ProgramCache.getDefault(version);
 
-        String source;
+        if (args[0].trim().equals("--daemon")) {
+            Daemon.serve(args.length > 1 ? Path.of(args[1]) : Daemon.defaultSocket(), cache);
+            return;
+        }
+
+        if (args[0].trim().equals("compile")) {
+            compile(Arrays.copyOfRange(args, 1, args.length), cache);
+            return;
+        }
+
+        String engine = "interpreter";
+        boolean profile = false;
+        String profileOutput = null;
+        int inputIdx = 0;
+        while (inputIdx < args.length - 1 && args[inputIdx].startsWith("--")) {
+            String option = args[inputIdx];
+            if (option.startsWith("--engine=")) {
+                engine = option.substring("--engine=".length());
+            } else if (option.equals("--no-cache")) {
+                cache = null;
+            } else if (option.equals("--profile")) {
+                profile = true;
+            } else if (option.startsWith("--profile=")) {
+                profile = true;
+                profileOutput = option.substring("--profile=".length());
+            } else {
+                System.err.printf("Unknown option '%s'%n", option);
+                return;
+            }
+            inputIdx++;
+        }
+        if (!engine.equals("interpreter") && !engine.equals("vm") && !engine.equals("closure")) {
+            System.err.printf("Unknown engine '%s'%n", engine);
+            return;
+        }
+        if (profile && !engine.equals("interpreter")) {
+            System.err.printf("Profiling is not supported by engine '%s'%n", engine);
+            return;
+        }
+
+        String input = args[inputIdx];
+
+        if (engine.equals("interpreter") && !profile) {
+            exit(run(input, cache, Environment.standard()));
+            return;
+        }
+
+        ModuleLoader modules = new ModuleLoader(cache);
+        Program program = load(input, modules, Environment.standard());
+        if (program == null) {
+            exit(1);
+            return;
+        }
+
+        if (profile) {
+            exit(profile(program, input, modules, profileOutput != null ? profileOutput : withExtension(input, ".folded")));
+            return;
+        }
+
+        int status = 0;
+        try {
+            if (engine.equals("vm")) {
+                new VirtualMachine().execute(new Compiler().compile(program));
+            } else {
+                new ClosureInterpreter().execute(program);
+            }
+        } catch (SaffronException e) {
+            printError(e, input, modules, Environment.standard());
+            status = 1;
+        } finally {
+            ConsoleOutput.standard().flush();
+        }
+        exit(status);
+    }
+
+    /**
+     * Runs a program in the interpreter, in the given environment. Returns the exit status of the
+     * program: 0 if it ran to the end, or 1 if it could not be loaded or raised an error, which has
+     * been reported to the environment.
+     */
+    public static int run(String input, ProgramCache cache, Environment environment) {
+        ModuleLoader modules = new ModuleLoader(cache);
+        Program program = load(input, modules, environment);
+        if (program == null) {
+            return 1;
+        }
         try {
-            source = Files.readString(Path.of(input));
+            new Interpreter(environment).execute(program);
+            return 0;
+        } catch (SaffronException e) {
+            printError(e, input, modules, environment);
+            return 1;
+        } finally {
+            environment.getOutput().flush();
+        }
+    }
+
+    private static void exit(int status) {
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Runs a program in the interpreter while sampling its call stack, then writes the samples to the
+     * output file in the collapsed stack format and prints a summary to the standard error. Returns
+     * the exit status of the program, as {@link #run} does.
+     */
+    private static int profile(Program program, String input, ModuleLoader modules, String output) {
+        CallStack callStack = new CallStack();
+        Profiler profiler = new Profiler(callStack, readSource(Path.of(input)), Profiler.DEFAULT_INTERVAL_MICROS);
+        profiler.start();
+        int status = 0;
+        try {
+            new Interpreter(callStack).execute(program);
+        } catch (SaffronException e) {
+            printError(e, input, modules, Environment.standard());
+            status = 1;
+        } finally {
+            profiler.stop();
+            ConsoleOutput.standard().flush();
+        }
+
+        profiler.printSummary(System.err, 10);
+        try {
+            profiler.writeCollapsedStacks(Path.of(output));
+            System.err.printf("Profile written to '%s'%n", output);
         } catch (IOException e) {
-            System.err.printf("Unable to read input file '%s'%n", input);
+            System.err.printf("Unable to write output file '%s'%n", output);
+        }
+        return status;
+    }
+
+    /**
+     * Compiles a program into a runnable JAR file: saffron compile my-program.sfr [-o my-program.jar]
+     */
+    private static void compile(String[] args, ProgramCache cache) {
+        String input = null;
+        String output = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-o") && i + 1 < args.length) {
+                output = args[++i];
+            } else if (args[i].equals("--no-cache")) {
+                cache = null;
+            } else {
+                input = args[i];
+            }
+        }
+        if (input == null) {
+            printUsage();
+            return;
+        }
+        if (output == null) {
+            output = withExtension(input, ".jar");
+        }
+
+        Program program = load(input, new ModuleLoader(cache), Environment.standard());
+        if (program == null) {
             return;
         }
 
         try {
-            Program program = new Parser(source).parse();
-            new Interpreter().execute(program);
+            Path inputPath = Path.of(input);
+            ScriptJar.write(Path.of(output), program, inputPath.getFileName().toString(), Files.readAllBytes(inputPath));
+        } catch (IOException e) {
+            System.err.printf("Unable to write output file '%s'%n", output);
+        }
+    }
+
+    /**
+     * Parses a program and the files it imports, then optimizes and resolves it. Returns null after
+     * printing the error if that fails.
+     */
+    private static Program load(String input, ModuleLoader modules, Environment environment) {
+        try {
+            Program program = modules.load(environment.resolve(input));
+            program = new Optimizer().optimize(program);
+            new Resolver().resolve(program);
+            return program;
+        } catch (IOException | UncheckedIOException e) {
+            environment.getError().printf("Unable to read input file '%s'%n", input);
         } catch (SaffronException e) {
-            printError(e, source);
+            printError(e, input, modules, environment);
         }
+        return null;
+    }
+
+    /**
+     * Replaces the extension of a file name, if it has one.
+     */
+    private static String withExtension(String file, String extension) {
+        int dot = file.lastIndexOf('.');
+        return (dot > Math.max(file.lastIndexOf('/'), file.lastIndexOf('\\')) ? file.substring(0, dot) : file) + extension;
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: saffron [--engine=interpreter|vm|closure] [--no-cache] [--profile[=<output>]] <input>");
+        System.out.println("       saffron compile [--no-cache] <input> [-o <output.jar>]");
+        System.out.println("       saffron --daemon [<socket>]");
+    }
+
+    /**
+     * Prints an error with the line of the program, or of the imported file, that it was raised at.
+     */
+    private static void printError(SaffronException e, String input, ModuleLoader modules, Environment environment) {
+        ModuleLoader.Location location = modules.locate(e.getPosition());
+        if (location == null) {
+            printError(e, readSource(environment.resolve(input)), e.getPosition(), "", environment);
+        } else {
+            printError(e, readSource(location.file()), location.position(),
+                    location.file().getFileName() + " ", environment);
+        }
+    }
+
+    private static String readSource(Path input) {
+        // The source is only read into memory when an error has to be reported
+        try {
+            return Files.readString(input);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    public static void printError(SaffronException e, String source) {
+        printError(e, source, e.getPosition(), "", Environment.standard());
     }
 
-    private static void printError(SaffronException e, String source) {
-        int position = e.getPosition();
+    private static void printError(SaffronException e, String source, int position, String file, Environment environment) {
+        // The output of the program comes before the error
+        environment.getOutput().flush();
+        PrintStream err = environment.getError();
         int length = e.getLength();
         String message = "Runtime Error: " + e.getMessage();
-        System.err.println(message + "\n");
+        err.println(message + "\n");
         LineInfo lineInfo = getLine(source, position);
         if (lineInfo != null) {
-            String lineNoStr = "[Line:" + lineInfo.lineNo + "]    ";
-            System.err.println(lineNoStr + lineInfo.line);
-            System.err.println(" ".repeat(lineNoStr.length()) + squiggly(lineInfo.position, length));
+            String lineNoStr = "[" + file + "Line:" + lineInfo.lineNo + "]    ";
+            err.println(lineNoStr + lineInfo.line);
+            err.println(" ".repeat(lineNoStr.length()) + squiggly(lineInfo.position, length));
         }
-        System.err.println();
+        err.println();
     }
 
     private static String squiggly(int position, int length) {
@@ -0,0 +1,786 @@
+package org.senthilvsh.saffron.aot;
+
+import org.senthilvsh.saffron.ast.*;
+import org.senthilvsh.saffron.stdlib.NativeFunctionsRegistry;
+
+import java.util.*;
+
+import static org.senthilvsh.saffron.aot.ClassFileWriter.*;
+import static org.senthilvsh.saffron.aot.CodeWriter.*;
+
+/**
+ * Compiles a program that has been processed by the {@link org.senthilvsh.saffron.resolver.Resolver}
+ * into a JVM class with a main method.
+ * <p>
+ * Global variables live in a static array and the local variables of a function are JVM local
+ * variables. Every user-defined function becomes a static method, and calls to native functions go
+ * straight to the {@link NativeFunctionDefinition} held in a static field. A function can only be
+ * called after its definition has been executed, so the class keeps a static field per function name
+ * that records which definition (if any) is active.
+ * <p>
+ * Operators and type checks are delegated to {@link AotRuntime}, so a compiled program follows the
+ * same dynamic typing rules and raises the same errors, at the same source positions, as the
+ * tree-walking interpreter. Like the other engines, a 'return', 'break' or 'continue' in a place where
+ * it is not allowed compiles to code that raises the error when it is reached.
+ */
+public class AotCompiler {
+    private static final String RUNTIME = "org/senthilvsh/saffron/aot/AotRuntime";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String OBJECT_DESCRIPTOR = "Ljava/lang/Object;";
+    private static final String NATIVE_DESCRIPTOR = "Lorg/senthilvsh/saffron/ast/NativeFunctionDefinition;";
+    private static final String EXCEPTION = "org/senthilvsh/saffron/runtime/NativeFunctionException";
+    private static final String GLOBALS = "globals";
+
+    private static final Map<String, String> BINARY_OPERATORS = Map.ofEntries(
+            Map.entry("+", "add"),
+            Map.entry("-", "subtract"),
+            Map.entry("*", "multiply"),
+            Map.entry("/", "divide"),
+            Map.entry("%", "modulo"),
+            Map.entry(">", "greaterThan"),
+            Map.entry(">=", "greaterThanOrEqual"),
+            Map.entry("<", "lessThan"),
+            Map.entry("<=", "lessThanOrEqual"),
+            Map.entry("==", "equal"),
+            Map.entry("!=", "notEqual"),
+            Map.entry("&&", "logicalAnd"),
+            Map.entry("||", "logicalOr")
+    );
+
+    private static final Map<String, String> UNARY_OPERATORS = Map.of(
+            "+", "plus",
+            "-", "negate",
+            "!", "not"
+    );
+
+    private final String className;
+    private final Map<String, NativeFunctionDefinition> natives = NativeFunctionsRegistry.getAll();
+    private final Set<String> nativeNames = natives.keySet();
+
+    private ClassFileWriter classFile;
+
+    // Every user-defined function in the program, in the order they appear, and the definitions of each name
+    private final List<FunctionDefinition> functions = new ArrayList<>();
+    private final Map<String, List<FunctionDefinition>> definitions = new HashMap<>();
+
+    private final Set<String> usedNatives = new TreeSet<>();
+    private final Map<Long, Integer> numbers = new LinkedHashMap<>();
+
+    // State of the method being compiled
+    private CodeWriter code;
+    private boolean inFunction;
+    private Deque<Context> contexts;
+
+    // The function being compiled, and the start of its method
+    private FunctionDefinition function;
+    private Label start;
+
+    public AotCompiler(String className) {
+        this.className = className;
+    }
+
+    /**
+     * Returns the class file of the compiled program. When the program fails with an error, its main
+     * method prints the error using the source code found in the given class path resource, and exits
+     * with status 1.
+     */
+    public byte[] compile(Program program, String sourceFile, String sourceResource) {
+        classFile = new ClassFileWriter(className);
+        classFile.setSourceFile(sourceFile);
+        collectFunctions(program.getStatements());
+
+        compileMain(sourceResource);
+        compileRun(program);
+        for (int i = 0; i < functions.size(); i++) {
+            compileFunction(i, functions.get(i));
+        }
+        compileStaticInitializer();
+
+        classFile.addField(ACC_STATIC, GLOBALS, "[" + OBJECT_DESCRIPTOR);
+        for (String name : definitions.keySet()) {
+            classFile.addField(ACC_STATIC, activeDefinitionField(name), "I");
+        }
+        for (String name : usedNatives) {
+            classFile.addField(ACC_STATIC | ACC_FINAL, nativeField(name), NATIVE_DESCRIPTOR);
+        }
+        for (int index : numbers.values()) {
+            classFile.addField(ACC_STATIC | ACC_FINAL, numberField(index), "Ljava/lang/Double;");
+        }
+        return classFile.toByteArray();
+    }
+
+    private void collectFunctions(List<Statement> statements) {
+        for (Statement statement : statements) {
+            collectFunctions(statement);
+        }
+    }
+
+    private void collectFunctions(Statement statement) {
+        if (statement instanceof BlockStatement bs) {
+            collectFunctions(bs.getStatements());
+        } else if (statement instanceof ConditionalStatement cs) {
+            collectFunctions(cs.getTrueClause());
+            if (cs.getFalseClause() != null) {
+                collectFunctions(cs.getFalseClause());
+            }
+        } else if (statement instanceof TryCatchStatement tcs) {
+            collectFunctions(tcs.getTryBlock());
+            collectFunctions(tcs.getCatchBlock());
+        } else if (statement instanceof WhileLoop wl) {
+            collectFunctions(wl.getBody());
+        } else if (statement instanceof FunctionDefinition fd) {
+            functions.add(fd);
+            if (!nativeNames.contains(fd.getName())) {
+                definitions.computeIfAbsent(fd.getName(), n -> new ArrayList<>()).add(fd);
+            }
+            collectFunctions(fd.getBody());
+        }
+    }
+
+    private void compileMain(String sourceResource) {
+        code = new CodeWriter(classFile, 1);
+        int start = code.pc();
+        code.invoke(INVOKESTATIC, className, "run", "()V");
+        int end = code.pc();
+        code.invoke(INVOKESTATIC, RUNTIME, "flushOutput", "()V");
+        code.op(RETURN, 0);
+
+        int handler = code.pc();
+        code.beginHandler();
+        code.pushString(sourceResource);
+        code.invoke(INVOKESTATIC, RUNTIME, "report",
+                "(Lorg/senthilvsh/saffron/runtime/SaffronException;Ljava/lang/String;)V");
+        // Exit with the status that saffron exits with when the program fails
+        code.pushInt(1);
+        code.invoke(INVOKESTATIC, "java/lang/System", "exit", "(I)V");
+        code.op(RETURN, 0);
+        code.handler(start, end, handler, "org/senthilvsh/saffron/runtime/SaffronException");
+
+        classFile.addMethod(ACC_PUBLIC | ACC_STATIC, "main", "([Ljava/lang/String;)V", code);
+    }
+
+    private void compileRun(Program program) {
+        code = new CodeWriter(classFile, 0);
+        inFunction = false;
+        contexts = new ArrayDeque<>();
+        contexts.push(new Context(Context.Kind.PROGRAM));
+
+        code.pushInt(program.getFrameSize());
+        code.newArray(OBJECT);
+        code.field(PUTSTATIC, className, GLOBALS, "[" + OBJECT_DESCRIPTOR);
+        for (Statement s : program.getStatements()) {
+            compile(s);
+        }
+        code.op(RETURN, 0);
+
+        classFile.addMethod(ACC_STATIC, "run", "()V", code);
+    }
+
+    private void compileFunction(int index, FunctionDefinition fd) {
+        int argumentCount = fd.getArguments().size();
+        code = new CodeWriter(classFile, Math.max(argumentCount, fd.getFrameSize()));
+        inFunction = true;
+        contexts = new ArrayDeque<>();
+        contexts.push(new Context(Context.Kind.FUNCTION));
+        function = fd;
+        start = new Label();
+
+        code.bind(start);
+        // Every local variable needs a value before the JVM lets it be read
+        for (int slot = argumentCount; slot < fd.getFrameSize(); slot++) {
+            code.op(ACONST_NULL, 1);
+            code.local(ASTORE, slot);
+        }
+        compile(fd.getBody());
+        code.op(ACONST_NULL, 1);
+        code.op(ARETURN, -1);
+
+        classFile.addMethod(ACC_STATIC, methodName(index, fd), methodDescriptor(argumentCount), code);
+    }
+
+    private void compileStaticInitializer() {
+        code = new CodeWriter(classFile, 0);
+        for (String name : usedNatives) {
+            code.pushString(name);
+            code.invoke(INVOKESTATIC, RUNTIME, "nativeFunction", "(Ljava/lang/String;)" + NATIVE_DESCRIPTOR);
+            code.field(PUTSTATIC, className, nativeField(name), NATIVE_DESCRIPTOR);
+        }
+        for (Map.Entry<Long, Integer> number : numbers.entrySet()) {
+            code.pushDouble(Double.longBitsToDouble(number.getKey()));
+            code.invoke(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+            code.field(PUTSTATIC, className, numberField(number.getValue()), "Ljava/lang/Double;");
+        }
+        code.op(RETURN, 0);
+        classFile.addMethod(ACC_STATIC, "<clinit>", "()V", code);
+    }
+
+    private void compile(Statement statement) {
+        if (statement instanceof ExpressionStatement es) {
+            if (es.getExpression() instanceof BinaryExpression be && "=".equals(be.getOperator())) {
+                // The value of an assignment is not needed when it is used as a statement
+                compileAssignment(be, false);
+            } else {
+                compile(es.getExpression());
+                code.op(POP, -1);
+            }
+        } else if (statement instanceof BlockStatement bs) {
+            for (Statement s : bs.getStatements()) {
+                compile(s);
+            }
+        } else if (statement instanceof ReturnStatement rs) {
+            compileReturn(rs);
+        } else if (statement instanceof ConditionalStatement cs) {
+            compileConditional(cs);
+        } else if (statement instanceof TryCatchStatement tcs) {
+            compileTryCatch(tcs);
+        } else if (statement instanceof WhileLoop wl) {
+            compileWhileLoop(wl);
+        } else if (statement instanceof BreakStatement bs) {
+            compileBreakOrContinue(true, bs);
+        } else if (statement instanceof ContinueStatement cs) {
+            compileBreakOrContinue(false, cs);
+        } else if (statement instanceof VariableDeclaration vd) {
+            compileStore(0, vd.getSlot(), false, () -> {
+                if (vd.getExpression() != null) {
+                    compile(vd.getExpression());
+                } else {
+                    code.op(ACONST_NULL, 1);
+                }
+            });
+        } else if (statement instanceof FunctionDefinition fd) {
+            compileFunctionDefinition(fd);
+        }
+    }
+
+    private void compileReturn(ReturnStatement rs) {
+        if (enclosing(Context.Kind.FUNCTION, Context.Kind.LOOP, Context.Kind.PROGRAM).kind != Context.Kind.FUNCTION) {
+            throwError("A 'return' statement can only be present inside a function", rs.getPosition(), rs.getLength());
+            return;
+        }
+        if (rs.isTailCall() && isSelfCall((FunctionCallExpression) rs.getExpression())) {
+            compileSelfTailCall((FunctionCallExpression) rs.getExpression());
+            return;
+        }
+        if (rs.getExpression() != null) {
+            compile(rs.getExpression());
+        } else {
+            code.op(ACONST_NULL, 1);
+        }
+        Context target = enclosing(Context.Kind.FUNCTION, Context.Kind.CATCH);
+        if (target.kind == Context.Kind.CATCH) {
+            // The result of a catch block is discarded
+            code.op(POP, -1);
+            code.jump(GOTO, target.exit);
+        } else {
+            code.op(ARETURN, -1);
+        }
+    }
+
+    private void compileBreakOrContinue(boolean isBreak, Statement statement) {
+        if (enclosing(Context.Kind.FUNCTION, Context.Kind.LOOP, Context.Kind.PROGRAM).kind != Context.Kind.LOOP) {
+            String message = isBreak
+                    ? "A 'break' statement can be present only inside a loop"
+                    : "A 'continue' statement can be present only inside a loop";
+            throwError(message, statement.getPosition(), statement.getLength());
+            return;
+        }
+        Context target = enclosing(Context.Kind.LOOP, Context.Kind.CATCH);
+        if (target.kind == Context.Kind.CATCH || isBreak) {
+            code.jump(GOTO, target.exit);
+        } else {
+            code.jump(GOTO, target.next);
+        }
+    }
+
+    private void compileConditional(ConditionalStatement cs) {
+        Expression condition = cs.getCondition();
+        compile(condition);
+        code.pushInt(condition.getPosition());
+        code.pushInt(condition.getLength());
+        code.invoke(INVOKESTATIC, RUNTIME, "ifCondition", "(" + OBJECT_DESCRIPTOR + "II)Z");
+        Label toElse = new Label();
+        code.jump(IFEQ, toElse);
+        compile(cs.getTrueClause());
+        if (cs.getFalseClause() == null) {
+            code.bind(toElse);
+            return;
+        }
+        Label toEnd = new Label();
+        code.jump(GOTO, toEnd);
+        code.bind(toElse);
+        compile(cs.getFalseClause());
+        code.bind(toEnd);
+    }
+
+    private void compileWhileLoop(WhileLoop wl) {
+        Expression condition = wl.getCondition();
+        Context loop = new Context(Context.Kind.LOOP);
+        Label body = new Label();
+
+        compile(condition);
+        code.pushInt(condition.getPosition());
+        code.pushInt(condition.getLength());
+        code.invoke(INVOKESTATIC, RUNTIME, "whileCondition", "(" + OBJECT_DESCRIPTOR + "II)Z");
+        code.jump(IFEQ, loop.exit);
+
+        code.bind(body);
+        contexts.push(loop);
+        compile(wl.getBody());
+        contexts.pop();
+
+        code.bind(loop.next);
+        compile(condition);
+        code.invoke(INVOKESTATIC, RUNTIME, "loopCondition", "(" + OBJECT_DESCRIPTOR + ")Z");
+        code.jump(IFNE, body);
+        code.bind(loop.exit);
+    }
+
+    private void compileTryCatch(TryCatchStatement tcs) {
+        Context catchBlock = new Context(Context.Kind.CATCH);
+
+        int start = code.pc();
+        compile(tcs.getTryBlock());
+        int end = code.pc();
+        code.jump(GOTO, catchBlock.exit);
+
+        int handler = code.pc();
+        code.beginHandler();
+        int exception = code.newLocal();
+        code.local(ASTORE, exception);
+        compileStore(0, tcs.getExceptionTypeSlot(), false, () -> {
+            code.local(ALOAD, exception);
+            code.invoke(INVOKEVIRTUAL, EXCEPTION, "getType", "()Ljava/lang/String;");
+        });
+        compileStore(0, tcs.getExceptionMessageSlot(), false, () -> {
+            code.local(ALOAD, exception);
+            code.invoke(INVOKEVIRTUAL, EXCEPTION, "getMessage", "()Ljava/lang/String;");
+        });
+        contexts.push(catchBlock);
+        compile(tcs.getCatchBlock());
+        contexts.pop();
+        code.bind(catchBlock.exit);
+
+        // Handlers of try blocks nested in this one have already been added, so they take precedence
+        code.handler(start, end, handler, EXCEPTION);
+    }
+
+    private void compileFunctionDefinition(FunctionDefinition fd) {
+        String message = String.format("Function re-declaration: %s", fd.getName());
+        if (nativeNames.contains(fd.getName())) {
+            throwError(message, fd.getNamePosition(), fd.getNameLength());
+            return;
+        }
+        String field = activeDefinitionField(fd.getName());
+        Label undefined = new Label();
+        code.field(GETSTATIC, className, field, "I");
+        code.jump(IFEQ, undefined);
+        throwError(message, fd.getNamePosition(), fd.getNameLength());
+        code.bind(undefined);
+        code.pushInt(functions.indexOf(fd) + 1);
+        code.field(PUTSTATIC, className, field, "I");
+    }
+
+    private void compile(Expression expression) {
+        if (expression instanceof NumberLiteral n) {
+            long bits = Double.doubleToRawLongBits(n.getValue());
+            int index = numbers.computeIfAbsent(bits, b -> numbers.size());
+            code.field(GETSTATIC, className, numberField(index), "Ljava/lang/Double;");
+        } else if (expression instanceof StringLiteral s) {
+            code.pushString(s.getValue());
+        } else if (expression instanceof BooleanLiteral b) {
+            code.field(GETSTATIC, "java/lang/Boolean", b.getValue() ? "TRUE" : "FALSE", "Ljava/lang/Boolean;");
+        } else if (expression instanceof Identifier i) {
+            if (isGlobal(i.getDepth())) {
+                code.field(GETSTATIC, className, GLOBALS, "[" + OBJECT_DESCRIPTOR);
+                code.pushInt(i.getSlot());
+                code.op(AALOAD, -1);
+            } else {
+                code.local(ALOAD, i.getSlot());
+            }
+            code.pushString(i.getName());
+            code.pushInt(i.getPosition());
+            code.pushInt(i.getLength());
+            code.invoke(INVOKESTATIC, RUNTIME, "assigned",
+                    "(" + OBJECT_DESCRIPTOR + "Ljava/lang/String;II)" + OBJECT_DESCRIPTOR);
+        } else if (expression instanceof FunctionCallExpression call) {
+            compileCall(call);
+        } else if (expression instanceof SpawnExpression spawn) {
+            compileSpawn(spawn.getCall());
+        } else if (expression instanceof UnaryExpression unaryExpression) {
+            compile(unaryExpression.getOperand());
+            String method = UNARY_OPERATORS.get(unaryExpression.getOperator());
+            if (method == null) {
+                code.op(POP, -1);
+                throwError(String.format("Invalid unary operator '%s'", unaryExpression.getOperator()),
+                        unaryExpression.getOperatorPosition(), unaryExpression.getOperatorLength());
+                code.op(ACONST_NULL, 1);
+                return;
+            }
+            code.pushInt(unaryExpression.getOperatorPosition());
+            code.pushInt(unaryExpression.getOperatorLength());
+            code.invoke(INVOKESTATIC, RUNTIME, method, "(" + OBJECT_DESCRIPTOR + "II)" + OBJECT_DESCRIPTOR);
+        } else if (expression instanceof BinaryExpression binaryExpression) {
+            if ("=".equals(binaryExpression.getOperator())) {
+                compileAssignment(binaryExpression, true);
+                return;
+            }
+            compile(binaryExpression.getLeft());
+            compile(binaryExpression.getRight());
+            String method = BINARY_OPERATORS.get(binaryExpression.getOperator());
+            if (method == null) {
+                code.op(POP, -1);
+                code.op(POP, -1);
+                throwError("Unknown expression type", expression.getPosition(), expression.getLength());
+                code.op(ACONST_NULL, 1);
+                return;
+            }
+            code.pushInt(binaryExpression.getOperatorPosition());
+            code.pushInt(binaryExpression.getOperatorLength());
+            code.invoke(INVOKESTATIC, RUNTIME, method,
+                    "(" + OBJECT_DESCRIPTOR + OBJECT_DESCRIPTOR + "II)" + OBJECT_DESCRIPTOR);
+        } else if (expression instanceof ArrayLiteral arrayLiteral) {
+            compileArgumentArray(arrayLiteral.getElements());
+            code.invoke(INVOKESTATIC, RUNTIME, "newArray", "([" + OBJECT_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR);
+        } else if (expression instanceof MapLiteral mapLiteral) {
+            List<Expression> entries = new ArrayList<>();
+            for (int i = 0; i < mapLiteral.getKeys().size(); i++) {
+                entries.add(mapLiteral.getKeys().get(i));
+                entries.add(mapLiteral.getValues().get(i));
+            }
+            compileArgumentArray(entries);
+            code.invoke(INVOKESTATIC, RUNTIME, "newMap", "([" + OBJECT_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR);
+        } else if (expression instanceof IndexExpression indexExpression) {
+            compile(indexExpression.getArray());
+            compile(indexExpression.getIndex());
+            code.pushInt(indexExpression.getPosition());
+            code.pushInt(indexExpression.getLength());
+            code.invoke(INVOKESTATIC, RUNTIME, "index",
+                    "(" + OBJECT_DESCRIPTOR + OBJECT_DESCRIPTOR + "II)" + OBJECT_DESCRIPTOR);
+        } else if (expression instanceof IndexAssignment indexAssignment) {
+            IndexExpression target = indexAssignment.getTarget();
+            compile(target.getArray());
+            compile(target.getIndex());
+            compile(indexAssignment.getValue());
+            code.pushInt(target.getPosition());
+            code.pushInt(target.getLength());
+            code.invoke(INVOKESTATIC, RUNTIME, "setIndex",
+                    "(" + OBJECT_DESCRIPTOR + OBJECT_DESCRIPTOR + OBJECT_DESCRIPTOR + "II)" + OBJECT_DESCRIPTOR);
+        } else {
+            throwError("Unknown expression type", expression.getPosition(), expression.getLength());
+            code.op(ACONST_NULL, 1);
+        }
+    }
+
+    private void compileAssignment(BinaryExpression assignment, boolean keepValue) {
+        Identifier identifier = (Identifier) assignment.getLeft();
+        compileStore(identifier.getDepth(), identifier.getSlot(), keepValue, () -> compile(assignment.getRight()));
+    }
+
+    /**
+     * Stores the value pushed by the given code in a variable, leaving a copy of it on the stack if
+     * requested.
+     */
+    private void compileStore(int depth, int slot, boolean keepValue, Runnable value) {
+        if (isGlobal(depth)) {
+            code.field(GETSTATIC, className, GLOBALS, "[" + OBJECT_DESCRIPTOR);
+            code.pushInt(slot);
+            value.run();
+            if (keepValue) {
+                code.op(DUP_X2, 1);
+            }
+            code.op(AASTORE, -3);
+        } else {
+            value.run();
+            if (keepValue) {
+                code.op(DUP, 1);
+            }
+            code.local(ASTORE, slot);
+        }
+    }
+
+    private void compileCall(FunctionCallExpression call) {
+        String name = call.getName();
+        List<Expression> arguments = call.getArguments();
+
+        if (nativeNames.contains(name)) {
+            if (natives.get(name).getArguments().size() != arguments.size()) {
+                compileDiscarded(arguments);
+                throwArgumentCountError(call, natives.get(name));
+                code.op(ACONST_NULL, 1);
+                return;
+            }
+            usedNatives.add(name);
+            code.field(GETSTATIC, className, nativeField(name), NATIVE_DESCRIPTOR);
+            compileArgumentArray(arguments);
+            code.invoke(INVOKESTATIC, RUNTIME, "callNative",
+                    "(" + NATIVE_DESCRIPTOR + "[" + OBJECT_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR);
+            return;
+        }
+
+        List<FunctionDefinition> candidates = definitions.getOrDefault(name, List.of());
+        String undeclared = String.format("Undeclared function %s", name);
+        if (candidates.isEmpty()) {
+            compileDiscarded(arguments);
+            throwError(undeclared, call.getPosition(), call.getLength());
+            code.op(ACONST_NULL, 1);
+            return;
+        }
+
+        String field = activeDefinitionField(name);
+        if (candidates.size() == 1) {
+            // The common case: the arguments are passed straight from the stack
+            FunctionDefinition fd = candidates.get(0);
+            boolean matches = fd.getArguments().size() == arguments.size();
+            if (matches) {
+                for (Expression argument : arguments) {
+                    compile(argument);
+                }
+            } else {
+                compileDiscarded(arguments);
+            }
+            Label declared = new Label();
+            code.field(GETSTATIC, className, field, "I");
+            code.jump(IFNE, declared);
+            throwError(undeclared, call.getPosition(), call.getLength());
+            code.bind(declared);
+            if (matches) {
+                compileInvoke(fd);
+            } else {
+                throwArgumentCountError(call, fd);
+                code.op(ACONST_NULL, 1);
+            }
+            return;
+        }
+
+        // The name has several definitions, so the one that is active is looked up at runtime
+        compileArgumentArray(arguments);
+        int array = code.newLocal();
+        code.local(ASTORE, array);
+        Label declared = new Label();
+        code.field(GETSTATIC, className, field, "I");
+        code.jump(IFNE, declared);
+        throwError(undeclared, call.getPosition(), call.getLength());
+        code.bind(declared);
+
+        Label end = new Label();
+        for (FunctionDefinition fd : candidates) {
+            Label next = new Label();
+            code.field(GETSTATIC, className, field, "I");
+            code.pushInt(functions.indexOf(fd) + 1);
+            code.jump(IF_ICMPNE, next);
+            if (fd.getArguments().size() == arguments.size()) {
+                for (int i = 0; i < arguments.size(); i++) {
+                    code.local(ALOAD, array);
+                    code.pushInt(i);
+                    code.op(AALOAD, -1);
+                }
+                compileInvoke(fd);
+            } else {
+                throwArgumentCountError(call, fd);
+                code.op(ACONST_NULL, 1);
+            }
+            code.jump(GOTO, end);
+            code.bind(next);
+        }
+        code.op(ACONST_NULL, 1);
+        code.bind(end);
+    }
+
+    /**
+     * Compiles a spawned call, which {@link AotRuntime} makes on the thread of a new task, with the
+     * active definition of the name looked up when the task is started.
+     */
+    private void compileSpawn(FunctionCallExpression call) {
+        String name = call.getName();
+        List<Expression> arguments = call.getArguments();
+
+        if (nativeNames.contains(name)) {
+            if (natives.get(name).getArguments().size() != arguments.size()) {
+                compileDiscarded(arguments);
+                throwArgumentCountError(call, natives.get(name));
+                code.op(ACONST_NULL, 1);
+                return;
+            }
+            usedNatives.add(name);
+            code.field(GETSTATIC, className, nativeField(name), NATIVE_DESCRIPTOR);
+            compileArgumentArray(arguments);
+            code.invoke(INVOKESTATIC, RUNTIME, "spawnNative",
+                    "(" + NATIVE_DESCRIPTOR + "[" + OBJECT_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR);
+            return;
+        }
+
+        compileArgumentArray(arguments);
+        List<FunctionDefinition> candidates = definitions.getOrDefault(name, List.of());
+        String undeclared = String.format("Undeclared function %s", name);
+        if (candidates.isEmpty()) {
+            code.op(POP, -1);
+            throwError(undeclared, call.getPosition(), call.getLength());
+            code.op(ACONST_NULL, 1);
+            return;
+        }
+
+        int array = code.newLocal();
+        code.local(ASTORE, array);
+        String field = activeDefinitionField(name);
+        Label declared = new Label();
+        code.field(GETSTATIC, className, field, "I");
+        code.jump(IFNE, declared);
+        throwError(undeclared, call.getPosition(), call.getLength());
+        code.bind(declared);
+
+        Label end = new Label();
+        for (FunctionDefinition fd : candidates) {
+            Label next = new Label();
+            code.field(GETSTATIC, className, field, "I");
+            code.pushInt(functions.indexOf(fd) + 1);
+            code.jump(IF_ICMPNE, next);
+            if (fd.getArguments().size() == arguments.size()) {
+                code.invoke(INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup",
+                        "()Ljava/lang/invoke/MethodHandles$Lookup;");
+                code.pushString(methodName(functions.indexOf(fd), fd));
+                code.local(ALOAD, array);
+                code.invoke(INVOKESTATIC, RUNTIME, "spawn",
+                        "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;[" + OBJECT_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR);
+            } else {
+                throwArgumentCountError(call, fd);
+                code.op(ACONST_NULL, 1);
+            }
+            code.jump(GOTO, end);
+            code.bind(next);
+        }
+        code.op(ACONST_NULL, 1);
+        code.bind(end);
+    }
+
+    /**
+     * Returns whether a call always calls the function being compiled with its arguments. Only
+     * the active definition of a name can be running, so a call to the same name from inside it calls
+     * the same definition.
+     */
+    private boolean isSelfCall(FunctionCallExpression call) {
+        return inFunction
+                && call.getName().equals(function.getName())
+                && !nativeNames.contains(call.getName())
+                && call.getArguments().size() == function.getArguments().size();
+    }
+
+    /**
+     * Compiles a tail call of the function being compiled into a jump back to the start of its method
+     * with the new arguments, so that tail recursion runs in constant stack. The JVM has no tail calls
+     * of its own, so tail calls to other functions are compiled as ordinary calls.
+     */
+    private void compileSelfTailCall(FunctionCallExpression call) {
+        List<Expression> arguments = call.getArguments();
+        for (Expression argument : arguments) {
+            compile(argument);
+        }
+        for (int slot = arguments.size() - 1; slot >= 0; slot--) {
+            code.local(ASTORE, slot);
+        }
+        code.jump(GOTO, start);
+    }
+
+    /**
+     * Calls a user-defined function with its arguments on the stack.
+     */
+    private void compileInvoke(FunctionDefinition fd) {
+        code.invoke(INVOKESTATIC, className, methodName(functions.indexOf(fd), fd),
+                methodDescriptor(fd.getArguments().size()));
+    }
+
+    /**
+     * Evaluates the arguments of a call that fails, for their side effects.
+     */
+    private void compileDiscarded(List<Expression> arguments) {
+        for (Expression argument : arguments) {
+            compile(argument);
+            code.op(POP, -1);
+        }
+    }
+
+    private void throwArgumentCountError(FunctionCallExpression call, FunctionDefinition fd) {
+        throwError(String.format("Function %s takes %d argument(s), but %d were given",
+                        call.getName(), fd.getArguments().size(), call.getArguments().size()),
+                call.getPosition(), call.getLength());
+    }
+
+    private void compileArgumentArray(List<Expression> arguments) {
+        code.pushInt(arguments.size());
+        code.newArray(OBJECT);
+        for (int i = 0; i < arguments.size(); i++) {
+            code.op(DUP, 1);
+            code.pushInt(i);
+            compile(arguments.get(i));
+            code.op(AASTORE, -3);
+        }
+    }
+
+    /**
+     * Throws a RuntimeError. The code that follows is unreachable, and is compiled as if the stack
+     * were unchanged.
+     */
+    private void throwError(String message, int position, int length) {
+        int stack = code.getStack();
+        code.pushString(message);
+        code.pushInt(position);
+        code.pushInt(length);
+        code.invoke(INVOKESTATIC, RUNTIME, "error",
+                "(Ljava/lang/String;II)Lorg/senthilvsh/saffron/runtime/RuntimeError;");
+        code.op(ATHROW, -1);
+        code.setStack(stack);
+    }
+
+    private boolean isGlobal(int depth) {
+        return !inFunction || depth > 0;
+    }
+
+    private Context enclosing(Context.Kind... kinds) {
+        for (Context context : contexts) {
+            for (Context.Kind kind : kinds) {
+                if (context.kind == kind) {
+                    return context;
+                }
+            }
+        }
+        throw new IllegalStateException("No enclosing " + Arrays.toString(kinds));
+    }
+
+    private static String methodName(int index, FunctionDefinition fd) {
+        return "function" + index + "$" + fd.getName();
+    }
+
+    private static String methodDescriptor(int parameterCount) {
+        return "(" + OBJECT_DESCRIPTOR.repeat(parameterCount) + ")" + OBJECT_DESCRIPTOR;
+    }
+
+    private static String activeDefinitionField(String name) {
+        return "defined$" + name;
+    }
+
+    private static String nativeField(String name) {
+        return "native$" + name;
+    }
+
+    private static String numberField(int index) {
+        return "number" + index;
+    }
+
+    /**
+     * A construct that 'return', 'break' and 'continue' statements can jump out of.
+     */
+    private static class Context {
+        enum Kind {PROGRAM, FUNCTION, LOOP, CATCH}
+
+        final Kind kind;
+
+        // Target of 'break' (loops) and of any jump out of a catch block
+        final Label exit = new Label();
+
+        // Target of 'continue'
+        final Label next = new Label();
+
+        Context(Kind kind) {
+            this.kind = kind;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.senthilvsh.saffron.aot;
+
+import org.senthilvsh.saffron.Main;
+import org.senthilvsh.saffron.ast.NativeFunctionDefinition;
+import org.senthilvsh.saffron.runtime.*;
+import org.senthilvsh.saffron.stdlib.NativeFunctionsRegistry;
+import org.senthilvsh.saffron.stdlib.console.ConsoleOutput;
+import org.senthilvsh.saffron.stdlib.task.TaskTable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Support methods called by the classes generated by the {@link AotCompiler}. They implement the same
+ * rules and raise the same errors as the tree-walking {@link Interpreter}.
+ */
+public class AotRuntime {
+    private static final TaskTable tasks = new TaskTable();
+    private static Map<String, NativeFunctionDefinition> nativeFunctions;
+
+    private AotRuntime() {
+    }
+
+    public static synchronized NativeFunctionDefinition nativeFunction(String name) {
+        if (nativeFunctions == null) {
+            nativeFunctions = NativeFunctionsRegistry.getAll(tasks);
+        }
+        return nativeFunctions.get(name);
+    }
+
+    public static Object callNative(NativeFunctionDefinition function, Object[] args) {
+        return function.call(args);
+    }
+
+    public static Object spawnNative(NativeFunctionDefinition function, Object[] args) {
+        return tasks.spawn(() -> callNative(function, args));
+    }
+
+    /**
+     * Starts a task that calls the static method, with the given name, of the class of the lookup.
+     * Generated classes pass their own lookup, as the methods of their functions are not public.
+     */
+    public static Object spawn(MethodHandles.Lookup lookup, String methodName, Object[] args) {
+        MethodHandle function;
+        try {
+            function = lookup.findStatic(lookup.lookupClass(), methodName,
+                    MethodType.genericMethodType(args.length));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        return tasks.spawn(() -> {
+            try {
+                return function.invokeWithArguments(args);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        });
+    }
+
+    public static Object assigned(Object value, String name, int position, int length) throws RuntimeError {
+        if (value == null) {
+            throw new RuntimeError(String.format("Variable '%s' is used before being assigned", name), position, length);
+        }
+        return value;
+    }
+
+    public static RuntimeError error(String message, int position, int length) {
+        return new RuntimeError(message, position, length);
+    }
+
+    public static boolean ifCondition(Object condition, int position, int length) throws RuntimeError {
+        if (!(condition instanceof Boolean b)) {
+            throw new RuntimeError("The condition of an 'if' statement must be a boolean expression", position, length);
+        }
+        return b;
+    }
+
+    public static boolean whileCondition(Object condition, int position, int length) throws RuntimeError {
+        if (!(condition instanceof Boolean b)) {
+            throw new RuntimeError("The condition of a 'while' loop must be a boolean expression", position, length);
+        }
+        return b;
+    }
+
+    public static Object newArray(Object[] elements) {
+        return new Array(elements);
+    }
+
+    /**
+     * Creates a map of the given keys and values, which alternate in {@code entries}.
+     */
+    public static Object newMap(Object[] entries) {
+        Dictionary map = new Dictionary();
+        for (int i = 0; i < entries.length; i += 2) {
+            map.put(entries[i], entries[i + 1]);
+        }
+        return map;
+    }
+
+    public static Object index(Object array, Object index, int position, int length) throws RuntimeError {
+        if (array instanceof Dictionary map) {
+            return map.get(index);
+        }
+        if (!(array instanceof Array a) || !(index instanceof Double i)) {
+            throw binaryError("[]", array, index, position, length);
+        }
+        return a.get(i);
+    }
+
+    public static Object setIndex(Object array, Object index, Object value, int position, int length) throws RuntimeError {
+        if (array instanceof Dictionary map) {
+            map.put(index, value);
+            return value;
+        }
+        if (!(array instanceof Array a) || !(index instanceof Double i)) {
+            throw binaryError("[]", array, index, position, length);
+        }
+        a.set(i, value);
+        return value;
+    }
+
+    /**
+     * The condition of a loop is only type-checked before the first iteration.
+     */
+    public static boolean loopCondition(Object condition) {
+        Boolean b = (Boolean) condition;
+        return b != null && b;
+    }
+
+    public static Object add(Object left, Object right, int position, int length) throws RuntimeError {
+        try {
+            return Operators.add(left, right);
+        } catch (RuntimeException ex) {
+            throw binaryError("+", left, right, position, length);
+        }
+    }
+
+    public static Object subtract(Object left, Object right, int position, int length) throws RuntimeError {
+        try {
+            return Operators.subtract(left, right);
+        } catch (RuntimeException ex) {
+            throw binaryError("-", left, right, position, length);
+        }
+    }
+
+    public static Object multiply(Object left, Object right, int position, int length) throws RuntimeError {
+        try {
+            return Operators.multiply(left, right);
+        } catch (RuntimeException ex) {
+            throw binaryError("*", left, right, position, length);
+        }
+    }
+
+    public static Object divide(Object left, Object right, int position, int length) throws RuntimeError {
+        try {
+            return Operators.divide(left, right);
+        } catch (RuntimeException ex) {
+            throw binaryError("/", left, right, position, length);
+        }
+    }
+
+    public static Object modulo(Object left, Object right, int position, int length) throws RuntimeError {
+        try {
+            return Operators.modulo(left, right);
+        } catch (RuntimeException ex) {
+            throw binaryError("%", left, right, position, length);
+        }
+    }
+
+    public static Object greaterThan(Object left, Object right, int position, int length) throws RuntimeError {
+        try {
+            return Operators.greaterThan(left, right);
+        } catch (RuntimeException ex) {
+            throw binaryError(">", left, right, position, length);
+        }
+    }
+
+    public static Object greaterThanOrEqual(Object left, Object right, int position, int length) throws RuntimeError {
+        try {
+            return Operators.greaterThanOrEqual(left, right);
+        } catch (RuntimeException ex) {
+            throw binaryError(">=", left, right, position, length);
+        }
+    }
+
+    public static Object lessThan(Object left, Object right, int position, int length) throws RuntimeError {
+        try {
+            return Operators.lessThan(left, right);
+        } catch (RuntimeException ex) {
+            throw binaryError("<", left, right, position, length);
+        }
+    }
+
+    public static Object lessThanOrEqual(Object left, Object right, int position, int length) throws RuntimeError {
+        try {
+            return Operators.lessThanOrEqual(left, right);
+        } catch (RuntimeException ex) {
+            throw binaryError("<=", left, right, position, length);
+        }
+    }
+
+    public static Object equal(Object left, Object right, int position, int length) throws RuntimeError {
+        try {
+            return Operators.equal(left, right);
+        } catch (RuntimeException ex) {
+            throw binaryError("==", left, right, position, length);
+        }
+    }
+
+    public static Object notEqual(Object left, Object right, int position, int length) throws RuntimeError {
+        try {
+            return Operators.notEqual(left, right);
+        } catch (RuntimeException ex) {
+            throw binaryError("!=", left, right, position, length);
+        }
+    }
+
+    public static Object logicalAnd(Object left, Object right, int position, int length) throws RuntimeError {
+        try {
+            return Operators.logicalAnd(left, right);
+        } catch (RuntimeException ex) {
+            throw binaryError("&&", left, right, position, length);
+        }
+    }
+
+    public static Object logicalOr(Object left, Object right, int position, int length) throws RuntimeError {
+        try {
+            return Operators.logicalOr(left, right);
+        } catch (RuntimeException ex) {
+            throw binaryError("||", left, right, position, length);
+        }
+    }
+
+    public static Object plus(Object operand, int position, int length) throws RuntimeError {
+        try {
+            return Operators.plus(operand);
+        } catch (RuntimeException ex) {
+            throw unaryError("+", operand, position, length);
+        }
+    }
+
+    public static Object negate(Object operand, int position, int length) throws RuntimeError {
+        try {
+            return Operators.negate(operand);
+        } catch (RuntimeException ex) {
+            throw unaryError("-", operand, position, length);
+        }
+    }
+
+    public static Object not(Object operand, int position, int length) throws RuntimeError {
+        try {
+            return Operators.not(operand);
+        } catch (RuntimeException ex) {
+            throw unaryError("!", operand, position, length);
+        }
+    }
+
+    /**
+     * Writes out the output of a compiled program when it ends.
+     */
+    public static void flushOutput() {
+        ConsoleOutput.standard().flush();
+    }
+
+    /**
+     * Prints an error raised by a compiled program, using the program's source code that was stored
+     * next to the generated class.
+     */
+    public static void report(SaffronException e, String sourceResource) {
+        String source = "";
+        try (InputStream in = AotRuntime.class.getClassLoader().getResourceAsStream(sourceResource)) {
+            if (in != null) {
+                source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } catch (IOException ignored) {
+            // The error is still reported, just without the source line
+        }
+        Main.printError(e, source);
+    }
+
+    private static RuntimeError binaryError(String operator, Object left, Object right, int position, int length) {
+        return new RuntimeError(String.format("Cannot perform operation '%s' on %s and %s", operator,
+                Operators.typeOf(left), Operators.typeOf(right)), position, length);
+    }
+
+    private static RuntimeError unaryError(String operator, Object operand, int position, int length) {
+        return new RuntimeError(String.format("Operation '%s' cannot be applied to '%s'", operator,
+                Operators.typeOf(operand)), position, length);
+    }
+}
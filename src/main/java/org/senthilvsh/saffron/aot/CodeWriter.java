@@ -0,0 +1,280 @@
+package org.senthilvsh.saffron.aot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the bytecode of one method, keeping track of the operand stack depth and the number of local
+ * variables so that the limits of the method can be filled in.
+ */
+class CodeWriter {
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ILOAD = 0x15;
+    static final int ALOAD = 0x19;
+    static final int AALOAD = 0x32;
+    static final int ISTORE = 0x36;
+    static final int ASTORE = 0x3a;
+    static final int AASTORE = 0x53;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int DUP_X2 = 0x5b;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IF_ICMPNE = 0xa0;
+    static final int GOTO = 0xa7;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int PUTSTATIC = 0xb3;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESTATIC = 0xb8;
+    static final int ANEWARRAY = 0xbd;
+    static final int ATHROW = 0xbf;
+    static final int WIDE = 0xc4;
+
+    private final ClassFileWriter classFile;
+    private byte[] code = new byte[256];
+    private int length;
+    private final List<int[]> handlers = new ArrayList<>();
+
+    private int stack;
+    private int maxStack;
+    private int maxLocals;
+
+    CodeWriter(ClassFileWriter classFile, int locals) {
+        this.classFile = classFile;
+        this.maxLocals = locals;
+    }
+
+    /**
+     * Allocates a local variable that is not used by any other part of the method.
+     */
+    int newLocal() {
+        return maxLocals++;
+    }
+
+    int pc() {
+        return length;
+    }
+
+    /**
+     * Emits an instruction without operands that changes the stack depth by the given amount.
+     */
+    void op(int opcode, int stackChange) {
+        u1(opcode);
+        adjustStack(stackChange);
+        if (opcode == GOTO || opcode == ATHROW || opcode == ARETURN || opcode == RETURN) {
+            // Nothing falls through to the next instruction
+            stack = 0;
+        }
+    }
+
+    void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            op(ICONST_0 + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            op(BIPUSH, 1);
+            u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            op(SIPUSH, 1);
+            u2(value);
+        } else {
+            ldc(classFile.integer(value));
+        }
+    }
+
+    void pushString(String value) {
+        ldc(classFile.string(value));
+    }
+
+    void pushDouble(double value) {
+        op(LDC2_W, 2);
+        u2(classFile.doubleValue(value));
+    }
+
+    private void ldc(int index) {
+        if (index < 256) {
+            op(LDC, 1);
+            u1(index);
+        } else {
+            op(LDC_W, 1);
+            u2(index);
+        }
+    }
+
+    void local(int opcode, int index) {
+        if (index > 255) {
+            u1(WIDE);
+            op(opcode, opcode == ALOAD || opcode == ILOAD ? 1 : -1);
+            u2(index);
+        } else {
+            op(opcode, opcode == ALOAD || opcode == ILOAD ? 1 : -1);
+            u1(index);
+        }
+        maxLocals = Math.max(maxLocals, index + 1);
+    }
+
+    void field(int opcode, String owner, String name, String descriptor) {
+        int size = descriptor.equals("D") || descriptor.equals("J") ? 2 : 1;
+        op(opcode, opcode == GETSTATIC ? size : -size);
+        u2(classFile.fieldRef(owner, name, descriptor));
+    }
+
+    void invoke(int opcode, String owner, String name, String descriptor) {
+        int change = -argumentSlots(descriptor) + returnSlots(descriptor);
+        if (opcode != INVOKESTATIC) {
+            change--;
+        }
+        op(opcode, change);
+        u2(classFile.methodRef(owner, name, descriptor));
+    }
+
+    void newArray(String elementClass) {
+        op(ANEWARRAY, 0);
+        u2(classFile.classRef(elementClass));
+    }
+
+    void jump(int opcode, Label target) {
+        int at = pc();
+        u1(opcode);
+        u2(0);
+        adjustStack(switch (opcode) {
+            case IFEQ, IFNE -> -1;
+            case IF_ICMPNE -> -2;
+            default -> 0;
+        });
+        target.jumps.add(at);
+        target.stack = stack;
+        if (target.position >= 0) {
+            patch(at, target.position);
+        }
+        if (opcode == GOTO) {
+            stack = 0;
+        }
+    }
+
+    void bind(Label label) {
+        label.position = pc();
+        for (int jump : label.jumps) {
+            patch(jump, label.position);
+        }
+        if (!label.jumps.isEmpty()) {
+            stack = label.stack;
+        }
+    }
+
+    /**
+     * Adds an entry to the exception table. Entries added first take precedence, so nested handlers
+     * have to be added before the handlers that enclose them.
+     */
+    void handler(int start, int end, int handlerPc, String exceptionClass) {
+        if (start < end) {
+            handlers.add(new int[]{start, end, handlerPc, classFile.classRef(exceptionClass)});
+        }
+    }
+
+    /**
+     * Starts code that is only reached through an exception handler, which gets the exception on
+     * an otherwise empty stack.
+     */
+    void beginHandler() {
+        stack = 1;
+        maxStack = Math.max(maxStack, 1);
+    }
+
+    /**
+     * Sets the stack depth assumed for the following code, after code that does not fall through.
+     */
+    void setStack(int depth) {
+        stack = depth;
+    }
+
+    int getStack() {
+        return stack;
+    }
+
+    private void adjustStack(int change) {
+        stack += change;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void patch(int jump, int target) {
+        int offset = target - jump;
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            throw new IllegalStateException("Jump offset too large");
+        }
+        code[jump + 1] = (byte) (offset >> 8);
+        code[jump + 2] = (byte) offset;
+    }
+
+    private void u1(int value) {
+        if (length == code.length) {
+            code = Arrays.copyOf(code, length * 2);
+        }
+        code[length++] = (byte) value;
+    }
+
+    private void u2(int value) {
+        u1(value >> 8);
+        u1(value);
+    }
+
+    byte[] getBytes() {
+        return Arrays.copyOf(code, length);
+    }
+
+    List<int[]> getHandlers() {
+        return handlers;
+    }
+
+    int getMaxStack() {
+        return maxStack;
+    }
+
+    int getMaxLocals() {
+        return maxLocals;
+    }
+
+    private static int argumentSlots(String descriptor) {
+        int slots = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            if (c == 'D' || c == 'J') {
+                slots += 2;
+                i++;
+                continue;
+            }
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            if (descriptor.charAt(i) == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            slots++;
+            i++;
+        }
+        return slots;
+    }
+
+    private static int returnSlots(String descriptor) {
+        char c = descriptor.charAt(descriptor.indexOf(')') + 1);
+        return c == 'V' ? 0 : c == 'D' || c == 'J' ? 2 : 1;
+    }
+
+    /**
+     * A position in the code that jumps can target before it is known.
+     */
+    static class Label {
+        private final List<Integer> jumps = new ArrayList<>();
+        private int position = -1;
+        private int stack;
+    }
+}
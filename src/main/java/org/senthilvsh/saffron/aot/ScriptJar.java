@@ -0,0 +1,90 @@
+package org.senthilvsh.saffron.aot;
+
+import org.senthilvsh.saffron.ast.Program;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.*;
+import java.util.stream.Stream;
+
+/**
+ * Writes a runnable JAR file for a compiled program. Besides the generated class, the JAR holds the
+ * source code of the program (for error messages) and the Saffron runtime classes, so it can be run
+ * with just {@code java -jar}.
+ */
+public class ScriptJar {
+    private static final String CLASS_NAME = "SaffronScript";
+    private static final String SOURCE_RESOURCE = CLASS_NAME + ".saf";
+    private static final String RUNTIME_PACKAGE = "org/senthilvsh/saffron/";
+
+    private ScriptJar() {
+    }
+
+    /**
+     * Compiles a program that has been processed by the
+     * {@link org.senthilvsh.saffron.resolver.Resolver} and writes it to a JAR file.
+     */
+    public static void write(Path output, Program program, String sourceFile, byte[] source) throws IOException {
+        byte[] compiled = new AotCompiler(CLASS_NAME).compile(program, sourceFile, SOURCE_RESOURCE);
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, CLASS_NAME);
+
+        try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(output), manifest)) {
+            add(jar, CLASS_NAME + ".class", compiled);
+            add(jar, SOURCE_RESOURCE, source);
+            copyRuntime(jar);
+        }
+    }
+
+    private static void copyRuntime(JarOutputStream jar) throws IOException {
+        Path location;
+        try {
+            location = Path.of(AotRuntime.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Unable to locate the Saffron runtime", e);
+        }
+
+        if (Files.isDirectory(location)) {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(location)) {
+                files = walk.filter(Files::isRegularFile).sorted().toList();
+            }
+            for (Path file : files) {
+                String name = location.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                if (isRuntimeEntry(name)) {
+                    add(jar, name, Files.readAllBytes(file));
+                }
+            }
+            return;
+        }
+
+        try (JarFile runtime = new JarFile(location.toFile())) {
+            Enumeration<JarEntry> entries = runtime.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && isRuntimeEntry(entry.getName())) {
+                    try (InputStream in = runtime.getInputStream(entry)) {
+                        add(jar, entry.getName(), in.readAllBytes());
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isRuntimeEntry(String name) {
+        return name.startsWith(RUNTIME_PACKAGE) || name.equals("saffron.properties");
+    }
+
+    private static void add(JarOutputStream jar, String name, byte[] bytes) throws IOException {
+        jar.putNextEntry(new JarEntry(name));
+        jar.write(bytes);
+        jar.closeEntry();
+    }
+}
@@ -0,0 +1,19 @@
+package org.senthilvsh.saffron.ast;
+
+import java.util.List;
+
+/**
+ * {@code [a, b, c]}: creates an array of the values of the elements.
+ */
+public class ArrayLiteral extends Expression {
+    private final List<Expression> elements;
+
+    public ArrayLiteral(List<Expression> elements, int position, int length) {
+        super(position, length);
+        this.elements = elements;
+    }
+
+    public List<Expression> getElements() {
+        return elements;
+    }
+}
@@ -5,6 +5,7 @@ import java.util.List;
 public class FunctionCallExpression extends Expression {
     private final String name;
     private final List<Expression> arguments;
+    private int slot;
 
     public FunctionCallExpression(String name, List<Expression> arguments, int position, int length) {
         super(position, length);
@@ -19,4 +20,16 @@ public class FunctionCallExpression extends Expression {
     public List<Expression> getArguments() {
         return arguments;
     }
+
+    /**
+     * Index of the called function in the function table of the program (see
+     * {@link Program#getFunctionNames()}). Set by the resolver.
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
 }
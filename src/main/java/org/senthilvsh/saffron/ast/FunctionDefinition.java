@@ -8,6 +8,8 @@ public class FunctionDefinition extends Statement {
     private final BlockStatement body;
     private final int namePosition;
     private final int nameLength;
+    private int frameSize;
+    private int slot;
 
     public FunctionDefinition(String name, List<String> arguments, BlockStatement body,
                               int position, int length, int namePosition, int nameLength) {
@@ -38,4 +40,28 @@ public class FunctionDefinition extends Statement {
     public int getNameLength() {
         return nameLength;
     }
+
+    /**
+     * Number of slots needed for the arguments and local variables of this function. The arguments
+     * occupy the first slots, in order. Set by the resolver.
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public void setFrameSize(int frameSize) {
+        this.frameSize = frameSize;
+    }
+
+    /**
+     * Index of this function in the function table of the program (see
+     * {@link Program#getFunctionNames()}). Set by the resolver.
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
 }
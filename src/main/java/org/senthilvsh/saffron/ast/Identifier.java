@@ -2,6 +2,8 @@ package org.senthilvsh.saffron.ast;
 
 public class Identifier extends Expression {
     private final String name;
+    private int depth = -1;
+    private int slot = -1;
 
     public Identifier(String name, int position, int length) {
         super(position, length);
@@ -12,6 +14,26 @@ public class Identifier extends Expression {
         return name;
     }
 
+    /**
+     * Number of frames to walk up from the current frame to reach the frame holding this variable.
+     * Set by the resolver.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Index of this variable in its frame. Set by the resolver.
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    public void bind(int depth, int slot) {
+        this.depth = depth;
+        this.slot = slot;
+    }
+
     @Override
     public String toString() {
         return String.format("Identifier { name: %s; position: %d; length: %d }",
@@ -0,0 +1,21 @@
+package org.senthilvsh.saffron.ast;
+
+/**
+ * {@code import "path";}: makes the functions defined in another file available to the program. The
+ * path is relative to the directory of the importing file.
+ * <p>
+ * Imports are replaced by the imported functions before a program is run (see
+ * {@link org.senthilvsh.saffron.module.ModuleLoader}), so they only appear in programs just parsed.
+ */
+public class ImportStatement extends Statement {
+    private final String path;
+
+    public ImportStatement(String path, int position, int length) {
+        super(position, length);
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,24 @@
+package org.senthilvsh.saffron.ast;
+
+/**
+ * {@code array[index] = value}: stores a value in an array or a map, and evaluates to the value. The array,
+ * the index and the value are evaluated in that order.
+ */
+public class IndexAssignment extends Expression {
+    private final IndexExpression target;
+    private final Expression value;
+
+    public IndexAssignment(IndexExpression target, Expression value, int position, int length) {
+        super(position, length);
+        this.target = target;
+        this.value = value;
+    }
+
+    public IndexExpression getTarget() {
+        return target;
+    }
+
+    public Expression getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,23 @@
+package org.senthilvsh.saffron.ast;
+
+/**
+ * {@code array[index]}: the element of an array at an index, or the value of a key in a map.
+ */
+public class IndexExpression extends Expression {
+    private final Expression array;
+    private final Expression index;
+
+    public IndexExpression(Expression array, Expression index, int position, int length) {
+        super(position, length);
+        this.array = array;
+        this.index = index;
+    }
+
+    public Expression getArray() {
+        return array;
+    }
+
+    public Expression getIndex() {
+        return index;
+    }
+}
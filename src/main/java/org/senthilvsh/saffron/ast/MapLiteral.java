@@ -0,0 +1,25 @@
+package org.senthilvsh.saffron.ast;
+
+import java.util.List;
+
+/**
+ * {@code {k1: v1, k2: v2}}: creates a map of the values of the keys to the values of the values.
+ */
+public class MapLiteral extends Expression {
+    private final List<Expression> keys;
+    private final List<Expression> values;
+
+    public MapLiteral(List<Expression> keys, List<Expression> values, int position, int length) {
+        super(position, length);
+        this.keys = keys;
+        this.values = values;
+    }
+
+    public List<Expression> getKeys() {
+        return keys;
+    }
+
+    public List<Expression> getValues() {
+        return values;
+    }
+}
@@ -1,5 +1,7 @@
 package org.senthilvsh.saffron.ast;
 
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.runtime.Rope;
 import org.senthilvsh.saffron.stdlib.NativeFunction;
 
 import java.util.List;
@@ -27,4 +29,18 @@ public class NativeFunctionDefinition extends FunctionDefinition {
     public NativeFunction getFunction() {
         return function;
     }
+
+    /**
+     * Calls the function with the given arguments, which must be as many as it declares. A
+     * {@link Rope} in the arguments is flattened first, as native functions are always given strings
+     * as a {@link String}.
+     */
+    public Object call(Object[] args) throws NativeFunctionException {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof Rope rope) {
+                args[i] = rope.toString();
+            }
+        }
+        return function.call(args);
+    }
 }
@@ -4,6 +4,8 @@ import java.util.List;
 
 public class Program {
     private final List<Statement> statements;
+    private int frameSize;
+    private List<String> functionNames = List.of();
 
     public Program(List<Statement> statements) {
         this.statements = statements;
@@ -12,4 +14,27 @@ public class Program {
     public List<Statement> getStatements() {
         return statements;
     }
+
+    /**
+     * Number of slots needed for the global variables. Set by the resolver.
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public void setFrameSize(int frameSize) {
+        this.frameSize = frameSize;
+    }
+
+    /**
+     * Names of the functions that the program defines or calls, standard library functions included,
+     * in the order of their slots. Set by the resolver.
+     */
+    public List<String> getFunctionNames() {
+        return functionNames;
+    }
+
+    public void setFunctionNames(List<String> functionNames) {
+        this.functionNames = functionNames;
+    }
 }
@@ -2,6 +2,7 @@ package org.senthilvsh.saffron.ast;
 
 public class ReturnStatement extends Statement {
     private final Expression expression;
+    private boolean tailCall;
 
     public ReturnStatement(Expression expression, int position, int length) {
         super(position, length);
@@ -11,4 +12,17 @@ public class ReturnStatement extends Statement {
     public Expression getExpression() {
         return expression;
     }
+
+    /**
+     * Whether the statement returns the result of a function call directly from a function, outside of
+     * any loop and try-catch statement, so that the call can replace the current call. Set by the
+     * resolver.
+     */
+    public boolean isTailCall() {
+        return tailCall;
+    }
+
+    public void setTailCall(boolean tailCall) {
+        this.tailCall = tailCall;
+    }
 }
@@ -0,0 +1,18 @@
+package org.senthilvsh.saffron.ast;
+
+/**
+ * {@code spawn f(a, b)}: starts a call of a function as a task of its own, and evaluates to the handle
+ * of the task, which is used to join it.
+ */
+public class SpawnExpression extends Expression {
+    private final FunctionCallExpression call;
+
+    public SpawnExpression(FunctionCallExpression call, int position, int length) {
+        super(position, length);
+        this.call = call;
+    }
+
+    public FunctionCallExpression getCall() {
+        return call;
+    }
+}
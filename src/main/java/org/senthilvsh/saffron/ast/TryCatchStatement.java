@@ -5,6 +5,8 @@ public class TryCatchStatement extends Statement {
     private final String exceptionType;
     private final String exceptionMessage;
     private final Statement catchBlock;
+    private int exceptionTypeSlot = -1;
+    private int exceptionMessageSlot = -1;
 
     public TryCatchStatement(Statement tryBlock, String exceptionType, String exceptionMessage,
                              Statement catchBlock, int position, int length) {
@@ -30,4 +32,17 @@ public class TryCatchStatement extends Statement {
     public Statement getCatchBlock() {
         return catchBlock;
     }
+
+    public int getExceptionTypeSlot() {
+        return exceptionTypeSlot;
+    }
+
+    public int getExceptionMessageSlot() {
+        return exceptionMessageSlot;
+    }
+
+    public void setExceptionSlots(int exceptionTypeSlot, int exceptionMessageSlot) {
+        this.exceptionTypeSlot = exceptionTypeSlot;
+        this.exceptionMessageSlot = exceptionMessageSlot;
+    }
 }
@@ -3,11 +3,18 @@ package org.senthilvsh.saffron.ast;
 public class VariableDeclaration extends Statement {
     private final String name;
     private final Expression expression;
+    private final boolean constant;
+    private int slot = -1;
 
     public VariableDeclaration(String name, Expression expression, int position, int length) {
+        this(name, expression, false, position, length);
+    }
+
+    public VariableDeclaration(String name, Expression expression, boolean constant, int position, int length) {
         super(position, length);
         this.name = name;
         this.expression = expression;
+        this.constant = constant;
     }
 
     public String getName() {
@@ -17,4 +24,23 @@ public class VariableDeclaration extends Statement {
     public Expression getExpression() {
         return expression;
     }
+
+    /**
+     * Whether this is a 'const' declaration, whose value is inlined at every use by the
+     * {@link org.senthilvsh.saffron.optimizer.Optimizer}.
+     */
+    public boolean isConstant() {
+        return constant;
+    }
+
+    /**
+     * Index of the declared variable in the current frame. Set by the resolver.
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
 }
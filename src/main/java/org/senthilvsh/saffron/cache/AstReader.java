@@ -0,0 +1,211 @@
+package org.senthilvsh.saffron.cache;
+
+import org.senthilvsh.saffron.ast.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.senthilvsh.saffron.cache.AstWriter.*;
+
+/**
+ * Reads a {@link Program} written by {@link AstWriter}. Malformed input is reported with an
+ * {@link IllegalStateException} or a {@link java.nio.BufferUnderflowException}.
+ */
+class AstReader {
+    private final ByteBuffer in;
+    private String[] strings;
+
+    // Added to every position read, which is relative to the start of the source
+    private final int base;
+
+    AstReader(ByteBuffer in, int base) {
+        this.in = in;
+        this.base = base;
+    }
+
+    Program read() {
+        strings = new String[count()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[count()];
+            in.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        List<Statement> statements = readStatements();
+        if (in.hasRemaining()) {
+            throw new IllegalStateException("Unexpected data after program");
+        }
+        return new Program(statements);
+    }
+
+    private List<Statement> readStatements() {
+        int count = count();
+        List<Statement> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            statements.add(readStatement());
+        }
+        return statements;
+    }
+
+    private Statement readStatement() {
+        Statement statement = readOptionalStatement();
+        if (statement == null) {
+            throw new IllegalStateException("Missing statement");
+        }
+        return statement;
+    }
+
+    private Statement readOptionalStatement() {
+        int tag = in.get();
+        if (tag == NONE) {
+            return null;
+        }
+        int position = readPosition();
+        int length = readInt();
+        return switch (tag) {
+            case EXPRESSION_STATEMENT -> new ExpressionStatement(readExpression(), position, length);
+            case BLOCK_STATEMENT -> new BlockStatement(readStatements(), position, length);
+            case RETURN_STATEMENT -> new ReturnStatement(readOptionalExpression(), position, length);
+            case CONDITIONAL_STATEMENT -> new ConditionalStatement(readExpression(), readStatement(),
+                    readOptionalStatement(), position, length);
+            case TRY_CATCH_STATEMENT -> new TryCatchStatement(readStatement(), readString(), readString(),
+                    readStatement(), position, length);
+            case WHILE_LOOP -> new WhileLoop(readExpression(), readStatement(), position, length);
+            case BREAK_STATEMENT -> new BreakStatement(position, length);
+            case CONTINUE_STATEMENT -> new ContinueStatement(position, length);
+            case VARIABLE_DECLARATION -> new VariableDeclaration(readString(), readOptionalExpression(),
+                    position, length);
+            case CONSTANT_DECLARATION -> new VariableDeclaration(readString(), readExpression(), true,
+                    position, length);
+            case FUNCTION_DEFINITION -> readFunctionDefinition(position, length);
+            case IMPORT_STATEMENT -> new ImportStatement(readString(), position, length);
+            default -> throw new IllegalStateException("Unknown statement tag " + tag);
+        };
+    }
+
+    private FunctionDefinition readFunctionDefinition(int position, int length) {
+        String name = readString();
+        int argumentCount = count();
+        List<String> arguments = new ArrayList<>(argumentCount);
+        for (int i = 0; i < argumentCount; i++) {
+            arguments.add(readString());
+        }
+        int namePosition = readPosition();
+        int nameLength = readInt();
+        if (!(readStatement() instanceof BlockStatement body)) {
+            throw new IllegalStateException("Function body must be a block");
+        }
+        return new FunctionDefinition(name, arguments, body, position, length, namePosition, nameLength);
+    }
+
+    private Expression readExpression() {
+        Expression expression = readOptionalExpression();
+        if (expression == null) {
+            throw new IllegalStateException("Missing expression");
+        }
+        return expression;
+    }
+
+    private Expression readOptionalExpression() {
+        int tag = in.get();
+        if (tag == NONE) {
+            return null;
+        }
+        int position = readPosition();
+        int length = readInt();
+        return switch (tag) {
+            case NUMBER_LITERAL -> new NumberLiteral(Double.longBitsToDouble(in.getLong()), position, length);
+            case STRING_LITERAL -> new StringLiteral(readString(), position, length);
+            case BOOLEAN_LITERAL -> new BooleanLiteral(in.get() != 0, position, length);
+            case IDENTIFIER -> new Identifier(readString(), position, length);
+            case FUNCTION_CALL -> {
+                String name = readString();
+                int argumentCount = count();
+                List<Expression> arguments = new ArrayList<>(argumentCount);
+                for (int i = 0; i < argumentCount; i++) {
+                    arguments.add(readExpression());
+                }
+                yield new FunctionCallExpression(name, arguments, position, length);
+            }
+            case SPAWN_EXPRESSION -> new SpawnExpression((FunctionCallExpression) readExpression(), position, length);
+            case UNARY_EXPRESSION -> {
+                String operator = readString();
+                int operatorPosition = readPosition();
+                int operatorLength = readInt();
+                yield new UnaryExpression(operator, readExpression(), position, length, operatorPosition, operatorLength);
+            }
+            case BINARY_EXPRESSION -> {
+                String operator = readString();
+                int operatorPosition = readPosition();
+                int operatorLength = readInt();
+                Expression left = readExpression();
+                Expression right = readExpression();
+                yield new BinaryExpression(left, operator, right, position, length, operatorPosition, operatorLength);
+            }
+            case ARRAY_LITERAL -> {
+                int elementCount = count();
+                List<Expression> elements = new ArrayList<>(elementCount);
+                for (int i = 0; i < elementCount; i++) {
+                    elements.add(readExpression());
+                }
+                yield new ArrayLiteral(elements, position, length);
+            }
+            case MAP_LITERAL -> {
+                int entryCount = count();
+                List<Expression> keys = new ArrayList<>(entryCount);
+                List<Expression> values = new ArrayList<>(entryCount);
+                for (int i = 0; i < entryCount; i++) {
+                    keys.add(readExpression());
+                    values.add(readExpression());
+                }
+                yield new MapLiteral(keys, values, position, length);
+            }
+            case INDEX_EXPRESSION -> {
+                Expression array = readExpression();
+                Expression index = readExpression();
+                yield new IndexExpression(array, index, position, length);
+            }
+            case INDEX_ASSIGNMENT -> {
+                IndexExpression target = (IndexExpression) readExpression();
+                yield new IndexAssignment(target, readExpression(), position, length);
+            }
+            default -> throw new IllegalStateException("Unknown expression tag " + tag);
+        };
+    }
+
+    private int readPosition() {
+        return base + readInt();
+    }
+
+    private String readString() {
+        int index = readInt();
+        if (index < 0 || index >= strings.length) {
+            throw new IllegalStateException("Invalid string index " + index);
+        }
+        return strings[index];
+    }
+
+    /**
+     * Reads a size, which cannot be larger than the rest of the input.
+     */
+    private int count() {
+        int count = readInt();
+        if (count < 0 || count > in.remaining()) {
+            throw new IllegalStateException("Invalid count " + count);
+        }
+        return count;
+    }
+
+    private int readInt() {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get();
+            v |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IllegalStateException("Malformed integer");
+    }
+}
@@ -0,0 +1,245 @@
+package org.senthilvsh.saffron.cache;
+
+import org.senthilvsh.saffron.ast.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes a parsed {@link Program} into the compact binary form read by {@link AstReader}.
+ * <p>
+ * The output starts with a table of all names and string values used in the program, followed by the
+ * nodes in prefix order. Each node is a tag byte followed by its fields; strings are written as
+ * indexes into the table and integers as variable-length quantities, so small positions and lengths
+ * take a single byte. Positions are written relative to the start of the source, so that a program
+ * parsed as an imported file can be read back at any position (see {@link org.senthilvsh.saffron.parser.Lexer}).
+ */
+class AstWriter {
+    static final int NONE = 0;
+
+    static final int EXPRESSION_STATEMENT = 1;
+    static final int BLOCK_STATEMENT = 2;
+    static final int RETURN_STATEMENT = 3;
+    static final int CONDITIONAL_STATEMENT = 4;
+    static final int TRY_CATCH_STATEMENT = 5;
+    static final int WHILE_LOOP = 6;
+    static final int BREAK_STATEMENT = 7;
+    static final int CONTINUE_STATEMENT = 8;
+    static final int VARIABLE_DECLARATION = 9;
+    static final int FUNCTION_DEFINITION = 10;
+    static final int CONSTANT_DECLARATION = 11;
+    static final int IMPORT_STATEMENT = 12;
+
+    static final int NUMBER_LITERAL = 20;
+    static final int STRING_LITERAL = 21;
+    static final int BOOLEAN_LITERAL = 22;
+    static final int IDENTIFIER = 23;
+    static final int FUNCTION_CALL = 24;
+    static final int UNARY_EXPRESSION = 25;
+    static final int BINARY_EXPRESSION = 26;
+    static final int SPAWN_EXPRESSION = 27;
+    static final int ARRAY_LITERAL = 28;
+    static final int INDEX_EXPRESSION = 29;
+    static final int INDEX_ASSIGNMENT = 30;
+    static final int MAP_LITERAL = 31;
+
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+    private final ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+
+    // Position at which the source of the program starts
+    private final int base;
+
+    AstWriter(int base) {
+        this.base = base;
+    }
+
+    byte[] write(Program program) {
+        List<Statement> statements = program.getStatements();
+        writeInt(nodes, statements.size());
+        for (Statement s : statements) {
+            write(s);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(nodes.size() + 16 * strings.size());
+        writeInt(out, strings.size());
+        for (String s : strings.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeInt(out, bytes.length);
+            out.writeBytes(bytes);
+        }
+        out.writeBytes(nodes.toByteArray());
+        return out.toByteArray();
+    }
+
+    private void write(Statement statement) {
+        if (statement instanceof ExpressionStatement es) {
+            begin(EXPRESSION_STATEMENT, statement);
+            write(es.getExpression());
+        } else if (statement instanceof BlockStatement bs) {
+            begin(BLOCK_STATEMENT, statement);
+            writeInt(nodes, bs.getStatements().size());
+            for (Statement s : bs.getStatements()) {
+                write(s);
+            }
+        } else if (statement instanceof ReturnStatement rs) {
+            begin(RETURN_STATEMENT, statement);
+            writeOptional(rs.getExpression());
+        } else if (statement instanceof ConditionalStatement cs) {
+            begin(CONDITIONAL_STATEMENT, statement);
+            write(cs.getCondition());
+            write(cs.getTrueClause());
+            if (cs.getFalseClause() != null) {
+                write(cs.getFalseClause());
+            } else {
+                nodes.write(NONE);
+            }
+        } else if (statement instanceof TryCatchStatement tcs) {
+            begin(TRY_CATCH_STATEMENT, statement);
+            write(tcs.getTryBlock());
+            writeString(tcs.getExceptionType());
+            writeString(tcs.getExceptionMessage());
+            write(tcs.getCatchBlock());
+        } else if (statement instanceof WhileLoop wl) {
+            begin(WHILE_LOOP, statement);
+            write(wl.getCondition());
+            write(wl.getBody());
+        } else if (statement instanceof BreakStatement) {
+            begin(BREAK_STATEMENT, statement);
+        } else if (statement instanceof ContinueStatement) {
+            begin(CONTINUE_STATEMENT, statement);
+        } else if (statement instanceof VariableDeclaration vd) {
+            begin(vd.isConstant() ? CONSTANT_DECLARATION : VARIABLE_DECLARATION, statement);
+            writeString(vd.getName());
+            writeOptional(vd.getExpression());
+        } else if (statement instanceof FunctionDefinition fd) {
+            begin(FUNCTION_DEFINITION, statement);
+            writeString(fd.getName());
+            writeInt(nodes, fd.getArguments().size());
+            for (String argument : fd.getArguments()) {
+                writeString(argument);
+            }
+            writePosition(fd.getNamePosition());
+            writeInt(nodes, fd.getNameLength());
+            write(fd.getBody());
+        } else if (statement instanceof ImportStatement is) {
+            begin(IMPORT_STATEMENT, statement);
+            writeString(is.getPath());
+        } else {
+            throw new IllegalArgumentException("Unknown statement type " + statement.getClass());
+        }
+    }
+
+    private void write(Expression expression) {
+        if (expression instanceof NumberLiteral n) {
+            begin(NUMBER_LITERAL, expression);
+            long bits = Double.doubleToRawLongBits(n.getValue());
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                nodes.write((int) (bits >>> shift));
+            }
+        } else if (expression instanceof StringLiteral s) {
+            begin(STRING_LITERAL, expression);
+            writeString(s.getValue());
+        } else if (expression instanceof BooleanLiteral b) {
+            begin(BOOLEAN_LITERAL, expression);
+            nodes.write(b.getValue() ? 1 : 0);
+        } else if (expression instanceof Identifier i) {
+            begin(IDENTIFIER, expression);
+            writeString(i.getName());
+        } else if (expression instanceof FunctionCallExpression call) {
+            begin(FUNCTION_CALL, expression);
+            writeString(call.getName());
+            writeInt(nodes, call.getArguments().size());
+            for (Expression e : call.getArguments()) {
+                write(e);
+            }
+        } else if (expression instanceof SpawnExpression spawn) {
+            begin(SPAWN_EXPRESSION, expression);
+            write(spawn.getCall());
+        } else if (expression instanceof UnaryExpression u) {
+            begin(UNARY_EXPRESSION, expression);
+            writeString(u.getOperator());
+            writePosition(u.getOperatorPosition());
+            writeInt(nodes, u.getOperatorLength());
+            write(u.getOperand());
+        } else if (expression instanceof BinaryExpression b) {
+            begin(BINARY_EXPRESSION, expression);
+            writeString(b.getOperator());
+            writePosition(b.getOperatorPosition());
+            writeInt(nodes, b.getOperatorLength());
+            write(b.getLeft());
+            write(b.getRight());
+        } else if (expression instanceof ArrayLiteral a) {
+            begin(ARRAY_LITERAL, expression);
+            writeInt(nodes, a.getElements().size());
+            for (Expression e : a.getElements()) {
+                write(e);
+            }
+        } else if (expression instanceof MapLiteral m) {
+            begin(MAP_LITERAL, expression);
+            writeInt(nodes, m.getKeys().size());
+            for (int i = 0; i < m.getKeys().size(); i++) {
+                write(m.getKeys().get(i));
+                write(m.getValues().get(i));
+            }
+        } else if (expression instanceof IndexExpression i) {
+            begin(INDEX_EXPRESSION, expression);
+            write(i.getArray());
+            write(i.getIndex());
+        } else if (expression instanceof IndexAssignment a) {
+            begin(INDEX_ASSIGNMENT, expression);
+            write(a.getTarget());
+            write(a.getValue());
+        } else {
+            throw new IllegalArgumentException("Unknown expression type " + expression.getClass());
+        }
+    }
+
+    private void writeOptional(Expression expression) {
+        if (expression != null) {
+            write(expression);
+        } else {
+            nodes.write(NONE);
+        }
+    }
+
+    private void begin(int tag, Statement statement) {
+        nodes.write(tag);
+        writePosition(statement.getPosition());
+        writeInt(nodes, statement.getLength());
+    }
+
+    private void begin(int tag, Expression expression) {
+        nodes.write(tag);
+        writePosition(expression.getPosition());
+        writeInt(nodes, expression.getLength());
+    }
+
+    private void writePosition(int position) {
+        writeInt(nodes, position - base);
+    }
+
+    private void writeString(String s) {
+        Integer index = strings.get(s);
+        if (index == null) {
+            index = strings.size();
+            strings.put(s, index);
+        }
+        writeInt(nodes, index);
+    }
+
+    /**
+     * Writes an int in 7-bit groups, least significant first. Negative values are zigzag-encoded so
+     * they stay short too.
+     */
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        int v = (value << 1) ^ (value >> 31);
+        while ((v & ~0x7f) != 0) {
+            out.write((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+}
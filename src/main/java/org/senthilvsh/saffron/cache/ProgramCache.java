@@ -0,0 +1,172 @@
+package org.senthilvsh.saffron.cache;
+
+import org.senthilvsh.saffron.ast.Program;
+import org.senthilvsh.saffron.parser.Lexer;
+import org.senthilvsh.saffron.parser.ParseError;
+import org.senthilvsh.saffron.parser.Parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.zip.CRC32;
+
+/**
+ * Cache of parsed programs, so that a script that is run again does not have to be lexed and parsed.
+ * <p>
+ * Entries are files named after a SHA-256 hash of the Saffron version and the source code, so an
+ * entry is never used for a different source or by a different version. Each entry holds a header,
+ * the hash and a CRC-32 checksum of the serialized program (see {@link AstWriter}); an entry that does
+ * not match is treated as missing and rewritten. Entries are read through a memory mapping and written
+ * to a temporary file first, so concurrent runs of the same script never see a partial entry.
+ * <p>
+ * The cache is an optimization only: if the cache directory cannot be read or written, programs are
+ * parsed as usual.
+ */
+public class ProgramCache {
+    private static final byte[] MAGIC = {'S', 'A', 'F', 'C'};
+    private static final int FORMAT_VERSION = 6;
+    private static final int KEY_LENGTH = 32;
+    private static final int HEADER_LENGTH = MAGIC.length + 4 + KEY_LENGTH + 4 + 8;
+
+    private final Path directory;
+    private final String version;
+
+    public ProgramCache(Path directory, String version) {
+        this.directory = directory;
+        this.version = version != null ? version : "";
+    }
+
+    /**
+     * Returns the cache in the directory named by the SAFFRON_CACHE_DIR environment variable, or in
+     * .saffron/cache in the user's home directory.
+     */
+    public static ProgramCache getDefault(String version) {
+        String configured = System.getenv("SAFFRON_CACHE_DIR");
+        Path directory = configured != null && !configured.isBlank()
+                ? Path.of(configured)
+                : Path.of(System.getProperty("user.home"), ".saffron", "cache");
+        return new ProgramCache(directory, version);
+    }
+
+    /**
+     * Parses a UTF-8 encoded source file, or loads the program from the cache if it has been parsed
+     * before.
+     */
+    public Program parse(Path input) throws IOException, ParseError {
+        return parse(input, 0);
+    }
+
+    /**
+     * Parses a source file as if it started at the given position (see {@link Lexer}). Entries do not
+     * depend on the position, so an imported file is cached once whatever position it is loaded at.
+     */
+    public Program parse(Path input, int base) throws IOException, ParseError {
+        ByteBuffer source;
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return new Parser(Lexer.forFile(input, base)).parse();
+            }
+            source = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        byte[] key = key(source.duplicate());
+        Path entry = directory.resolve(HexFormat.of().formatHex(key) + ".ast");
+        Program program = read(entry, key, base);
+        if (program == null) {
+            program = new Parser(Lexer.forBuffer(source, base)).parse();
+            write(entry, key, program, base);
+        }
+        return program;
+    }
+
+    private byte[] key(ByteBuffer source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(version.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(source);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Program read(Path entry, byte[] key, int base) {
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_LENGTH || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            byte[] magic = new byte[MAGIC.length];
+            in.get(magic);
+            byte[] storedKey = new byte[KEY_LENGTH];
+            int formatVersion = in.getInt();
+            in.get(storedKey);
+            int length = in.getInt();
+            long checksum = in.getLong();
+            if (!Arrays.equals(magic, MAGIC) || formatVersion != FORMAT_VERSION
+                    || !Arrays.equals(storedKey, key) || length != in.remaining()) {
+                return null;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(in.duplicate());
+            if (crc.getValue() != checksum) {
+                return null;
+            }
+            return new AstReader(in, base).read();
+        } catch (IOException | RuntimeException e) {
+            // A missing, stale or corrupted entry is rebuilt by the caller
+            return null;
+        }
+    }
+
+    private void write(Path entry, byte[] key, Program program, int base) {
+        Path temp = null;
+        try {
+            byte[] payload = new AstWriter(base).write(program);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.put(MAGIC);
+            header.putInt(FORMAT_VERSION);
+            header.put(key);
+            header.putInt(payload.length);
+            header.putLong(crc.getValue());
+            header.flip();
+
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer[] buffers = {header, ByteBuffer.wrap(payload)};
+                while (buffers[1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+            }
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        } catch (IOException | RuntimeException e) {
+            // The program has been parsed already; it just will not be cached
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Nothing else can be done about it
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.senthilvsh.saffron.closure;
+
+import org.senthilvsh.saffron.ast.BinaryExpression;
+import org.senthilvsh.saffron.runtime.Frame;
+import org.senthilvsh.saffron.runtime.Operators;
+import org.senthilvsh.saffron.runtime.RuntimeError;
+
+/**
+ * The operators '+', '-', '*', '/' and '%', specialized for numbers.
+ * <p>
+ * Each operator is a class of its own with its own copy of the fast path, so the calls from each
+ * operator to its operands are profiled, and inlined by the JIT compiler, separately.
+ */
+abstract class ArithmeticNode extends BinaryNode {
+    ArithmeticNode(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+        super(expression, left, right);
+    }
+
+    static ArithmeticNode create(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+        return switch (expression.getOperator()) {
+            case "+" -> new Add(expression, left, right);
+            case "-" -> new Subtract(expression, left, right);
+            case "*" -> new Multiply(expression, left, right);
+            case "/" -> new Divide(expression, left, right);
+            case "%" -> new Modulo(expression, left, right);
+            default -> throw new IllegalArgumentException(expression.getOperator());
+        };
+    }
+
+    @Override
+    public final Object evaluate(Frame frame) throws RuntimeError {
+        if (state != SPECIALIZED) {
+            return evaluateGeneric(frame);
+        }
+        try {
+            return evaluateNumber(frame);
+        } catch (UnexpectedResultException ex) {
+            // The node has just been deoptimized, and the generic path produced a string
+            return ex.getResult();
+        }
+    }
+
+    @Override
+    boolean isSpecializable(Object operand) {
+        return operand instanceof Double;
+    }
+
+    static final class Add extends ArithmeticNode {
+        Add(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+            super(expression, left, right);
+        }
+
+        @Override
+        public double evaluateNumber(Frame frame) throws RuntimeError, UnexpectedResultException {
+            if (state != SPECIALIZED) {
+                return number(evaluateGeneric(frame));
+            }
+            double l;
+            try {
+                l = left.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return number(deoptimize(frame, ex.getResult()));
+            }
+            double r;
+            try {
+                r = right.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return number(deoptimize(l, ex.getResult()));
+            }
+            return l + r;
+        }
+
+        @Override
+        Object apply(Object l, Object r) {
+            return Operators.add(l, r);
+        }
+    }
+
+    static final class Subtract extends ArithmeticNode {
+        Subtract(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+            super(expression, left, right);
+        }
+
+        @Override
+        public double evaluateNumber(Frame frame) throws RuntimeError, UnexpectedResultException {
+            if (state != SPECIALIZED) {
+                return number(evaluateGeneric(frame));
+            }
+            double l;
+            try {
+                l = left.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return number(deoptimize(frame, ex.getResult()));
+            }
+            double r;
+            try {
+                r = right.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return number(deoptimize(l, ex.getResult()));
+            }
+            return l - r;
+        }
+
+        @Override
+        Object apply(Object l, Object r) {
+            return Operators.subtract(l, r);
+        }
+    }
+
+    static final class Multiply extends ArithmeticNode {
+        Multiply(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+            super(expression, left, right);
+        }
+
+        @Override
+        public double evaluateNumber(Frame frame) throws RuntimeError, UnexpectedResultException {
+            if (state != SPECIALIZED) {
+                return number(evaluateGeneric(frame));
+            }
+            double l;
+            try {
+                l = left.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return number(deoptimize(frame, ex.getResult()));
+            }
+            double r;
+            try {
+                r = right.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return number(deoptimize(l, ex.getResult()));
+            }
+            return l * r;
+        }
+
+        @Override
+        Object apply(Object l, Object r) {
+            return Operators.multiply(l, r);
+        }
+    }
+
+    static final class Divide extends ArithmeticNode {
+        Divide(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+            super(expression, left, right);
+        }
+
+        @Override
+        public double evaluateNumber(Frame frame) throws RuntimeError, UnexpectedResultException {
+            if (state != SPECIALIZED) {
+                return number(evaluateGeneric(frame));
+            }
+            double l;
+            try {
+                l = left.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return number(deoptimize(frame, ex.getResult()));
+            }
+            double r;
+            try {
+                r = right.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return number(deoptimize(l, ex.getResult()));
+            }
+            return l / r;
+        }
+
+        @Override
+        Object apply(Object l, Object r) {
+            return Operators.divide(l, r);
+        }
+    }
+
+    static final class Modulo extends ArithmeticNode {
+        Modulo(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+            super(expression, left, right);
+        }
+
+        @Override
+        public double evaluateNumber(Frame frame) throws RuntimeError, UnexpectedResultException {
+            if (state != SPECIALIZED) {
+                return number(evaluateGeneric(frame));
+            }
+            double l;
+            try {
+                l = left.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return number(deoptimize(frame, ex.getResult()));
+            }
+            double r;
+            try {
+                r = right.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return number(deoptimize(l, ex.getResult()));
+            }
+            return l % r;
+        }
+
+        @Override
+        Object apply(Object l, Object r) {
+            return Operators.modulo(l, r);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.senthilvsh.saffron.closure;
+
+import org.senthilvsh.saffron.ast.BinaryExpression;
+import org.senthilvsh.saffron.runtime.Frame;
+import org.senthilvsh.saffron.runtime.RuntimeError;
+
+/**
+ * A binary operator that specializes itself for the types of the operands it sees.
+ * <p>
+ * A node starts out uninitialized and evaluates its first operands with the generic operator helpers.
+ * If both operands were of the type the node has a fast path for, it switches to that fast path, which
+ * works on primitive values and asks its operands for primitive values too, so nested arithmetic does
+ * not box its intermediate results. The first time the fast path gets an operand of another type, the
+ * node goes back to the generic path for good, so a node changes its state at most twice.
+ */
+abstract class BinaryNode implements CompiledExpression {
+    static final int UNINITIALIZED = 0;
+    static final int SPECIALIZED = 1;
+    static final int GENERIC = 2;
+
+    final BinaryExpression expression;
+    final CompiledExpression left;
+    final CompiledExpression right;
+    int state = UNINITIALIZED;
+
+    BinaryNode(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+        this.expression = expression;
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Returns whether the fast path of this node can handle the operand.
+     */
+    abstract boolean isSpecializable(Object operand);
+
+    /**
+     * Applies the operator with the helpers in {@link org.senthilvsh.saffron.runtime.Operators}.
+     */
+    abstract Object apply(Object l, Object r);
+
+    Object evaluateGeneric(Frame frame) throws RuntimeError {
+        Object l = left.evaluate(frame);
+        Object r = right.evaluate(frame);
+        if (state == UNINITIALIZED) {
+            state = isSpecializable(l) && isSpecializable(r) ? SPECIALIZED : GENERIC;
+        }
+        return applyGeneric(l, r);
+    }
+
+    /**
+     * Called when the fast path got a left operand it cannot handle. Switches to the generic path and
+     * finishes the evaluation there.
+     */
+    Object deoptimize(Frame frame, Object l) throws RuntimeError {
+        state = GENERIC;
+        return applyGeneric(l, right.evaluate(frame));
+    }
+
+    /**
+     * Called when the fast path got a right operand it cannot handle, after evaluating the left one.
+     */
+    Object deoptimize(Object l, Object r) throws RuntimeError {
+        state = GENERIC;
+        return applyGeneric(l, r);
+    }
+
+    private Object applyGeneric(Object l, Object r) throws RuntimeError {
+        try {
+            return apply(l, r);
+        } catch (RuntimeException ex) {
+            throw ClosureCompiler.binaryError(expression, l, r);
+        }
+    }
+
+    static double number(Object value) throws UnexpectedResultException {
+        if (value instanceof Double d) {
+            return d;
+        }
+        throw new UnexpectedResultException(value);
+    }
+
+    static boolean bool(Object value) throws UnexpectedResultException {
+        if (value instanceof Boolean b) {
+            return b;
+        }
+        throw new UnexpectedResultException(value);
+    }
+}
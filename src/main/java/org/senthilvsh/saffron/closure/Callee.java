@@ -0,0 +1,15 @@
+package org.senthilvsh.saffron.closure;
+
+import org.senthilvsh.saffron.ast.FunctionDefinition;
+
+/**
+ * The function bound to a name. Every call to the name shares this object, and it is filled in when
+ * the function definition is executed (native functions are bound from the start). Tasks started
+ * after a definition has been executed see it, as starting a thread publishes everything before it.
+ */
+class Callee {
+    FunctionDefinition definition;
+
+    // Compiled body of a user-defined function
+    CompiledStatement body;
+}
@@ -0,0 +1,556 @@
+package org.senthilvsh.saffron.closure;
+
+import org.senthilvsh.saffron.ast.*;
+import org.senthilvsh.saffron.events.ExceptionCaughtEvent;
+import org.senthilvsh.saffron.events.FunctionCallEvent;
+import org.senthilvsh.saffron.events.NativeCallEvent;
+import org.senthilvsh.saffron.runtime.*;
+import org.senthilvsh.saffron.runtime.Dictionary;
+import org.senthilvsh.saffron.stdlib.NativeFunctionsRegistry;
+import org.senthilvsh.saffron.stdlib.task.TaskTable;
+
+import java.util.*;
+
+/**
+ * Compiles a program that has been processed by the {@link org.senthilvsh.saffron.resolver.Resolver}
+ * into a tree of closures.
+ * <p>
+ * Everything that the tree-walking interpreter decides on every visit of a node (the kind of node, the
+ * operator of an expression, the frame a variable lives in, whether a 'return', 'break' or 'continue'
+ * is allowed) is decided once here, and each closure only does the remaining work. A 'return', 'break'
+ * or 'continue' in a place where it is not allowed compiles to a closure that raises the error, so it
+ * is still raised only when the statement is reached.
+ */
+class ClosureCompiler {
+    private static final StatementResult NORMAL = new StatementResult(StatementResultType.NORMAL);
+    private static final StatementResult BREAK = new StatementResult(StatementResultType.BREAK);
+    private static final StatementResult CONTINUE = new StatementResult(StatementResultType.CONTINUE);
+
+    private final Map<String, Callee> callees = new HashMap<>();
+    private final TaskTable tasks = new TaskTable();
+
+    // The innermost function or loop enclosing the statement being compiled
+    private Statement enclosing;
+
+    ClosureCompiler() {
+        NativeFunctionsRegistry.getAll(tasks).forEach((name, definition) -> callee(name).definition = definition);
+    }
+
+    CompiledStatement[] compile(Program program) {
+        return compile(program.getStatements());
+    }
+
+    private CompiledStatement[] compile(List<Statement> statements) {
+        CompiledStatement[] compiled = new CompiledStatement[statements.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = compile(statements.get(i));
+        }
+        return compiled;
+    }
+
+    private CompiledStatement compile(Statement statement) {
+        if (statement instanceof ExpressionStatement es) {
+            CompiledExpression expression = compile(es.getExpression());
+            return frame -> {
+                expression.evaluate(frame);
+                return NORMAL;
+            };
+        } else if (statement instanceof BlockStatement bs) {
+            return compileBlock(bs);
+        } else if (statement instanceof ReturnStatement rs) {
+            return compileReturn(rs);
+        } else if (statement instanceof ConditionalStatement cs) {
+            return compileConditional(cs);
+        } else if (statement instanceof TryCatchStatement tcs) {
+            return compileTryCatch(tcs);
+        } else if (statement instanceof WhileLoop wl) {
+            return compileWhileLoop(wl);
+        } else if (statement instanceof BreakStatement bs) {
+            if (!(enclosing instanceof WhileLoop)) {
+                return fail("A 'break' statement can be present only inside a loop", bs);
+            }
+            return frame -> BREAK;
+        } else if (statement instanceof ContinueStatement cs) {
+            if (!(enclosing instanceof WhileLoop)) {
+                return fail("A 'continue' statement can be present only inside a loop", cs);
+            }
+            return frame -> CONTINUE;
+        } else if (statement instanceof VariableDeclaration vd) {
+            return compileVariableDeclaration(vd);
+        } else if (statement instanceof FunctionDefinition fd) {
+            return compileFunctionDefinition(fd);
+        }
+        return frame -> NORMAL;
+    }
+
+    private CompiledStatement compileBlock(BlockStatement bs) {
+        CompiledStatement[] statements = compile(bs.getStatements());
+        if (statements.length == 0) {
+            return frame -> NORMAL;
+        }
+        if (statements.length == 1) {
+            return statements[0];
+        }
+        return frame -> {
+            StatementResult result = NORMAL;
+            for (CompiledStatement s : statements) {
+                result = s.execute(frame);
+                if (result.getType() != StatementResultType.NORMAL) {
+                    break;
+                }
+            }
+            return result;
+        };
+    }
+
+    private CompiledStatement compileReturn(ReturnStatement rs) {
+        if (!(enclosing instanceof FunctionDefinition)) {
+            return fail("A 'return' statement can only be present inside a function", rs);
+        }
+        if (rs.getExpression() == null) {
+            return frame -> new ReturnStatementResult(null);
+        }
+        if (rs.isTailCall()) {
+            return compileTailCall((FunctionCallExpression) rs.getExpression());
+        }
+        CompiledExpression expression = compile(rs.getExpression());
+        return frame -> new ReturnStatementResult(expression.evaluate(frame));
+    }
+
+    private CompiledStatement compileTailCall(FunctionCallExpression call) {
+        CompiledExpression[] arguments = compileArguments(call.getArguments());
+        Callee callee = callee(call.getName());
+        return frame -> {
+            Object[] args = evaluateArguments(arguments, frame);
+            FunctionDefinition fd = definition(callee, call, args);
+            if (fd instanceof NativeFunctionDefinition nfd) {
+                return new ReturnStatementResult(callNative(nfd, args));
+            }
+            // Made by the caller once this function has returned
+            return new TailCall(callee, args);
+        };
+    }
+
+    private CompiledStatement compileConditional(ConditionalStatement cs) {
+        Expression conditionExpression = cs.getCondition();
+        CompiledExpression condition = compile(conditionExpression);
+        CompiledStatement trueClause = compile(cs.getTrueClause());
+        CompiledStatement falseClause = cs.getFalseClause() != null ? compile(cs.getFalseClause()) : frame -> NORMAL;
+        return frame -> {
+            boolean conditionResult;
+            try {
+                conditionResult = condition.evaluateBoolean(frame);
+            } catch (UnexpectedResultException ex) {
+                throw new RuntimeError("The condition of an 'if' statement must be a boolean expression",
+                        conditionExpression.getPosition(), conditionExpression.getLength());
+            }
+            return conditionResult ? trueClause.execute(frame) : falseClause.execute(frame);
+        };
+    }
+
+    private CompiledStatement compileTryCatch(TryCatchStatement tcs) {
+        CompiledStatement tryBlock = compile(tcs.getTryBlock());
+        CompiledStatement catchBlock = compile(tcs.getCatchBlock());
+        int typeSlot = tcs.getExceptionTypeSlot();
+        int messageSlot = tcs.getExceptionMessageSlot();
+        return frame -> {
+            try {
+                return tryBlock.execute(frame);
+            } catch (NativeFunctionException ex) {
+                new ExceptionCaughtEvent(ex.getType(), ex.getMessage()).commit();
+                frame.set(typeSlot, ex.getType());
+                frame.set(messageSlot, ex.getMessage());
+                // The result of the catch block is discarded, as in the tree-walking interpreter
+                catchBlock.execute(frame);
+                return NORMAL;
+            }
+        };
+    }
+
+    private CompiledStatement compileWhileLoop(WhileLoop wl) {
+        Expression conditionExpression = wl.getCondition();
+        CompiledExpression condition = compile(conditionExpression);
+        Statement outer = enclosing;
+        enclosing = wl;
+        CompiledStatement body = compile(wl.getBody());
+        enclosing = outer;
+        return frame -> {
+            boolean conditionResult;
+            try {
+                conditionResult = condition.evaluateBoolean(frame);
+            } catch (UnexpectedResultException ex) {
+                throw new RuntimeError("The condition of a 'while' loop must be a boolean expression",
+                        conditionExpression.getPosition(), conditionExpression.getLength());
+            }
+            while (conditionResult) {
+                if (body.execute(frame).getType() == StatementResultType.BREAK) {
+                    break;
+                }
+                try {
+                    conditionResult = condition.evaluateBoolean(frame);
+                } catch (UnexpectedResultException ex) {
+                    // Only the first evaluation is checked, as in the tree-walking interpreter
+                    Boolean result = (Boolean) ex.getResult();
+                    conditionResult = result != null && result;
+                }
+            }
+            return NORMAL;
+        };
+    }
+
+    private CompiledStatement compileVariableDeclaration(VariableDeclaration vd) {
+        int slot = vd.getSlot();
+        if (vd.getExpression() == null) {
+            return frame -> {
+                frame.set(slot, null);
+                return NORMAL;
+            };
+        }
+        CompiledExpression expression = compile(vd.getExpression());
+        return frame -> {
+            frame.set(slot, expression.evaluate(frame));
+            return NORMAL;
+        };
+    }
+
+    private CompiledStatement compileFunctionDefinition(FunctionDefinition fd) {
+        Statement outer = enclosing;
+        enclosing = fd;
+        CompiledStatement body = compile(fd.getBody());
+        enclosing = outer;
+
+        Callee callee = callee(fd.getName());
+        return frame -> {
+            if (callee.definition != null) {
+                throw new RuntimeError(
+                        String.format("Function re-declaration: %s", fd.getName()),
+                        fd.getNamePosition(),
+                        fd.getNameLength());
+            }
+            callee.definition = fd;
+            callee.body = body;
+            return NORMAL;
+        };
+    }
+
+    private CompiledExpression compile(Expression expression) {
+        if (expression instanceof NumberLiteral n) {
+            Double value = n.getValue();
+            return frame -> value;
+        }
+        if (expression instanceof StringLiteral s) {
+            String value = s.getValue();
+            return frame -> value;
+        }
+        if (expression instanceof BooleanLiteral b) {
+            Boolean value = b.getValue();
+            return frame -> value;
+        }
+        if (expression instanceof Identifier i) {
+            return compileIdentifier(i);
+        }
+        if (expression instanceof FunctionCallExpression call) {
+            return compileCall(call);
+        }
+        if (expression instanceof SpawnExpression spawn) {
+            return compileSpawn(spawn.getCall());
+        }
+        if (expression instanceof UnaryExpression unaryExpression) {
+            return compileUnary(unaryExpression);
+        }
+        if (expression instanceof BinaryExpression binaryExpression) {
+            if ("=".equals(binaryExpression.getOperator())) {
+                return compileAssignment(binaryExpression);
+            }
+            return compileBinary(binaryExpression);
+        }
+        if (expression instanceof ArrayLiteral arrayLiteral) {
+            CompiledExpression[] elements = compileArguments(arrayLiteral.getElements());
+            return frame -> new Array(evaluateArguments(elements, frame));
+        }
+        if (expression instanceof MapLiteral mapLiteral) {
+            CompiledExpression[] keys = compileArguments(mapLiteral.getKeys());
+            CompiledExpression[] values = compileArguments(mapLiteral.getValues());
+            return frame -> {
+                Dictionary map = new Dictionary();
+                for (int i = 0; i < keys.length; i++) {
+                    Object key = keys[i].evaluate(frame);
+                    map.put(key, values[i].evaluate(frame));
+                }
+                return map;
+            };
+        }
+        if (expression instanceof IndexExpression indexExpression) {
+            return compileIndex(indexExpression);
+        }
+        if (expression instanceof IndexAssignment indexAssignment) {
+            return compileIndexAssignment(indexAssignment);
+        }
+        return frame -> {
+            throw new RuntimeError("Unknown expression type", expression.getPosition(), expression.getLength());
+        };
+    }
+
+    private CompiledExpression compileIndex(IndexExpression indexExpression) {
+        CompiledExpression array = compile(indexExpression.getArray());
+        CompiledExpression index = compile(indexExpression.getIndex());
+        return frame -> {
+            Object a = array.evaluate(frame);
+            Object i = index.evaluate(frame);
+            if (a instanceof Dictionary map) {
+                return map.get(i);
+            }
+            if (!(a instanceof Array target) || !(i instanceof Double n)) {
+                throw indexError(indexExpression, a, i);
+            }
+            return target.get(n);
+        };
+    }
+
+    private CompiledExpression compileIndexAssignment(IndexAssignment indexAssignment) {
+        IndexExpression indexExpression = indexAssignment.getTarget();
+        CompiledExpression array = compile(indexExpression.getArray());
+        CompiledExpression index = compile(indexExpression.getIndex());
+        CompiledExpression value = compile(indexAssignment.getValue());
+        return frame -> {
+            Object a = array.evaluate(frame);
+            Object i = index.evaluate(frame);
+            Object v = value.evaluate(frame);
+            if (a instanceof Dictionary map) {
+                map.put(i, v);
+                return v;
+            }
+            if (!(a instanceof Array target) || !(i instanceof Double n)) {
+                throw indexError(indexExpression, a, i);
+            }
+            target.set(n, v);
+            return v;
+        };
+    }
+
+    private CompiledExpression compileIdentifier(Identifier i) {
+        int slot = i.getSlot();
+        if (i.getDepth() == 0) {
+            return frame -> {
+                Object value = frame.get(slot);
+                if (value == null) {
+                    throw unassigned(i);
+                }
+                return value;
+            };
+        }
+        return frame -> {
+            Object value = frame.getParent().get(slot);
+            if (value == null) {
+                throw unassigned(i);
+            }
+            return value;
+        };
+    }
+
+    private CompiledExpression compileAssignment(BinaryExpression assignment) {
+        Identifier identifier = (Identifier) assignment.getLeft();
+        int slot = identifier.getSlot();
+        CompiledExpression right = compile(assignment.getRight());
+        if (identifier.getDepth() == 0) {
+            return frame -> {
+                Object value = right.evaluate(frame);
+                frame.set(slot, value);
+                return value;
+            };
+        }
+        return frame -> {
+            Object value = right.evaluate(frame);
+            frame.getParent().set(slot, value);
+            return value;
+        };
+    }
+
+    private CompiledExpression compileCall(FunctionCallExpression call) {
+        CompiledExpression[] arguments = compileArguments(call.getArguments());
+        Callee callee = callee(call.getName());
+        return frame -> {
+            Object[] args = evaluateArguments(arguments, frame);
+            return call(definition(callee, call, args), callee, args, globals(frame));
+        };
+    }
+
+    /**
+     * A spawned call is made on the thread of the task, with the same frame of global variables as the
+     * code that spawned it.
+     */
+    private CompiledExpression compileSpawn(FunctionCallExpression call) {
+        CompiledExpression[] arguments = compileArguments(call.getArguments());
+        Callee callee = callee(call.getName());
+        return frame -> {
+            Object[] args = evaluateArguments(arguments, frame);
+            FunctionDefinition fd = definition(callee, call, args);
+            Frame globals = globals(frame);
+            return tasks.spawn(() -> call(fd, callee, args, globals));
+        };
+    }
+
+    private static Object call(FunctionDefinition fd, Callee callee, Object[] args, Frame globals) throws RuntimeError {
+        if (fd instanceof NativeFunctionDefinition nfd) {
+            return callNative(nfd, args);
+        }
+
+        FunctionCallEvent event = new FunctionCallEvent(fd.getName());
+        event.begin();
+        StatementResult result = invoke(callee, args, globals);
+        // Tail calls replace the returning call instead of being nested inside it
+        while (result instanceof TailCall tc) {
+            result = invoke(tc.callee, tc.args, globals);
+        }
+        event.commit();
+
+        if (result instanceof ReturnStatementResult rsr) {
+            return rsr.getReturnValue();
+        }
+        return null;
+    }
+
+    // Frames are at most two deep, so the globals are either this frame or its parent
+    private static Frame globals(Frame frame) {
+        return frame.getParent() != null ? frame.getParent() : frame;
+    }
+
+    private CompiledExpression[] compileArguments(List<Expression> argumentExpressions) {
+        CompiledExpression[] arguments = new CompiledExpression[argumentExpressions.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = compile(argumentExpressions.get(i));
+        }
+        return arguments;
+    }
+
+    private static Object[] evaluateArguments(CompiledExpression[] arguments, Frame frame) throws RuntimeError {
+        Object[] args = new Object[arguments.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = arguments[i].evaluate(frame);
+        }
+        return args;
+    }
+
+    private static FunctionDefinition definition(Callee callee, FunctionCallExpression call, Object[] args)
+            throws RuntimeError {
+        FunctionDefinition fd = callee.definition;
+        if (fd == null) {
+            throw new RuntimeError(
+                    String.format("Undeclared function %s", call.getName()),
+                    call.getPosition(), call.getLength());
+        }
+        if (fd.getArguments().size() != args.length) {
+            throw new RuntimeError(
+                    String.format("Function %s takes %d argument(s), but %d were given",
+                            call.getName(), fd.getArguments().size(), args.length),
+                    call.getPosition(), call.getLength());
+        }
+        return fd;
+    }
+
+    private static Object callNative(NativeFunctionDefinition nfd, Object[] args) {
+        NativeCallEvent event = new NativeCallEvent(nfd.getName());
+        event.begin();
+        Object result = nfd.call(args);
+        event.commit();
+        return result;
+    }
+
+    private static StatementResult invoke(Callee callee, Object[] args, Frame globals) throws RuntimeError {
+        Frame calleeFrame = new Frame(globals, callee.definition.getFrameSize());
+        for (int i = 0; i < args.length; i++) {
+            calleeFrame.set(i, args[i]);
+        }
+        return callee.body.execute(calleeFrame);
+    }
+
+    private CompiledExpression compileUnary(UnaryExpression unaryExpression) {
+        CompiledExpression operand = compile(unaryExpression.getOperand());
+        return switch (unaryExpression.getOperator()) {
+            case "+" -> frame -> {
+                Object value = operand.evaluate(frame);
+                try {
+                    return Operators.plus(value);
+                } catch (RuntimeException ex) {
+                    throw unaryError(unaryExpression, value);
+                }
+            };
+            case "-" -> frame -> {
+                Object value = operand.evaluate(frame);
+                try {
+                    return Operators.negate(value);
+                } catch (RuntimeException ex) {
+                    throw unaryError(unaryExpression, value);
+                }
+            };
+            case "!" -> frame -> {
+                Object value = operand.evaluate(frame);
+                try {
+                    return Operators.not(value);
+                } catch (RuntimeException ex) {
+                    throw unaryError(unaryExpression, value);
+                }
+            };
+            default -> frame -> {
+                operand.evaluate(frame);
+                throw new RuntimeError(
+                        String.format("Invalid unary operator '%s'", unaryExpression.getOperator()),
+                        unaryExpression.getOperatorPosition(),
+                        unaryExpression.getOperatorLength()
+                );
+            };
+        };
+    }
+
+    /**
+     * Arithmetic, comparison and logical operators compile to nodes that specialize themselves for the
+     * operand types seen at run time (see {@link BinaryNode}).
+     */
+    private CompiledExpression compileBinary(BinaryExpression be) {
+        CompiledExpression left = compile(be.getLeft());
+        CompiledExpression right = compile(be.getRight());
+        return switch (be.getOperator()) {
+            case "+", "-", "*", "/", "%" -> ArithmeticNode.create(be, left, right);
+            case ">", ">=", "<", "<=", "==", "!=" -> ComparisonNode.create(be, left, right);
+            case "&&", "||" -> LogicalNode.create(be, left, right);
+            default -> frame -> {
+                left.evaluate(frame);
+                right.evaluate(frame);
+                throw new RuntimeError("Unknown expression type", be.getPosition(), be.getLength());
+            };
+        };
+    }
+
+    private Callee callee(String name) {
+        return callees.computeIfAbsent(name, n -> new Callee());
+    }
+
+    private static CompiledStatement fail(String message, Statement statement) {
+        return frame -> {
+            throw new RuntimeError(message, statement.getPosition(), statement.getLength());
+        };
+    }
+
+    private static RuntimeError unassigned(Identifier i) {
+        return new RuntimeError(String.format("Variable '%s' is used before being assigned", i.getName()),
+                i.getPosition(), i.getLength());
+    }
+
+    private static RuntimeError indexError(IndexExpression indexExpression, Object array, Object index) {
+        return new RuntimeError(String.format("Cannot perform operation '[]' on %s and %s",
+                Operators.typeOf(array), Operators.typeOf(index)), indexExpression.getPosition(), indexExpression.getLength());
+    }
+
+    private static RuntimeError unaryError(UnaryExpression unaryExpression, Object operand) {
+        return new RuntimeError(
+                String.format("Operation '%s' cannot be applied to '%s'", unaryExpression.getOperator(), Operators.typeOf(operand)),
+                unaryExpression.getOperatorPosition(),
+                unaryExpression.getOperatorLength()
+        );
+    }
+
+    static RuntimeError binaryError(BinaryExpression be, Object left, Object right) {
+        return new RuntimeError(String.format("Cannot perform operation '%s' on %s and %s", be.getOperator(),
+                Operators.typeOf(left), Operators.typeOf(right)), be.getOperatorPosition(), be.getOperatorLength());
+    }
+}
@@ -0,0 +1,24 @@
+package org.senthilvsh.saffron.closure;
+
+import org.senthilvsh.saffron.ast.Program;
+import org.senthilvsh.saffron.runtime.Frame;
+import org.senthilvsh.saffron.runtime.RuntimeError;
+
+/**
+ * Executes a program by first compiling it into a tree of closures (see {@link ClosureCompiler}) and
+ * then running the closures. The results are the same as with the tree-walking
+ * {@link org.senthilvsh.saffron.runtime.Interpreter}.
+ */
+public class ClosureInterpreter {
+    /**
+     * Executes a program that has been processed by the
+     * {@link org.senthilvsh.saffron.resolver.Resolver}.
+     */
+    public void execute(Program program) throws RuntimeError {
+        CompiledStatement[] statements = new ClosureCompiler().compile(program);
+        Frame globals = new Frame(null, program.getFrameSize());
+        for (CompiledStatement s : statements) {
+            s.execute(globals);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package org.senthilvsh.saffron.closure;
+
+import org.senthilvsh.saffron.ast.BinaryExpression;
+import org.senthilvsh.saffron.runtime.Frame;
+import org.senthilvsh.saffron.runtime.Operators;
+import org.senthilvsh.saffron.runtime.RuntimeError;
+
+/**
+ * The operators '>', '>=', '<', '<=', '==' and '!=', specialized for numbers.
+ * <p>
+ * Each operator is a class of its own with its own copy of the fast path, so the calls from each
+ * operator to its operands are profiled, and inlined by the JIT compiler, separately.
+ */
+abstract class ComparisonNode extends BinaryNode {
+    ComparisonNode(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+        super(expression, left, right);
+    }
+
+    static ComparisonNode create(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+        return switch (expression.getOperator()) {
+            case ">" -> new GreaterThan(expression, left, right);
+            case ">=" -> new GreaterThanOrEqual(expression, left, right);
+            case "<" -> new LessThan(expression, left, right);
+            case "<=" -> new LessThanOrEqual(expression, left, right);
+            case "==" -> new Equal(expression, left, right);
+            case "!=" -> new NotEqual(expression, left, right);
+            default -> throw new IllegalArgumentException(expression.getOperator());
+        };
+    }
+
+    @Override
+    public final Object evaluate(Frame frame) throws RuntimeError {
+        if (state != SPECIALIZED) {
+            return evaluateGeneric(frame);
+        }
+        try {
+            return evaluateBoolean(frame);
+        } catch (UnexpectedResultException ex) {
+            // The node has just been deoptimized
+            return ex.getResult();
+        }
+    }
+
+    @Override
+    boolean isSpecializable(Object operand) {
+        return operand instanceof Double;
+    }
+
+    static final class GreaterThan extends ComparisonNode {
+        GreaterThan(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+            super(expression, left, right);
+        }
+
+        @Override
+        public boolean evaluateBoolean(Frame frame) throws RuntimeError, UnexpectedResultException {
+            if (state != SPECIALIZED) {
+                return bool(evaluateGeneric(frame));
+            }
+            double l;
+            try {
+                l = left.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(frame, ex.getResult()));
+            }
+            double r;
+            try {
+                r = right.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(l, ex.getResult()));
+            }
+            return l > r;
+        }
+
+        @Override
+        Object apply(Object l, Object r) {
+            return Operators.greaterThan(l, r);
+        }
+    }
+
+    static final class GreaterThanOrEqual extends ComparisonNode {
+        GreaterThanOrEqual(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+            super(expression, left, right);
+        }
+
+        @Override
+        public boolean evaluateBoolean(Frame frame) throws RuntimeError, UnexpectedResultException {
+            if (state != SPECIALIZED) {
+                return bool(evaluateGeneric(frame));
+            }
+            double l;
+            try {
+                l = left.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(frame, ex.getResult()));
+            }
+            double r;
+            try {
+                r = right.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(l, ex.getResult()));
+            }
+            return l >= r;
+        }
+
+        @Override
+        Object apply(Object l, Object r) {
+            return Operators.greaterThanOrEqual(l, r);
+        }
+    }
+
+    static final class LessThan extends ComparisonNode {
+        LessThan(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+            super(expression, left, right);
+        }
+
+        @Override
+        public boolean evaluateBoolean(Frame frame) throws RuntimeError, UnexpectedResultException {
+            if (state != SPECIALIZED) {
+                return bool(evaluateGeneric(frame));
+            }
+            double l;
+            try {
+                l = left.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(frame, ex.getResult()));
+            }
+            double r;
+            try {
+                r = right.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(l, ex.getResult()));
+            }
+            return l < r;
+        }
+
+        @Override
+        Object apply(Object l, Object r) {
+            return Operators.lessThan(l, r);
+        }
+    }
+
+    static final class LessThanOrEqual extends ComparisonNode {
+        LessThanOrEqual(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+            super(expression, left, right);
+        }
+
+        @Override
+        public boolean evaluateBoolean(Frame frame) throws RuntimeError, UnexpectedResultException {
+            if (state != SPECIALIZED) {
+                return bool(evaluateGeneric(frame));
+            }
+            double l;
+            try {
+                l = left.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(frame, ex.getResult()));
+            }
+            double r;
+            try {
+                r = right.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(l, ex.getResult()));
+            }
+            return l <= r;
+        }
+
+        @Override
+        Object apply(Object l, Object r) {
+            return Operators.lessThanOrEqual(l, r);
+        }
+    }
+
+    static final class Equal extends ComparisonNode {
+        Equal(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+            super(expression, left, right);
+        }
+
+        @Override
+        public boolean evaluateBoolean(Frame frame) throws RuntimeError, UnexpectedResultException {
+            if (state != SPECIALIZED) {
+                return bool(evaluateGeneric(frame));
+            }
+            double l;
+            try {
+                l = left.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(frame, ex.getResult()));
+            }
+            double r;
+            try {
+                r = right.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(l, ex.getResult()));
+            }
+            // Same as Double.equals, which the generic path uses
+            return Double.doubleToLongBits(l) == Double.doubleToLongBits(r);
+        }
+
+        @Override
+        Object apply(Object l, Object r) {
+            return Operators.equal(l, r);
+        }
+    }
+
+    static final class NotEqual extends ComparisonNode {
+        NotEqual(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+            super(expression, left, right);
+        }
+
+        @Override
+        public boolean evaluateBoolean(Frame frame) throws RuntimeError, UnexpectedResultException {
+            if (state != SPECIALIZED) {
+                return bool(evaluateGeneric(frame));
+            }
+            double l;
+            try {
+                l = left.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(frame, ex.getResult()));
+            }
+            double r;
+            try {
+                r = right.evaluateNumber(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(l, ex.getResult()));
+            }
+            // Same as Double.equals, which the generic path uses
+            return Double.doubleToLongBits(l) != Double.doubleToLongBits(r);
+        }
+
+        @Override
+        Object apply(Object l, Object r) {
+            return Operators.notEqual(l, r);
+        }
+    }
+}
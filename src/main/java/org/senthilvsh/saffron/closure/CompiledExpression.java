@@ -0,0 +1,39 @@
+package org.senthilvsh.saffron.closure;
+
+import org.senthilvsh.saffron.runtime.Frame;
+import org.senthilvsh.saffron.runtime.RuntimeError;
+
+/**
+ * An expression that has been compiled into a closure.
+ */
+@FunctionalInterface
+interface CompiledExpression {
+    Object evaluate(Frame frame) throws RuntimeError;
+
+    /**
+     * Evaluates an expression that is expected to produce a number. Expressions that can compute a
+     * number without boxing it override this.
+     *
+     * @throws UnexpectedResultException if the expression produced something other than a number
+     */
+    default double evaluateNumber(Frame frame) throws RuntimeError, UnexpectedResultException {
+        Object value = evaluate(frame);
+        if (value instanceof Double d) {
+            return d;
+        }
+        throw new UnexpectedResultException(value);
+    }
+
+    /**
+     * Evaluates an expression that is expected to produce a boolean.
+     *
+     * @throws UnexpectedResultException if the expression produced something other than a boolean
+     */
+    default boolean evaluateBoolean(Frame frame) throws RuntimeError, UnexpectedResultException {
+        Object value = evaluate(frame);
+        if (value instanceof Boolean b) {
+            return b;
+        }
+        throw new UnexpectedResultException(value);
+    }
+}
@@ -0,0 +1,13 @@
+package org.senthilvsh.saffron.closure;
+
+import org.senthilvsh.saffron.runtime.Frame;
+import org.senthilvsh.saffron.runtime.RuntimeError;
+import org.senthilvsh.saffron.runtime.StatementResult;
+
+/**
+ * A statement that has been compiled into a closure.
+ */
+@FunctionalInterface
+interface CompiledStatement {
+    StatementResult execute(Frame frame) throws RuntimeError;
+}
@@ -0,0 +1,107 @@
+package org.senthilvsh.saffron.closure;
+
+import org.senthilvsh.saffron.ast.BinaryExpression;
+import org.senthilvsh.saffron.runtime.Frame;
+import org.senthilvsh.saffron.runtime.Operators;
+import org.senthilvsh.saffron.runtime.RuntimeError;
+
+/**
+ * The operators '&&' and '||', specialized for booleans. Both operands are always evaluated, as in the
+ * tree-walking interpreter.
+ * <p>
+ * Each operator is a class of its own with its own copy of the fast path, so the calls from each
+ * operator to its operands are profiled, and inlined by the JIT compiler, separately.
+ */
+abstract class LogicalNode extends BinaryNode {
+    LogicalNode(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+        super(expression, left, right);
+    }
+
+    static LogicalNode create(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+        return switch (expression.getOperator()) {
+            case "&&" -> new And(expression, left, right);
+            case "||" -> new Or(expression, left, right);
+            default -> throw new IllegalArgumentException(expression.getOperator());
+        };
+    }
+
+    @Override
+    public final Object evaluate(Frame frame) throws RuntimeError {
+        if (state != SPECIALIZED) {
+            return evaluateGeneric(frame);
+        }
+        try {
+            return evaluateBoolean(frame);
+        } catch (UnexpectedResultException ex) {
+            // The node has just been deoptimized
+            return ex.getResult();
+        }
+    }
+
+    @Override
+    boolean isSpecializable(Object operand) {
+        return operand instanceof Boolean;
+    }
+
+    static final class And extends LogicalNode {
+        And(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+            super(expression, left, right);
+        }
+
+        @Override
+        public boolean evaluateBoolean(Frame frame) throws RuntimeError, UnexpectedResultException {
+            if (state != SPECIALIZED) {
+                return bool(evaluateGeneric(frame));
+            }
+            boolean l;
+            try {
+                l = left.evaluateBoolean(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(frame, ex.getResult()));
+            }
+            boolean r;
+            try {
+                r = right.evaluateBoolean(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(l, ex.getResult()));
+            }
+            return l & r;
+        }
+
+        @Override
+        Object apply(Object l, Object r) {
+            return Operators.logicalAnd(l, r);
+        }
+    }
+
+    static final class Or extends LogicalNode {
+        Or(BinaryExpression expression, CompiledExpression left, CompiledExpression right) {
+            super(expression, left, right);
+        }
+
+        @Override
+        public boolean evaluateBoolean(Frame frame) throws RuntimeError, UnexpectedResultException {
+            if (state != SPECIALIZED) {
+                return bool(evaluateGeneric(frame));
+            }
+            boolean l;
+            try {
+                l = left.evaluateBoolean(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(frame, ex.getResult()));
+            }
+            boolean r;
+            try {
+                r = right.evaluateBoolean(frame);
+            } catch (UnexpectedResultException ex) {
+                return bool(deoptimize(l, ex.getResult()));
+            }
+            return l | r;
+        }
+
+        @Override
+        Object apply(Object l, Object r) {
+            return Operators.logicalOr(l, r);
+        }
+    }
+}
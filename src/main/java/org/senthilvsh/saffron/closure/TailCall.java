@@ -0,0 +1,20 @@
+package org.senthilvsh.saffron.closure;
+
+import org.senthilvsh.saffron.runtime.StatementResult;
+import org.senthilvsh.saffron.runtime.StatementResultType;
+
+/**
+ * Returned by a 'return' statement whose value is the result of a tail call to a user-defined
+ * function. The caller of the returning function makes the call in its place, so recursion in tail
+ * position runs in constant Java stack.
+ */
+class TailCall extends StatementResult {
+    final Callee callee;
+    final Object[] args;
+
+    TailCall(Callee callee, Object[] args) {
+        super(StatementResultType.RETURN);
+        this.callee = callee;
+        this.args = args;
+    }
+}
@@ -0,0 +1,22 @@
+package org.senthilvsh.saffron.closure;
+
+/**
+ * Thrown by {@link CompiledExpression#evaluateNumber} and {@link CompiledExpression#evaluateBoolean}
+ * when the expression produced a value of another type. The value has already been computed, so the
+ * caller continues with it instead of evaluating the expression again.
+ */
+class UnexpectedResultException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Object result;
+
+    UnexpectedResultException(Object result) {
+        // Thrown only when a specialized node falls back to the generic path, which does not need a stack trace
+        super(null, null, false, false);
+        this.result = result;
+    }
+
+    Object getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,395 @@
+package org.senthilvsh.saffron.daemon;
+
+import org.senthilvsh.saffron.Main;
+import org.senthilvsh.saffron.ast.Program;
+import org.senthilvsh.saffron.cache.ProgramCache;
+import org.senthilvsh.saffron.optimizer.Optimizer;
+import org.senthilvsh.saffron.parser.Parser;
+import org.senthilvsh.saffron.resolver.Resolver;
+import org.senthilvsh.saffron.runtime.Interpreter;
+import org.senthilvsh.saffron.runtime.SaffronException;
+import org.senthilvsh.saffron.stdlib.Environment;
+import org.senthilvsh.saffron.stdlib.console.ConsoleInput;
+import org.senthilvsh.saffron.stdlib.console.ConsoleOutput;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A JVM that stays up and runs programs for the {@link DaemonClient}: saffron --daemon [socket]
+ * <p>
+ * Starting a JVM and loading and compiling the interpreter takes much longer than running a short
+ * script. The daemon does that once: it runs a small program until the interpreter has been compiled,
+ * then listens on a Unix domain socket, which only its user can connect to. Each program that it is
+ * sent runs on a thread of its own, in an {@link Environment} with the working directory, input and
+ * output of the client (see {@link Protocol}), so programs that run at the same time do not share
+ * anything but the program cache. A program whose client goes away before it ends is interrupted, which
+ * stops it and the tasks it started at their next loop iteration or function call.
+ * <p>
+ * The daemon runs programs in the interpreter, given as {@code saffron <input>}. The client runs other
+ * commands itself.
+ */
+public final class Daemon {
+    // Exit status of a request that the daemon does not run
+    private static final int REFUSED = 2;
+
+    private static final int WARM_UP_RUNS = 200;
+    private static final String WARM_UP_PROGRAM = """
+            fun fib(n) {
+                if (n < 2) {
+                    return n;
+                }
+                return fib(n - 1) + fib(n - 2);
+            }
+            var words = ["warm", "up"];
+            var counts = {};
+            var i = 0;
+            while (i < 100) {
+                var word = str_trim(" " + (i % 10) + " ");
+                counts[word] = map_get(counts, word, 0) + fib(8);
+                arr_push(words, word);
+                i = i + 1;
+            }
+            try {
+                to_num("x");
+            } catch (type, message) {
+                write(type);
+            }
+            writeln(arr_length(words) + map_size(counts));
+            """;
+
+    private Daemon() {
+    }
+
+    public static Path defaultSocket() {
+        return Protocol.defaultSocket();
+    }
+
+    /**
+     * Warms up the interpreter, then runs the programs sent to the socket until the JVM is stopped.
+     */
+    public static void serve(Path socket, ProgramCache cache) {
+        warmUp();
+        ServerSocketChannel server;
+        try {
+            server = bind(socket);
+        } catch (IOException e) {
+            System.err.printf("Unable to listen on '%s'%n", socket);
+            System.exit(1);
+            return;
+        }
+        if (server == null) {
+            System.err.printf("A daemon is already listening on '%s'%n", socket);
+            System.exit(1);
+            return;
+        }
+        System.err.printf("Listening on '%s'%n", socket);
+
+        for (int n = 1; ; n++) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (IOException e) {
+                continue;
+            }
+            new Thread(() -> handle(channel, cache), "saffron-daemon-" + n).start();
+        }
+    }
+
+    /**
+     * Binds a new socket at the given path, replacing the socket of a daemon that is no longer running.
+     * Returns null if a daemon is still listening there.
+     * <p>
+     * The socket is bound in a new directory that only the user can enter, made owner-only there, and
+     * then moved into place, so that no other user can connect to it in between.
+     */
+    private static ServerSocketChannel bind(Path socket) throws IOException {
+        if (Files.exists(socket)) {
+            if (isListening(socket)) {
+                return null;
+            }
+            Files.delete(socket);
+        }
+        Path directory = socket.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+
+        Path privateDirectory;
+        try {
+            privateDirectory = Files.createTempDirectory(directory, "saffron",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            // The file system has no permissions to set
+            privateDirectory = Files.createTempDirectory(directory, "saffron");
+        }
+        Path bound = privateDirectory.resolve("s");
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            server.bind(UnixDomainSocketAddress.of(bound));
+            try {
+                Files.setPosixFilePermissions(bound, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // The file system has no permissions to set
+            }
+            Files.move(bound, socket, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            server.close();
+            Files.deleteIfExists(bound);
+            throw e;
+        } finally {
+            Files.delete(privateDirectory);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(socket);
+            } catch (IOException e) {
+                // The next daemon replaces the socket
+            }
+        }, "saffron-daemon-exit"));
+        return server;
+    }
+
+    private static boolean isListening(Path socket) {
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses and runs a small program that uses the common parts of the language until the JIT compiler
+     * has compiled them, with its output dropped.
+     */
+    private static void warmUp() {
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            ConsoleOutput output = new ConsoleOutput(OutputStream.nullOutputStream(), StandardCharsets.UTF_8,
+                    1 << 16, 0, false);
+            Environment environment = new Environment(
+                    new ConsoleInput(InputStream.nullInputStream(), StandardCharsets.UTF_8, output),
+                    output, new PrintStream(OutputStream.nullOutputStream()), null);
+            try {
+                Program program = new Optimizer().optimize(new Parser(WARM_UP_PROGRAM).parse());
+                new Resolver().resolve(program);
+                new Interpreter(environment).execute(program);
+            } catch (SaffronException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                environment.exit();
+            }
+        }
+    }
+
+    private static void handle(SocketChannel channel, ProgramCache cache) {
+        try (channel) {
+            Request request = Request.read(channel);
+            Object lock = new Object();
+            PrintStream error = new PrintStream(new FrameOutputStream(channel, Protocol.ERROR, lock), true,
+                    request.charset());
+
+            int status;
+            if (request.version() != Protocol.VERSION) {
+                error.println("The daemon runs a different version of Saffron. Restart it with saffron --daemon.");
+                status = REFUSED;
+            } else if (request.args().length != 1 || request.args()[0].startsWith("--")
+                    || request.args()[0].equals("compile")) {
+                error.println("The daemon only runs programs given as: saffron <input>");
+                status = REFUSED;
+            } else {
+                status = run(request, channel, lock, error, cache);
+            }
+            error.flush();
+
+            ByteBuffer exit = ByteBuffer.allocate(5).put(Protocol.EXIT).putInt(status).flip();
+            synchronized (lock) {
+                Protocol.writeFully(channel, exit);
+            }
+        } catch (IOException e) {
+            // The client has gone, and there is no one left to report to
+        }
+    }
+
+    private static int run(Request request, SocketChannel channel, Object lock, PrintStream error, ProgramCache cache) {
+        ConsoleOutput output = ConsoleOutput.create(new FrameOutputStream(channel, Protocol.OUTPUT, lock),
+                request.charset(), request.console());
+        FrameInputStream input = new FrameInputStream(channel, lock, Thread.currentThread());
+        Environment environment = new Environment(
+                new ConsoleInput(input, request.charset(), output),
+                output, error, request.workingDirectory());
+        try {
+            return Main.run(request.args()[0], cache, environment);
+        } catch (RuntimeException | StackOverflowError e) {
+            // Report an uncaught native error the way the JVM reports it when the program runs on its own
+            output.flush();
+            error.print("Exception in thread \"main\" ");
+            e.printStackTrace(error);
+            return 1;
+        } finally {
+            input.close();
+            environment.exit();
+        }
+    }
+
+    private record Request(int version, Path workingDirectory, Charset charset, boolean console, String[] args) {
+        static Request read(SocketChannel channel) throws IOException {
+            int length = Protocol.readFully(channel, ByteBuffer.allocate(4)).getInt();
+            ByteBuffer bytes = Protocol.readFully(channel, ByteBuffer.allocate(length));
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.array()));
+
+            int version = in.readInt();
+            if (version != Protocol.VERSION) {
+                return new Request(version, null, Charset.defaultCharset(), false, new String[0]);
+            }
+            Path workingDirectory = Path.of(in.readUTF());
+            Charset charset = charset(in.readUTF());
+            boolean console = in.readBoolean();
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+            return new Request(version, workingDirectory, charset, console, args);
+        }
+
+        private static Charset charset(String name) {
+            try {
+                return Charset.forName(name);
+            } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                return Charset.defaultCharset();
+            }
+        }
+    }
+
+    /**
+     * The standard input of the client, asked for and read from its frames as the program needs it.
+     * <p>
+     * A thread of its own reads the socket all along, so that it notices the client going away even
+     * while the program does not read its input, and interrupts the program. The client only sends
+     * input when asked for it, so the frames waiting to be read are never more than one.
+     */
+    private static final class FrameInputStream extends InputStream {
+        private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+        private final SocketChannel channel;
+        private final Object lock;
+        private final Thread program;
+        private final BlockingQueue<ByteBuffer> frames = new LinkedBlockingQueue<>();
+        private volatile boolean closed;
+        private ByteBuffer frame = ByteBuffer.allocate(0);
+        private boolean ended;
+
+        FrameInputStream(SocketChannel channel, Object lock, Thread program) {
+            this.channel = channel;
+            this.lock = lock;
+            this.program = program;
+            Thread reader = new Thread(this::readFrames, program.getName() + "-input");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (!frame.hasRemaining()) {
+                if (ended) {
+                    return -1;
+                }
+                ByteBuffer request = ByteBuffer.allocate(5).put(Protocol.INPUT).putInt(0).flip();
+                synchronized (lock) {
+                    Protocol.writeFully(channel, request);
+                }
+                try {
+                    frame = frames.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                if (frame == END) {
+                    ended = true;
+                    return -1;
+                }
+            }
+            int n = Math.min(len, frame.remaining());
+            frame.get(b, off, n);
+            return n;
+        }
+
+        /**
+         * Marks the program as ended, after which the client going away no longer interrupts it. The
+         * reader ends when the socket is closed.
+         */
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        private void readFrames() {
+            try {
+                while (true) {
+                    int length = Protocol.readFully(channel, ByteBuffer.allocate(4)).getInt();
+                    frames.add(length == 0 ? END : Protocol.readFully(channel, ByteBuffer.allocate(length)));
+                }
+            } catch (IOException e) {
+                // The client has gone, or the program has ended and the socket has been closed
+            }
+            frames.add(END);
+            if (!closed) {
+                program.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Sends what is written to it to the client as frames of one type. The output and the error stream
+     * of a program share the lock, so that their frames are never interleaved.
+     */
+    private static final class FrameOutputStream extends OutputStream {
+        private final SocketChannel channel;
+        private final byte type;
+        private final Object lock;
+
+        FrameOutputStream(SocketChannel channel, byte type, Object lock) {
+            this.channel = channel;
+            this.type = type;
+            this.lock = lock;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            ByteBuffer header = ByteBuffer.allocate(5).put(type).putInt(len).flip();
+            synchronized (lock) {
+                Protocol.writeFully(channel, header, ByteBuffer.wrap(b, off, len));
+            }
+        }
+    }
+}
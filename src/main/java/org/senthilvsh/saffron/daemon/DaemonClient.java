@@ -0,0 +1,149 @@
+package org.senthilvsh.saffron.daemon;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Runs a program in the {@link Daemon}, forwarding the working directory, the standard input and the
+ * standard output and error of this process, and exiting with the status of the program. This is what
+ * the saffron launcher runs when a daemon is listening.
+ * <p>
+ * The time this takes is mostly the time it takes the JVM to start and load this class, so it uses as
+ * little of the class library as it can: no lambdas, string concatenation or formatting, all of which
+ * load and link more classes on first use. For the same reason it is not a JVM to run programs in:
+ * commands other than {@code saffron <input>}, and all commands when no daemon is listening, make it
+ * exit with the status {@link #NOT_RUN}, and the launcher then runs them as it does without a daemon.
+ */
+public final class DaemonClient {
+    // Exit status of a command that the launcher has to run itself, which no program ends with
+    private static final int NOT_RUN = 3;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private DaemonClient() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 || args[0].startsWith("--") || args[0].equals("compile")) {
+            System.exit(NOT_RUN);
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(UnixDomainSocketAddress.of(Protocol.defaultSocket()));
+        } catch (IOException e) {
+            // The socket of a daemon that did not get to delete it when it stopped
+            System.exit(NOT_RUN);
+            return;
+        }
+
+        sendRequest(channel, args);
+        System.exit(receiveOutput(channel));
+    }
+
+    private static void sendRequest(SocketChannel channel, String[] args) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(Protocol.VERSION);
+        out.writeUTF(System.getProperty("user.dir"));
+        out.writeUTF(System.getProperty("sun.stdout.encoding", Charset.defaultCharset().name()));
+        out.writeBoolean(System.console() != null);
+        out.writeInt(args.length);
+        for (String arg : args) {
+            out.writeUTF(arg);
+        }
+        ByteBuffer request = ByteBuffer.wrap(bytes.toByteArray());
+        request.putInt(0, request.capacity() - 4);
+        Protocol.writeFully(channel, request);
+    }
+
+    /**
+     * Writes the output frames of the program to the standard output and error, and has its input sent
+     * when it asks for it, until the frame with its exit status.
+     */
+    private static int receiveOutput(SocketChannel channel) throws IOException {
+        FileOutputStream out = new FileOutputStream(FileDescriptor.out);
+        FileOutputStream err = new FileOutputStream(FileDescriptor.err);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer header = ByteBuffer.allocate(5);
+        InputPump input = null;
+        try {
+            while (true) {
+                Protocol.readFully(channel, header.clear());
+                byte type = header.get();
+                int length = header.getInt();
+                if (type == Protocol.EXIT) {
+                    return length;
+                }
+                if (type == Protocol.INPUT) {
+                    // Reading the input may block, and output frames keep coming in the meantime
+                    if (input == null) {
+                        input = new InputPump(channel);
+                        Thread thread = new Thread(input, "saffron-input");
+                        thread.setDaemon(true);
+                        thread.start();
+                    }
+                    input.request();
+                    continue;
+                }
+                if (buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                Protocol.readFully(channel, ByteBuffer.wrap(buffer, 0, length));
+                (type == Protocol.OUTPUT ? out : err).write(buffer, 0, length);
+            }
+        } catch (EOFException e) {
+            err.write("The daemon stopped before the program ended\n".getBytes());
+            return 1;
+        }
+    }
+
+    /**
+     * Sends a frame of the standard input to the daemon each time it asks for one, until the input ends.
+     */
+    private static final class InputPump implements Runnable {
+        private final SocketChannel channel;
+        private int requests;
+
+        InputPump(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        synchronized void request() {
+            requests++;
+            notify();
+        }
+
+        private synchronized void awaitRequest() throws InterruptedException {
+            while (requests == 0) {
+                wait();
+            }
+            requests--;
+        }
+
+        @Override
+        public void run() {
+            FileInputStream in = new FileInputStream(FileDescriptor.in);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            ByteBuffer header = ByteBuffer.allocate(4);
+            try {
+                while (true) {
+                    awaitRequest();
+                    int n = in.read(buffer);
+                    header.clear().putInt(Math.max(n, 0)).flip();
+                    if (n <= 0) {
+                        Protocol.writeFully(channel, header);
+                        return;
+                    }
+                    Protocol.writeFully(channel, header, ByteBuffer.wrap(buffer, 0, n));
+                }
+            } catch (IOException | InterruptedException e) {
+                // The program has ended, or cannot be sent any more input
+            }
+        }
+    }
+}
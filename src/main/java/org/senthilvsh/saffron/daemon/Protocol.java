@@ -0,0 +1,65 @@
+package org.senthilvsh.saffron.daemon;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * What the {@link DaemonClient} and the {@link Daemon} send each other over the socket.
+ * <p>
+ * The client starts with a request: an int length, followed by the protocol version, the working
+ * directory, the name of the encoding of its console, whether its output is an interactive console and
+ * the command line arguments, written with {@link java.io.DataOutputStream}.
+ * <p>
+ * The daemon sends the output of the program as frames of a type ({@link #OUTPUT} or {@link #ERROR}),
+ * an int length and that many bytes, and ends with an {@link #EXIT} frame whose int is the exit status.
+ * When the program needs more input, the daemon sends an {@link #INPUT} frame with no bytes, and the
+ * client answers with a frame of its standard input: an int length and that many bytes, or a length of
+ * 0 at its end. The client sends nothing else after its request, so the daemon can read the socket all
+ * along and notice the client going away.
+ */
+final class Protocol {
+    static final int VERSION = 2;
+
+    static final byte OUTPUT = 'O';
+    static final byte ERROR = 'E';
+    static final byte EXIT = 'X';
+    static final byte INPUT = 'I';
+
+    private Protocol() {
+    }
+
+    /**
+     * Returns the socket named by the SAFFRON_DAEMON_SOCKET environment variable, or daemon.sock in the
+     * .saffron directory of the user's home directory.
+     */
+    static Path defaultSocket() {
+        String configured = System.getenv("SAFFRON_DAEMON_SOCKET");
+        return configured != null && !configured.isBlank()
+                ? Path.of(configured)
+                : Path.of(System.getProperty("user.home"), ".saffron", "daemon.sock");
+    }
+
+    /**
+     * Fills the buffer from the channel and flips it, or throws {@link EOFException} if the channel ends
+     * first.
+     */
+    static ByteBuffer readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.flip();
+    }
+
+    static void writeFully(SocketChannel channel, ByteBuffer... buffers) throws IOException {
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffers);
+            }
+        }
+    }
+}
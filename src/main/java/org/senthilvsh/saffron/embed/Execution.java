@@ -0,0 +1,83 @@
+package org.senthilvsh.saffron.embed;
+
+import org.senthilvsh.saffron.runtime.Array;
+import org.senthilvsh.saffron.runtime.Dictionary;
+import org.senthilvsh.saffron.runtime.Frame;
+import org.senthilvsh.saffron.runtime.Interpreter;
+import org.senthilvsh.saffron.runtime.RuntimeError;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a {@link Script} on one thread.
+ * <p>
+ * An execution holds an interpreter with its own instances of the standard library functions, so
+ * files opened by one execution are not visible to another. It can run its script any number of
+ * times, one run at a time; every run starts with fresh global variables.
+ */
+public final class Execution {
+    private final Script script;
+    private final Interpreter interpreter = new Interpreter();
+
+    Execution(Script script) {
+        this.script = script;
+    }
+
+    /**
+     * Runs the script and returns the values of its global variables afterwards.
+     * <p>
+     * Inputs of the script (see {@link Script#getInputs()}) take their values from the given bindings,
+     * and are left unassigned if there is no binding for them; other bindings are ignored. Values can
+     * be numbers, strings (any {@link CharSequence}), booleans, {@link Array}s, {@link Dictionary maps} or
+     * null. In the results, numbers are {@link Double}s, strings are {@link String}s, and unassigned
+     * variables are null.
+     * <p>
+     * An exception raised by a standard library function and not caught by the script is thrown as
+     * the {@link org.senthilvsh.saffron.runtime.NativeFunctionException} itself.
+     *
+     * @throws RuntimeError if the script fails
+     * @throws IllegalArgumentException if a binding for an input has a value of another type
+     */
+    public Map<String, Object> run(Map<String, ?> bindings) throws RuntimeError {
+        Map<String, Integer> slots = script.getGlobalSlots();
+        Frame globals = new Frame(null, script.getProgram().getFrameSize());
+        List<String> inputs = script.getInputs();
+        for (int i = 0; i < inputs.size(); i++) {
+            String name = inputs.get(i);
+            if (bindings.containsKey(name)) {
+                globals.set(slots.get(name), toSaffron(name, bindings.get(name)));
+            }
+        }
+
+        interpreter.execute(script.getProgram(), globals);
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : slots.entrySet()) {
+            Object value = globals.get(entry.getValue());
+            // Strings may be ropes, which are only meant to be seen by the interpreter
+            results.put(entry.getKey(), value instanceof CharSequence s ? s.toString() : value);
+        }
+        return Collections.unmodifiableMap(results);
+    }
+
+    public Map<String, Object> run() throws RuntimeError {
+        return run(Map.of());
+    }
+
+    private static Object toSaffron(String name, Object value) {
+        if (value == null || value instanceof Double || value instanceof String || value instanceof Boolean
+                || value instanceof Array || value instanceof Dictionary) {
+            return value;
+        }
+        if (value instanceof Number n) {
+            return n.doubleValue();
+        }
+        if (value instanceof CharSequence s) {
+            return s.toString();
+        }
+        throw new IllegalArgumentException(String.format("Value of '%s' has unsupported type %s", name, value.getClass().getName()));
+    }
+}
@@ -0,0 +1,66 @@
+package org.senthilvsh.saffron.embed;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.runtime.RuntimeError;
+
+import javax.script.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link Script} compiled by the {@link SaffronScriptEngine}. Each thread that evaluates it reuses
+ * its own {@link Execution}.
+ */
+class SaffronCompiledScript extends CompiledScript {
+    private final SaffronScriptEngine engine;
+    private final Script script;
+    private final String source;
+    private final ThreadLocal<Execution> executions;
+
+    SaffronCompiledScript(SaffronScriptEngine engine, Script script, String source) {
+        this.engine = engine;
+        this.script = script;
+        this.source = source;
+        this.executions = ThreadLocal.withInitial(script::newExecution);
+    }
+
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        // Engine scope bindings hide global scope bindings of the same name
+        Map<String, Object> inputs = new HashMap<>();
+        for (String name : script.getInputs()) {
+            int scope = context.getAttributesScope(name);
+            if (scope != -1) {
+                inputs.put(name, context.getAttribute(name, scope));
+            }
+        }
+
+        Map<String, Object> results;
+        try {
+            results = executions.get().run(inputs);
+        } catch (RuntimeError e) {
+            throw SaffronScriptEngine.scriptException(e, source, fileName(context));
+        } catch (NativeFunctionException e) {
+            ScriptException exception = new ScriptException(e.getType() + ": " + e.getMessage());
+            exception.initCause(e);
+            throw exception;
+        } catch (IllegalArgumentException e) {
+            ScriptException exception = new ScriptException(e.getMessage());
+            exception.initCause(e);
+            throw exception;
+        }
+
+        context.getBindings(ScriptContext.ENGINE_SCOPE).putAll(results);
+        return null;
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+
+    private static String fileName(ScriptContext context) {
+        Object fileName = context.getAttribute(ScriptEngine.FILENAME);
+        return fileName != null ? fileName.toString() : null;
+    }
+}
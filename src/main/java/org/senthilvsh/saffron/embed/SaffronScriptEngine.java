@@ -0,0 +1,92 @@
+package org.senthilvsh.saffron.embed;
+
+import org.senthilvsh.saffron.runtime.SaffronException;
+
+import javax.script.*;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Runs Saffron programs through the Java scripting API.
+ * <p>
+ * The inputs of a script (the variables it uses without declaring them, see {@link Script#getInputs()})
+ * are read from the bindings of the script context, and its global variables are written back to the
+ * engine scope bindings when it ends. Evaluating a script returns null. Output of {@code write} and
+ * {@code writeln} goes to the standard output of the process, not to the writer of the context.
+ * <p>
+ * Scripts compiled with {@link #compile(String)} can be evaluated any number of times, from any number of
+ * threads at once.
+ */
+public class SaffronScriptEngine extends AbstractScriptEngine implements Compilable {
+    private final SaffronScriptEngineFactory factory;
+
+    SaffronScriptEngine(SaffronScriptEngineFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(script).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return eval(read(reader), context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        try {
+            return new SaffronCompiledScript(this, Script.compile(script), script);
+        } catch (SaffronException e) {
+            throw scriptException(e, script, null);
+        }
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        return compile(read(script));
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new SimpleBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    /**
+     * Converts an error in a script to a {@link ScriptException} with the line and column it occurred at.
+     */
+    static ScriptException scriptException(SaffronException e, String source, String fileName) {
+        int position = Math.max(0, Math.min(e.getPosition(), source.length()));
+        int line = 1;
+        int lineStart = 0;
+        for (int i = 0; i < position; i++) {
+            if (source.charAt(i) == '\n') {
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        ScriptException exception = new ScriptException(e.getMessage(), fileName, line, position - lineStart + 1);
+        exception.initCause(e);
+        return exception;
+    }
+
+    private static String read(Reader reader) throws ScriptException {
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[8192];
+            int n;
+            while ((n = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, n);
+            }
+            return sb.toString();
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.senthilvsh.saffron.embed;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * Makes Saffron available through the Java scripting API ({@code javax.script}), under the name
+ * "saffron". See {@link SaffronScriptEngine}.
+ */
+public class SaffronScriptEngineFactory implements ScriptEngineFactory {
+    private static final String VERSION = loadVersion();
+
+    @Override
+    public String getEngineName() {
+        return "Saffron";
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return List.of("sfr");
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return List.of("text/x-saffron");
+    }
+
+    @Override
+    public List<String> getNames() {
+        return List.of("saffron", "Saffron");
+    }
+
+    @Override
+    public String getLanguageName() {
+        return "Saffron";
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        return switch (key) {
+            case ScriptEngine.ENGINE -> getEngineName();
+            case ScriptEngine.ENGINE_VERSION -> getEngineVersion();
+            case ScriptEngine.NAME -> getNames().get(0);
+            case ScriptEngine.LANGUAGE -> getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION -> getLanguageVersion();
+            // Scripts can run on several threads at once; each thread gets its own global variables
+            case "THREADING" -> "MULTITHREADED";
+            default -> null;
+        };
+    }
+
+    @Override
+    public String getMethodCallSyntax(String obj, String m, String... args) {
+        // Saffron has no objects, so a method is called as a function of the object
+        return m + "(" + obj + (args.length > 0 ? ", " + String.join(", ", args) : "") + ")";
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        return "writeln(\"" + toDisplay + "\");";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        return List.of(statements).stream().map(s -> s + ";").collect(Collectors.joining("\n"));
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new SaffronScriptEngine(this);
+    }
+
+    private static String loadVersion() {
+        Properties properties = new Properties();
+        try (InputStream in = SaffronScriptEngineFactory.class.getClassLoader().getResourceAsStream("saffron.properties")) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            // The version is only informational
+        }
+        return properties.getProperty("saffron.version", "unknown");
+    }
+}
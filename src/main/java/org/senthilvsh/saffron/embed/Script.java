@@ -0,0 +1,199 @@
+package org.senthilvsh.saffron.embed;
+
+import org.senthilvsh.saffron.ast.*;
+import org.senthilvsh.saffron.optimizer.Optimizer;
+import org.senthilvsh.saffron.parser.Parser;
+import org.senthilvsh.saffron.resolver.Resolver;
+import org.senthilvsh.saffron.runtime.SaffronException;
+
+import java.util.*;
+
+/**
+ * A Saffron program compiled for running from Java code, any number of times and on any number of
+ * threads at once.
+ * <p>
+ * A script is parsed, optimized and resolved once, and is immutable afterwards. Each run happens in an
+ * {@link Execution}, which holds everything that changes while a program runs. Executions are cheap to
+ * create, but are not thread-safe: a thread creates one with {@link #newExecution()} and can reuse it
+ * for all the runs it makes.
+ * <p>
+ * The variables that a script uses without declaring them are its inputs (see {@link #getInputs()}).
+ * They are declared as global variables before the first statement, and each run can give them
+ * values. The global variables of the script (including the inputs) are the results of a run.
+ *
+ * <pre>{@code
+ * Script script = Script.compile("var total = price * quantity;");
+ * Execution execution = script.newExecution();
+ * Map<String, Object> results = execution.run(Map.of("price", 2.5, "quantity", 4));
+ * results.get("total");    // 10.0
+ * }</pre>
+ */
+public final class Script {
+    private final Program program;
+    private final List<String> inputs;
+
+    // Slots of the global variables, in the order they were declared
+    private final Map<String, Integer> globals;
+
+    private Script(Program program, List<String> inputs, Map<String, Integer> globals) {
+        this.program = program;
+        this.inputs = inputs;
+        this.globals = globals;
+    }
+
+    public static Script compile(String source) throws SaffronException {
+        Program program = new Optimizer().optimize(new Parser(source).parse());
+        List<String> inputs = List.copyOf(new UndeclaredVariables().find(program));
+        Resolver resolver = new Resolver();
+        resolver.resolve(program, inputs);
+
+        Map<String, Integer> globals = new LinkedHashMap<>();
+        resolver.getGlobals().entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .forEach(e -> globals.put(e.getKey(), e.getValue()));
+        return new Script(program, inputs, Collections.unmodifiableMap(globals));
+    }
+
+    /**
+     * Returns the names of the variables that the script uses without declaring them, in the order
+     * they are first used.
+     */
+    public List<String> getInputs() {
+        return inputs;
+    }
+
+    /**
+     * Returns the names of the global variables of the script, starting with the inputs.
+     */
+    public Set<String> getGlobals() {
+        return globals.keySet();
+    }
+
+    /**
+     * Creates a context for running this script on the current thread.
+     */
+    public Execution newExecution() {
+        return new Execution(this);
+    }
+
+    Program getProgram() {
+        return program;
+    }
+
+    Map<String, Integer> getGlobalSlots() {
+        return globals;
+    }
+
+    /**
+     * Finds the variables that are used in a program where no declaration of them is visible, following
+     * the scoping rules of the {@link Resolver}.
+     */
+    private static class UndeclaredVariables {
+        private final Set<String> found = new LinkedHashSet<>();
+        private final List<FunctionDefinition> functions = new ArrayList<>();
+        private Deque<Set<String>> scopes = new ArrayDeque<>();
+        private Set<String> globals;
+
+        Set<String> find(Program program) {
+            // Inputs are global variables, declared before everything else
+            globals = new HashSet<>();
+            scopes.push(globals);
+            for (Statement s : program.getStatements()) {
+                visit(s);
+            }
+            for (int i = 0; i < functions.size(); i++) {
+                FunctionDefinition fd = functions.get(i);
+                scopes = new ArrayDeque<>();
+                scopes.push(new HashSet<>(fd.getArguments()));
+                visit(fd.getBody());
+            }
+            return found;
+        }
+
+        private void visit(Statement statement) {
+            if (statement instanceof ExpressionStatement es) {
+                visit(es.getExpression());
+            } else if (statement instanceof BlockStatement bs) {
+                for (Statement s : bs.getStatements()) {
+                    visit(s);
+                }
+            } else if (statement instanceof ReturnStatement rs) {
+                if (rs.getExpression() != null) {
+                    visit(rs.getExpression());
+                }
+            } else if (statement instanceof ConditionalStatement cs) {
+                visit(cs.getCondition());
+                visitInScope(cs.getTrueClause());
+                if (cs.getFalseClause() != null) {
+                    visitInScope(cs.getFalseClause());
+                }
+            } else if (statement instanceof TryCatchStatement tcs) {
+                visitInScope(tcs.getTryBlock());
+                scopes.push(new HashSet<>(List.of(tcs.getExceptionType(), tcs.getExceptionMessage())));
+                visit(tcs.getCatchBlock());
+                scopes.pop();
+            } else if (statement instanceof WhileLoop wl) {
+                visit(wl.getCondition());
+                visitInScope(wl.getBody());
+            } else if (statement instanceof VariableDeclaration vd) {
+                if (vd.getExpression() != null) {
+                    visit(vd.getExpression());
+                }
+                scopes.peek().add(vd.getName());
+            } else if (statement instanceof FunctionDefinition fd) {
+                functions.add(fd);
+            }
+        }
+
+        private void visitInScope(Statement statement) {
+            scopes.push(new HashSet<>());
+            visit(statement);
+            scopes.pop();
+        }
+
+        private void visit(Expression expression) {
+            if (expression instanceof Identifier i) {
+                use(i.getName());
+            } else if (expression instanceof FunctionCallExpression call) {
+                for (Expression e : call.getArguments()) {
+                    visit(e);
+                }
+            } else if (expression instanceof SpawnExpression spawn) {
+                visit(spawn.getCall());
+            } else if (expression instanceof UnaryExpression u) {
+                visit(u.getOperand());
+            } else if (expression instanceof BinaryExpression b) {
+                visit(b.getLeft());
+                visit(b.getRight());
+            } else if (expression instanceof ArrayLiteral a) {
+                for (Expression e : a.getElements()) {
+                    visit(e);
+                }
+            } else if (expression instanceof MapLiteral m) {
+                for (int i = 0; i < m.getKeys().size(); i++) {
+                    visit(m.getKeys().get(i));
+                    visit(m.getValues().get(i));
+                }
+            } else if (expression instanceof IndexExpression i) {
+                visit(i.getArray());
+                visit(i.getIndex());
+            } else if (expression instanceof IndexAssignment a) {
+                visit(a.getTarget());
+                visit(a.getValue());
+            }
+        }
+
+        private void use(String name) {
+            for (Set<String> scope : scopes) {
+                if (scope.contains(name)) {
+                    return;
+                }
+            }
+            if (globals.contains(name)) {
+                return;
+            }
+            found.add(name);
+            globals.add(name);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.senthilvsh.saffron.events;
+
+import jdk.jfr.*;
+
+/**
+ * An exception raised by a standard library function that was caught by a 'try' statement. Exceptions
+ * that are not caught end the program, and are reported as an error instead.
+ */
+@Name("saffron.ExceptionCaught")
+@Label("Exception Caught")
+@Category("Saffron")
+@Description("Exception caught by a Saffron try statement")
+@StackTrace(false)
+public class ExceptionCaughtEvent extends Event {
+    @Label("Type")
+    private final String type;
+
+    @Label("Message")
+    private final String message;
+
+    public ExceptionCaughtEvent(String type, String message) {
+        this.type = type;
+        this.message = message;
+    }
+}
@@ -0,0 +1,21 @@
+package org.senthilvsh.saffron.events;
+
+import jdk.jfr.*;
+
+/**
+ * A call of a function defined in the program, including the tail calls it makes.
+ */
+@Name("saffron.FunctionCall")
+@Label("Function Call")
+@Category("Saffron")
+@Description("Call of a Saffron function")
+@Threshold("20 ms")
+@StackTrace(false)
+public class FunctionCallEvent extends Event {
+    @Label("Function")
+    private final String function;
+
+    public FunctionCallEvent(String function) {
+        this.function = function;
+    }
+}
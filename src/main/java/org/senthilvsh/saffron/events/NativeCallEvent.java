@@ -0,0 +1,21 @@
+package org.senthilvsh.saffron.events;
+
+import jdk.jfr.*;
+
+/**
+ * A call of a standard library function.
+ */
+@Name("saffron.NativeCall")
+@Label("Native Function Call")
+@Category("Saffron")
+@Description("Call of a standard library function")
+@Threshold("20 ms")
+@StackTrace(false)
+public class NativeCallEvent extends Event {
+    @Label("Function")
+    private final String function;
+
+    public NativeCallEvent(String function) {
+        this.function = function;
+    }
+}
@@ -0,0 +1,36 @@
+package org.senthilvsh.saffron.events;
+
+import jdk.jfr.*;
+
+/**
+ * The parsing of a program. As the parser pulls tokens from the lexer while it parses, the time spent
+ * lexing is part of the duration of the event, and is also recorded on its own.
+ */
+@Name("saffron.Parse")
+@Label("Parse")
+@Category("Saffron")
+@Description("Lexing and parsing of a Saffron program")
+@StackTrace(false)
+public class ParseEvent extends Event {
+    @Label("Lexing Time")
+    @Timespan
+    private long lexDuration;
+
+    @Label("Tokens")
+    private int tokens;
+
+    @Label("Statements")
+    private int statements;
+
+    public void setLexDuration(long lexDuration) {
+        this.lexDuration = lexDuration;
+    }
+
+    public void setTokens(int tokens) {
+        this.tokens = tokens;
+    }
+
+    public void setStatements(int statements) {
+        this.statements = statements;
+    }
+}
@@ -0,0 +1,208 @@
+package org.senthilvsh.saffron.module;
+
+import org.senthilvsh.saffron.ast.FunctionDefinition;
+import org.senthilvsh.saffron.ast.ImportStatement;
+import org.senthilvsh.saffron.ast.Program;
+import org.senthilvsh.saffron.ast.Statement;
+import org.senthilvsh.saffron.cache.ProgramCache;
+import org.senthilvsh.saffron.parser.Lexer;
+import org.senthilvsh.saffron.parser.Parser;
+import org.senthilvsh.saffron.resolver.ResolveError;
+import org.senthilvsh.saffron.runtime.SaffronException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads programs together with the files they import.
+ * <p>
+ * An imported file may only define functions, and importing it adds its functions (and those of the
+ * files it imports) to the program, ahead of the program's own statements. Each file is parsed on a
+ * worker thread as soon as the import of it has been parsed, so the files of a program are parsed in
+ * parallel, and a program starts in the time it takes to parse its longest chain of imports. A file
+ * is parsed once per loader however many files import it, and again only if it has been modified.
+ * Files may import each other, but not the program, which would then be loaded as one of its imports.
+ * <p>
+ * The positions of the nodes parsed from an imported file start at a position of their own, above
+ * any position in a program (see {@link Lexer}), so that {@link #locate(int)} can tell which file an
+ * error is in.
+ */
+public class ModuleLoader {
+    private static final int FIRST_BASE = 1 << 30;
+
+    private final ProgramCache cache;
+    private final Map<Key, CompletableFuture<ImportedFile>> files = new ConcurrentHashMap<>();
+    private final NavigableMap<Integer, Path> bases = new ConcurrentSkipListMap<>();
+    private final AtomicInteger nextBase = new AtomicInteger(FIRST_BASE);
+
+    /**
+     * Creates a loader that parses files through the given cache, unless it is null.
+     */
+    public ModuleLoader(ProgramCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Parses a program and the files it imports, and returns the program with its imports replaced
+     * by the imported functions.
+     */
+    public Program load(Path file) throws IOException, SaffronException {
+        Program program = cache != null ? cache.parse(file) : new Parser(Lexer.forFile(file)).parse();
+        List<Import> imports = startImports(file, program);
+        if (imports.isEmpty()) {
+            return program;
+        }
+
+        List<Statement> statements = new ArrayList<>();
+        Map<String, ImportedFile> defined = new HashMap<>();
+        Set<ImportedFile> linked = new HashSet<>();
+        Path main = file.toRealPath();
+        for (Import i : imports) {
+            link(i, main, statements, defined, linked);
+        }
+        for (Statement s : program.getStatements()) {
+            if (s instanceof ImportStatement) {
+                continue;
+            }
+            if (s instanceof FunctionDefinition fd && defined.containsKey(fd.getName())) {
+                throw conflict(fd, defined.get(fd.getName()));
+            }
+            statements.add(s);
+        }
+        return new Program(statements);
+    }
+
+    /**
+     * Returns the imported file that a position is in, and the position within the file, or null if
+     * the position is in a program.
+     */
+    public Location locate(int position) {
+        Map.Entry<Integer, Path> entry = bases.floorEntry(position);
+        return entry != null ? new Location(entry.getValue(), position - entry.getKey()) : null;
+    }
+
+    public record Location(Path file, int position) {
+    }
+
+    /**
+     * Adds the functions of an imported file to the statements of the program, after those of the
+     * files it imports. A file imported more than once is added the first time only.
+     */
+    private void link(Import i, Path main, List<Statement> statements, Map<String, ImportedFile> defined,
+                      Set<ImportedFile> linked) throws SaffronException {
+        ImportedFile file = join(i);
+        if (file.path().equals(main)) {
+            ImportStatement statement = i.statement();
+            throw new ResolveError(String.format("Import cycle: '%s' is the program being loaded", statement.getPath()),
+                    statement.getPosition(), statement.getLength());
+        }
+        if (!linked.add(file)) {
+            return;
+        }
+        for (Import dependency : file.imports()) {
+            link(dependency, main, statements, defined, linked);
+        }
+        for (Statement s : file.program().getStatements()) {
+            if (s instanceof ImportStatement) {
+                continue;
+            }
+            if (!(s instanceof FunctionDefinition fd)) {
+                throw new ResolveError("Only functions can be defined in an imported file", s.getPosition(), s.getLength());
+            }
+            ImportedFile other = defined.putIfAbsent(fd.getName(), file);
+            if (other != null) {
+                throw conflict(fd, other);
+            }
+            statements.add(fd);
+        }
+    }
+
+    private static ImportedFile join(Import i) throws SaffronException {
+        try {
+            return i.file().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SaffronException error) {
+                throw error;
+            }
+            // The lexer reports a file it cannot read, such as one that is not valid UTF-8, unchecked
+            if (e.getCause() instanceof IOException || e.getCause() instanceof UncheckedIOException) {
+                ImportStatement statement = i.statement();
+                throw new ResolveError(String.format("Unable to read imported file '%s'", statement.getPath()),
+                        statement.getPosition(), statement.getLength());
+            }
+            throw e;
+        }
+    }
+
+    private static ResolveError conflict(FunctionDefinition fd, ImportedFile file) {
+        return new ResolveError(
+                String.format("Function '%s' is already defined in '%s'", fd.getName(), file.path().getFileName()),
+                fd.getNamePosition(),
+                fd.getNameLength());
+    }
+
+    /**
+     * Starts loading the files imported by a file, relative to its directory.
+     */
+    private List<Import> startImports(Path file, Program program) {
+        Path directory = file.toAbsolutePath().getParent();
+        List<Import> imports = new ArrayList<>();
+        for (Statement s : program.getStatements()) {
+            if (s instanceof ImportStatement is) {
+                imports.add(new Import(is, startLoading(directory.resolve(is.getPath()))));
+            }
+        }
+        return imports;
+    }
+
+    private CompletableFuture<ImportedFile> startLoading(Path file) {
+        Path path;
+        BasicFileAttributes attributes;
+        try {
+            path = file.toRealPath();
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return files.computeIfAbsent(new Key(path, attributes.lastModifiedTime()),
+                key -> CompletableFuture.supplyAsync(() -> parse(path, attributes.size())));
+    }
+
+    /**
+     * Parses an imported file on a worker thread, and starts loading the files it imports.
+     */
+    private ImportedFile parse(Path file, long size) {
+        try {
+            // Positions are characters, and a file never has more characters than bytes
+            int base = nextBase.getAndAdd((int) Math.min(size + 1, Integer.MAX_VALUE));
+            if (base < FIRST_BASE || size >= Integer.MAX_VALUE - base) {
+                throw new IOException("Too much source code is imported");
+            }
+            bases.put(base, file);
+            Program program = cache != null ? cache.parse(file, base) : new Parser(Lexer.forFile(file, base)).parse();
+            return new ImportedFile(file, program, startImports(file, program));
+        } catch (IOException | SaffronException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    // A file is parsed again once it has been modified
+    private record Key(Path path, FileTime modified) {
+    }
+
+    private record ImportedFile(Path path, Program program, List<Import> imports) {
+    }
+
+    private record Import(ImportStatement statement, CompletableFuture<ImportedFile> file) {
+    }
+}
@@ -0,0 +1,338 @@
+package org.senthilvsh.saffron.optimizer;
+
+import org.senthilvsh.saffron.ast.*;
+import org.senthilvsh.saffron.runtime.Operators;
+
+import java.util.*;
+
+/**
+ * Simplifies a parsed program before it is resolved and executed.
+ * <p>
+ * The optimizer returns a new tree in which
+ * <ul>
+ *     <li>every use of a constant is replaced by its value,</li>
+ *     <li>unary and binary expressions whose operands are literals are replaced by their result,</li>
+ *     <li>'if' statements with a literal condition are replaced by the branch that is taken, and
+ *     'while' loops with a 'false' condition are removed, and</li>
+ *     <li>statements after a 'return', 'break' or 'continue' in the same block are removed.</li>
+ * </ul>
+ * Expressions are folded with the same {@link Operators} the execution engines use, so a folded
+ * expression has exactly the value it would have at runtime. An expression that would fail at runtime
+ * is left alone, so that the error is still raised when (and only if) it is reached.
+ * <p>
+ * Constants follow the scoping rules of the {@link org.senthilvsh.saffron.resolver.Resolver}, which
+ * also reports constants that are assigned to or whose value is not a constant expression.
+ */
+public class Optimizer {
+    // The scopes of the function (or top level) being optimized, innermost first. A name maps to the
+    // value of a constant, or to null for a variable that hides a constant of the same name.
+    private Deque<Map<String, Expression>> scopes = new ArrayDeque<>();
+
+    // The top level scope, which is visible inside functions
+    private Map<String, Expression> globals;
+
+    public Program optimize(Program program) {
+        scopes.push(new HashMap<>());
+        globals = scopes.peek();
+        return new Program(optimize(program.getStatements()));
+    }
+
+    private List<Statement> optimize(List<Statement> statements) {
+        List<Statement> optimized = new ArrayList<>(statements.size());
+        boolean reachable = true;
+        for (Statement s : statements) {
+            if (!reachable) {
+                // Declarations are kept, so that the scopes of the remaining code do not change
+                if (s instanceof VariableDeclaration vd) {
+                    optimized.add(unreachable(vd));
+                }
+                continue;
+            }
+            Statement statement = optimize(s);
+            if (statement != null) {
+                optimized.add(statement);
+                reachable = !(statement instanceof ReturnStatement
+                        || statement instanceof BreakStatement
+                        || statement instanceof ContinueStatement);
+            }
+        }
+        return optimized;
+    }
+
+    /**
+     * Returns the optimized statement, or null if the statement does nothing.
+     */
+    private Statement optimize(Statement statement) {
+        if (statement instanceof ExpressionStatement es) {
+            return new ExpressionStatement(optimize(es.getExpression()), es.getPosition(), es.getLength());
+        } else if (statement instanceof BlockStatement bs) {
+            return optimizeBlock(bs);
+        } else if (statement instanceof ReturnStatement rs) {
+            Expression expression = rs.getExpression() != null ? optimize(rs.getExpression()) : null;
+            return new ReturnStatement(expression, rs.getPosition(), rs.getLength());
+        } else if (statement instanceof ConditionalStatement cs) {
+            return optimizeConditional(cs);
+        } else if (statement instanceof TryCatchStatement tcs) {
+            Statement tryBlock = optimizeInScope(tcs.getTryBlock());
+            beginScope();
+            declare(tcs.getExceptionType(), null);
+            declare(tcs.getExceptionMessage(), null);
+            Statement catchBlock = orEmpty(optimize(tcs.getCatchBlock()), tcs.getCatchBlock());
+            endScope();
+            return new TryCatchStatement(tryBlock, tcs.getExceptionType(), tcs.getExceptionMessage(), catchBlock,
+                    tcs.getPosition(), tcs.getLength());
+        } else if (statement instanceof WhileLoop wl) {
+            Expression condition = optimize(wl.getCondition());
+            if (condition instanceof BooleanLiteral b && !b.getValue()) {
+                return null;
+            }
+            return new WhileLoop(condition, optimizeInScope(wl.getBody()), wl.getPosition(), wl.getLength());
+        } else if (statement instanceof VariableDeclaration vd) {
+            // The initializer cannot see the variable being declared
+            Expression expression = vd.getExpression() != null ? optimize(vd.getExpression()) : null;
+            declare(vd.getName(), vd.isConstant() && isLiteral(expression) ? expression : null);
+            return new VariableDeclaration(vd.getName(), expression, vd.isConstant(), vd.getPosition(), vd.getLength());
+        } else if (statement instanceof FunctionDefinition fd) {
+            return optimizeFunctionDefinition(fd);
+        }
+        return statement;
+    }
+
+    private BlockStatement optimizeBlock(BlockStatement bs) {
+        // A block does not start a scope of its own
+        return new BlockStatement(optimize(bs.getStatements()), bs.getPosition(), bs.getLength());
+    }
+
+    private Statement optimizeConditional(ConditionalStatement cs) {
+        Expression condition = optimize(cs.getCondition());
+        if (!(condition instanceof BooleanLiteral b)) {
+            Statement trueClause = optimizeInScope(cs.getTrueClause());
+            Statement falseClause = cs.getFalseClause() != null ? optimizeInScope(cs.getFalseClause()) : null;
+            return new ConditionalStatement(condition, trueClause, falseClause, cs.getPosition(), cs.getLength());
+        }
+
+        Statement taken = b.getValue() ? cs.getTrueClause() : cs.getFalseClause();
+        if (taken == null) {
+            return null;
+        }
+        Statement clause = optimizeInScope(taken);
+        if (clause instanceof BlockStatement bs && bs.getStatements().isEmpty()) {
+            return null;
+        }
+        if (declaresVariables(clause)) {
+            // The branch has to stay in a scope of its own, and only an 'if' (or a loop) provides one
+            return new ConditionalStatement(condition, clause, null, cs.getPosition(), cs.getLength());
+        }
+        return clause;
+    }
+
+    private Statement optimizeFunctionDefinition(FunctionDefinition fd) {
+        Deque<Map<String, Expression>> outer = scopes;
+        scopes = new ArrayDeque<>();
+        beginScope();
+        for (String argument : fd.getArguments()) {
+            declare(argument, null);
+        }
+        BlockStatement body = optimizeBlock(fd.getBody());
+        scopes = outer;
+        return new FunctionDefinition(fd.getName(), fd.getArguments(), body, fd.getPosition(), fd.getLength(),
+                fd.getNamePosition(), fd.getNameLength());
+    }
+
+    private Statement optimizeInScope(Statement statement) {
+        beginScope();
+        Statement optimized = optimize(statement);
+        endScope();
+        return orEmpty(optimized, statement);
+    }
+
+    private Expression optimize(Expression expression) {
+        if (expression instanceof Identifier i) {
+            Expression value = lookup(i.getName());
+            return value != null ? copy(value, i.getPosition(), i.getLength()) : i;
+        }
+        if (expression instanceof FunctionCallExpression call) {
+            List<Expression> arguments = new ArrayList<>(call.getArguments().size());
+            for (Expression e : call.getArguments()) {
+                arguments.add(optimize(e));
+            }
+            return new FunctionCallExpression(call.getName(), arguments, call.getPosition(), call.getLength());
+        }
+        if (expression instanceof SpawnExpression spawn) {
+            return new SpawnExpression((FunctionCallExpression) optimize(spawn.getCall()),
+                    spawn.getPosition(), spawn.getLength());
+        }
+        if (expression instanceof UnaryExpression u) {
+            return optimizeUnary(u);
+        }
+        if (expression instanceof BinaryExpression b) {
+            return optimizeBinary(b);
+        }
+        if (expression instanceof ArrayLiteral a) {
+            List<Expression> elements = new ArrayList<>(a.getElements().size());
+            for (Expression e : a.getElements()) {
+                elements.add(optimize(e));
+            }
+            return new ArrayLiteral(elements, a.getPosition(), a.getLength());
+        }
+        if (expression instanceof MapLiteral m) {
+            List<Expression> keys = new ArrayList<>(m.getKeys().size());
+            List<Expression> values = new ArrayList<>(m.getValues().size());
+            for (int i = 0; i < m.getKeys().size(); i++) {
+                keys.add(optimize(m.getKeys().get(i)));
+                values.add(optimize(m.getValues().get(i)));
+            }
+            return new MapLiteral(keys, values, m.getPosition(), m.getLength());
+        }
+        if (expression instanceof IndexExpression i) {
+            return new IndexExpression(optimize(i.getArray()), optimize(i.getIndex()), i.getPosition(), i.getLength());
+        }
+        if (expression instanceof IndexAssignment a) {
+            return new IndexAssignment((IndexExpression) optimize(a.getTarget()), optimize(a.getValue()),
+                    a.getPosition(), a.getLength());
+        }
+        return expression;
+    }
+
+    private Expression optimizeUnary(UnaryExpression u) {
+        Expression operand = optimize(u.getOperand());
+        if (isLiteral(operand)) {
+            try {
+                Object value = switch (u.getOperator()) {
+                    case "+" -> Operators.plus(valueOf(operand));
+                    case "-" -> Operators.negate(valueOf(operand));
+                    case "!" -> Operators.not(valueOf(operand));
+                    default -> null;
+                };
+                if (value != null) {
+                    return literal(value, u.getPosition(), u.getLength());
+                }
+            } catch (RuntimeException ex) {
+                // Left for the engine to report
+            }
+        }
+        return new UnaryExpression(u.getOperator(), operand, u.getPosition(), u.getLength(),
+                u.getOperatorPosition(), u.getOperatorLength());
+    }
+
+    private Expression optimizeBinary(BinaryExpression b) {
+        // The target of an assignment is never replaced, so the resolver can report assignments to constants
+        Expression left = "=".equals(b.getOperator()) ? b.getLeft() : optimize(b.getLeft());
+        Expression right = optimize(b.getRight());
+        if (isLiteral(left) && isLiteral(right)) {
+            Object l = valueOf(left);
+            Object r = valueOf(right);
+            try {
+                Object value = switch (b.getOperator()) {
+                    case "+" -> Operators.add(l, r);
+                    case "-" -> Operators.subtract(l, r);
+                    case "*" -> Operators.multiply(l, r);
+                    case "/" -> Operators.divide(l, r);
+                    case "%" -> Operators.modulo(l, r);
+                    case ">" -> Operators.greaterThan(l, r);
+                    case ">=" -> Operators.greaterThanOrEqual(l, r);
+                    case "<" -> Operators.lessThan(l, r);
+                    case "<=" -> Operators.lessThanOrEqual(l, r);
+                    case "==" -> Operators.equal(l, r);
+                    case "!=" -> Operators.notEqual(l, r);
+                    case "&&" -> Operators.logicalAnd(l, r);
+                    case "||" -> Operators.logicalOr(l, r);
+                    default -> null;
+                };
+                if (value != null) {
+                    return literal(value, b.getPosition(), b.getLength());
+                }
+            } catch (RuntimeException ex) {
+                // Left for the engine to report
+            }
+        }
+        return new BinaryExpression(left, b.getOperator(), right, b.getPosition(), b.getLength(),
+                b.getOperatorPosition(), b.getOperatorLength());
+    }
+
+    private void beginScope() {
+        scopes.push(new HashMap<>());
+    }
+
+    private void endScope() {
+        scopes.pop();
+    }
+
+    private void declare(String name, Expression value) {
+        scopes.peek().put(name, value);
+    }
+
+    /**
+     * Returns the value of the constant with the given name, or null if the name is not a constant.
+     */
+    private Expression lookup(String name) {
+        for (Map<String, Expression> scope : scopes) {
+            if (scope.containsKey(name)) {
+                return scope.get(name);
+            }
+        }
+        // Only functions can see the globals from outside their own scopes
+        return scopes.peekLast() != globals ? globals.get(name) : null;
+    }
+
+    private VariableDeclaration unreachable(VariableDeclaration vd) {
+        if (vd.isConstant()) {
+            return (VariableDeclaration) optimize(vd);
+        }
+        declare(vd.getName(), null);
+        return new VariableDeclaration(vd.getName(), null, vd.getPosition(), vd.getLength());
+    }
+
+    /**
+     * Returns whether a statement declares variables in the scope it is executed in.
+     */
+    private static boolean declaresVariables(Statement statement) {
+        if (statement instanceof VariableDeclaration) {
+            return true;
+        }
+        if (statement instanceof BlockStatement bs) {
+            for (Statement s : bs.getStatements()) {
+                if (declaresVariables(s)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Statement orEmpty(Statement optimized, Statement original) {
+        return optimized != null
+                ? optimized
+                : new BlockStatement(List.of(), original.getPosition(), original.getLength());
+    }
+
+    private static boolean isLiteral(Expression expression) {
+        return expression instanceof NumberLiteral
+                || expression instanceof StringLiteral
+                || expression instanceof BooleanLiteral;
+    }
+
+    private static Object valueOf(Expression literal) {
+        if (literal instanceof NumberLiteral n) {
+            return n.getValue();
+        }
+        if (literal instanceof StringLiteral s) {
+            return s.getValue();
+        }
+        return ((BooleanLiteral) literal).getValue();
+    }
+
+    private static Expression literal(Object value, int position, int length) {
+        if (value instanceof Double d) {
+            return new NumberLiteral(d, position, length);
+        }
+        if (value instanceof CharSequence s) {
+            return new StringLiteral(s.toString(), position, length);
+        }
+        return new BooleanLiteral((Boolean) value, position, length);
+    }
+
+    private static Expression copy(Expression literal, int position, int length) {
+        return literal(valueOf(literal), position, length);
+    }
+}
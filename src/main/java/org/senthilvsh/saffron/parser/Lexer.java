@@ -1,132 +1,342 @@
 package org.senthilvsh.saffron.parser;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
+/**
+ * Single-pass scanner that dispatches on the current character.
+ * <p>
+ * Every token is produced by advancing a cursor over the source, so lexing is linear in the size of
+ * the input. Single-line comments and whitespace are skipped, multi-line comments are returned as
+ * {@link TokenType#COMMENT} tokens and any character that cannot start a token is returned as an
+ * {@link TokenType#INVALID} token of length one.
+ * <p>
+ * The source is pulled from a {@link Reader} into a sliding window that only holds the token being
+ * scanned, so memory use does not depend on the size of the input. Read failures are reported as
+ * {@link UncheckedIOException}.
+ */
 public class Lexer {
-    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("(\\s+)([\\s\\S]*)");
-    private static final Pattern NUMBER_PATTERN = Pattern.compile("((([0-9]+)([.]?)([0-9]+))|([0-9]+))([\\s\\S]*)");
-    private static final Pattern STRING_PATTERN = Pattern.compile("((\")([^\"]*)(\"))([\\s\\S]*)");
-    private static final Pattern BOOLEAN_PATTERN = Pattern.compile("(true|false)([\\s\\S]*)");
-    private static final Pattern OPERATOR_PATTERN = Pattern.compile("(&&|\\|\\||>=|<=|>|<|==|!=|=|\\+|-|\\*|/|%|!)([\\s\\S]*)");
-    private static final Pattern SYMBOL_PATTERN = Pattern.compile("([{}();,])([\\s\\S]*)");
-    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("(([_a-zA-Z]+)([_a-zA-Z0-9]*))([\\s\\S]*)");
-    private static final Pattern SINGLE_LINE_COMMENT_PATTERN = Pattern.compile("((//)([^\\n]*)(\\n|$))([\\s\\S]*)");
-    private static final Pattern MULTI_LINE_COMMENT_START_PATTERN = Pattern.compile("(/\\*)([\\s\\S]*)");
-    private static final Pattern MULTI_LINE_COMMENT_END_PATTERN = Pattern.compile("(\\*/)([\\s\\S]*)");
-
-    private final String source;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+
+    private char[] buffer = new char[BUFFER_SIZE];
+
+    // Absolute position of buffer[0] in the source
+    private int bufferStart;
+
+    // Number of valid characters in the buffer
+    private int limit;
+
+    private boolean eof;
+
+    // Characters before this position are no longer needed and may be discarded from the buffer
+    private int tokenStart;
 
     private int position;
 
+    // Added to the position of every token, so that the tokens of different files can be told apart
+    private final int base;
+
     public Lexer(String source) {
-        this.source = source;
+        this(new StringReader(source));
+    }
+
+    public Lexer(Reader reader) {
+        this(reader, 0);
+    }
+
+    /**
+     * Creates a lexer whose tokens are positioned as if the source started at the given position.
+     */
+    public Lexer(Reader reader, int base) {
+        this.reader = reader;
         this.position = 0;
+        this.base = base;
+    }
+
+    /**
+     * Creates a lexer over a UTF-8 encoded file. The file is memory-mapped and decoded incrementally.
+     */
+    public static Lexer forFile(Path path) throws IOException {
+        return forFile(path, 0);
+    }
+
+    /**
+     * Creates a lexer over a UTF-8 encoded file, whose tokens are positioned as if the file started at
+     * the given position.
+     */
+    public static Lexer forFile(Path path, int base) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return new Lexer(Channels.newReader(FileChannel.open(path, StandardOpenOption.READ),
+                        StandardCharsets.UTF_8.newDecoder(), BUFFER_SIZE), base);
+            }
+            // The mapping stays valid after the channel is closed
+            return forBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), base);
+        }
+    }
+
+    /**
+     * Creates a lexer over UTF-8 encoded source held in a buffer, such as a memory-mapped file. The
+     * lexer consumes the remaining bytes of the buffer.
+     */
+    public static Lexer forBuffer(ByteBuffer bytes) {
+        return forBuffer(bytes, 0);
+    }
+
+    public static Lexer forBuffer(ByteBuffer bytes, int base) {
+        return new Lexer(new ByteBufferReader(bytes), base);
     }
 
     public Token next() {
-        if (position >= source.length()) {
+        skipWhitespaceAndSingleLineComments();
+
+        tokenStart = position;
+
+        if (!available(position)) {
             return null;
         }
 
-        Matcher m;
+        char c = charAt(position);
 
-        m = WHITESPACE_PATTERN.matcher(source.substring(position));
-        if (m.matches()) {
-            String match = m.group(1);
-            position += match.length();
-            return next();
+        if (c == '/' && peek(1) == '*') {
+            return multiLineComment();
         }
 
-        m = SINGLE_LINE_COMMENT_PATTERN.matcher(source.substring(position));
-        if (m.matches()) {
-            String match = m.group(1);
-            position += match.length();
-            return next();
+        if (isDigit(c)) {
+            return number();
         }
 
-        m = MULTI_LINE_COMMENT_START_PATTERN.matcher(source.substring(position));
-        if (m.matches()) {
-            int startPosition = position;
-            String comment = m.group(1);
-            position += comment.length();
-            m = MULTI_LINE_COMMENT_END_PATTERN.matcher(source.substring(position));
-            while (!m.matches()) {
-                comment += source.charAt(position);
+        if (c == '"') {
+            Token token = string();
+            if (token != null) {
+                return token;
+            }
+            return invalid();
+        }
+
+        if (c == 't' && lookingAt("true")) {
+            return token(TokenType.BOOLEAN, 4);
+        }
+
+        if (c == 'f' && lookingAt("false")) {
+            return token(TokenType.BOOLEAN, 5);
+        }
+
+        int operatorLength = operatorLength(c);
+        if (operatorLength > 0) {
+            return token(TokenType.OPERATOR, operatorLength);
+        }
+
+        if (c == '{' || c == '}' || c == '(' || c == ')' || c == '[' || c == ']' || c == ';' || c == ','
+                || c == ':') {
+            return token(TokenType.SYMBOL, 1);
+        }
+
+        if (isIdentifierStart(c)) {
+            return identifier();
+        }
+
+        return invalid();
+    }
+
+    private void skipWhitespaceAndSingleLineComments() {
+        while (available(position)) {
+            tokenStart = position;
+            char c = charAt(position);
+            if (isWhitespace(c)) {
                 position++;
-                if (position >= source.length()) {
-                    break;
+            } else if (c == '/' && peek(1) == '/') {
+                position += 2;
+                while (available(position)) {
+                    tokenStart = position;
+                    if (charAt(position++) == '\n') {
+                        break;
+                    }
                 }
-                m = MULTI_LINE_COMMENT_END_PATTERN.matcher(source.substring(position));
-            }
-            if (m.matches()) {
-                comment += m.group(1);
-                position += m.group(1).length();
+            } else {
+                return;
             }
-            return new Token(TokenType.COMMENT, comment, startPosition);
         }
+    }
+
+    private Token multiLineComment() {
+        int end = position + 2;
+        while (available(end) && !(charAt(end) == '*' && available(end + 1) && charAt(end + 1) == '/')) {
+            end++;
+        }
+        end = available(end) ? end + 2 : end;
+        return token(TokenType.COMMENT, end - position);
+    }
+
+    private Token number() {
+        int end = skipDigits(position);
+        if (available(end + 1) && charAt(end) == '.' && isDigit(charAt(end + 1))) {
+            end = skipDigits(end + 1);
+        }
+        return token(TokenType.NUMBER, end - position);
+    }
+
+    private int skipDigits(int from) {
+        int end = from;
+        while (available(end) && isDigit(charAt(end))) {
+            end++;
+        }
+        return end;
+    }
 
-        m = NUMBER_PATTERN.matcher(source.substring(position));
-        if (m.matches()) {
-            String match = m.group(1);
-            Token token = new Token(TokenType.NUMBER, match, position);
-            position += match.length();
-            return token;
+    private Token string() {
+        int end = position + 1;
+        while (available(end) && charAt(end) != '"') {
+            end++;
         }
+        if (!available(end)) {
+            return null;
+        }
+        return token(TokenType.STRING, end + 1 - position);
+    }
 
-        m = STRING_PATTERN.matcher(source.substring(position));
-        if (m.matches()) {
-            String match = m.group(1);
-            Token token = new Token(TokenType.STRING, match, position);
-            position += match.length();
-            return token;
+    private Token identifier() {
+        int end = position + 1;
+        while (available(end) && isIdentifierPart(charAt(end))) {
+            end++;
         }
+        String value = text(position, end - position);
+        Token token = new Token(isKeyword(value) ? TokenType.KEYWORD : TokenType.IDENTIFIER, value, base + position);
+        position = end;
+        return token;
+    }
+
+    private Token invalid() {
+        return token(TokenType.INVALID, 1);
+    }
+
+    private Token token(TokenType type, int length) {
+        Token token = new Token(type, text(position, length), base + position);
+        position += length;
+        return token;
+    }
 
-        m = BOOLEAN_PATTERN.matcher(source.substring(position));
-        if (m.matches()) {
-            String match = m.group(1);
-            Token token = new Token(TokenType.BOOLEAN, match, position);
-            position += match.length();
-            return token;
+    private int operatorLength(char c) {
+        char next = peek(1);
+        switch (c) {
+            case '&':
+                return next == '&' ? 2 : 0;
+            case '|':
+                return next == '|' ? 2 : 0;
+            case '>':
+            case '<':
+            case '=':
+            case '!':
+                return next == '=' ? 2 : 1;
+            case '+':
+            case '-':
+            case '*':
+            case '/':
+            case '%':
+                return 1;
+            default:
+                return 0;
         }
+    }
 
-        m = OPERATOR_PATTERN.matcher(source.substring(position));
-        if (m.matches()) {
-            String match = m.group(1);
-            Token token = new Token(TokenType.OPERATOR, match, position);
-            position += match.length();
-            return token;
+    private boolean lookingAt(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (!available(position + i) || charAt(position + i) != s.charAt(i)) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    private char peek(int offset) {
+        int index = position + offset;
+        return available(index) ? charAt(index) : '\0';
+    }
 
-        m = SYMBOL_PATTERN.matcher(source.substring(position));
-        if (m.matches()) {
-            String match = m.group(1);
-            Token token = new Token(TokenType.SYMBOL, match, position);
-            position += match.length();
-            return token;
+    private char charAt(int index) {
+        return buffer[index - bufferStart];
+    }
+
+    private String text(int from, int length) {
+        return new String(buffer, from - bufferStart, length);
+    }
+
+    /**
+     * Returns true if the character at the given absolute position exists, reading more of the
+     * source into the buffer if required.
+     */
+    private boolean available(int index) {
+        while (index >= bufferStart + limit) {
+            if (eof) {
+                return false;
+            }
+            fill();
         }
+        return true;
+    }
 
-        m = IDENTIFIER_PATTERN.matcher(source.substring(position));
-        if (m.matches()) {
-            String match = m.group(1);
-            Token token;
-            if (isKeyword(match)) {
-                token = new Token(TokenType.KEYWORD, match, position);
+    private void fill() {
+        // Leave room for at least a surrogate pair so that the decoder can always make progress
+        if (buffer.length - limit < 2) {
+            int discard = tokenStart - bufferStart;
+            if (discard > 0) {
+                System.arraycopy(buffer, discard, buffer, 0, limit - discard);
+                bufferStart += discard;
+                limit -= discard;
             } else {
-                token = new Token(TokenType.IDENTIFIER, match, position);
+                // A single token is larger than the buffer
+                char[] larger = new char[buffer.length * 2];
+                System.arraycopy(buffer, 0, larger, 0, limit);
+                buffer = larger;
             }
-            position += match.length();
-            return token;
         }
+        try {
+            int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                eof = true;
+                reader.close();
+            } else {
+                limit += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        String value = String.valueOf(source.charAt(position));
-        Token token = new Token(TokenType.INVALID, value, position);
-        position++;
-        return token;
+    private static boolean isWhitespace(char c) {
+        // Same set as the regex class \s
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || isDigit(c);
     }
 
     private boolean isKeyword(String identifier) {
         return "var".equals(identifier) ||
+                "const".equals(identifier) ||
                 "if".equals(identifier) ||
                 "else".equals(identifier) ||
                 "while".equals(identifier) ||
@@ -135,6 +345,48 @@ public class Lexer {
                 "fun".equals(identifier) ||
                 "return".equals(identifier)||
                 "try".equals(identifier)||
-                "catch".equals(identifier);
+                "catch".equals(identifier)||
+                "spawn".equals(identifier) ||
+                "import".equals(identifier);
+    }
+
+    /**
+     * Decodes UTF-8 directly out of a (memory-mapped) byte buffer without copying it to the heap first.
+     */
+    private static class ByteBufferReader extends Reader {
+        private final ByteBuffer bytes;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        private boolean flushed;
+
+        ByteBufferReader(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (flushed) {
+                return -1;
+            }
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            CoderResult result = decoder.decode(bytes, out, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (!bytes.hasRemaining() && result.isUnderflow()) {
+                result = decoder.flush(out);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                flushed = result.isUnderflow();
+            }
+            int read = out.position() - off;
+            return read == 0 && flushed ? -1 : read;
+        }
+
+        @Override
+        public void close() {
+        }
     }
 }
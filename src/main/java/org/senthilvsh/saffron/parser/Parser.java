@@ -1,6 +1,7 @@
 package org.senthilvsh.saffron.parser;
 
 import org.senthilvsh.saffron.ast.*;
+import org.senthilvsh.saffron.events.ParseEvent;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -10,30 +11,48 @@ import java.util.stream.Collectors;
 import static org.senthilvsh.saffron.parser.TokenType.*;
 
 public class Parser {
-    private final List<Token> tokens = new ArrayList<>();
-    private int tokenIdx = 0;
+    private final Lexer lexer;
     private Token lookahead;
+    private Token last;
 
-    public Parser(String source) {
-        Lexer lexer = new Lexer(source);
+    // Time spent in the lexer and number of tokens read, kept only while a ParseEvent is being recorded
+    private boolean timeLexer;
+    private long lexDuration;
+    private int tokens;
 
-        Token token = lexer.next();
-        while (token != null) {
-            if (token.getType() != COMMENT) {
-                tokens.add(token);
-            }
-            token = lexer.next();
-        }
+    public Parser(String source) {
+        this(new Lexer(source));
+    }
 
-        if (!tokens.isEmpty()) {
-            lookahead = tokens.get(0);
-        }
+    /**
+     * Creates a parser that pulls tokens from the given lexer one at a time, as parsing proceeds.
+     */
+    public Parser(Lexer lexer) {
+        this.lexer = lexer;
+        advance();
     }
 
     public Program parse() throws ParseError {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        timeLexer = event.isEnabled();
+
         List<Statement> statements = new ArrayList<>();
         while (lookahead != null) {
-            statements.add(statement());
+            // Files can only be imported at the top level
+            if (lookahead.getType() == TokenType.KEYWORD && lookahead.getValue().equals("import")) {
+                statements.add(importStatement());
+            } else {
+                statements.add(statement());
+            }
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.setLexDuration(lexDuration);
+            event.setTokens(tokens);
+            event.setStatements(statements.size());
+            event.commit();
         }
         return new Program(statements);
     }
@@ -49,6 +68,10 @@ public class Parser {
             return variableDeclarationStatement();
         }
 
+        if (lookahead.getType() == TokenType.KEYWORD && lookahead.getValue().equals("const")) {
+            return constantDeclarationStatement();
+        }
+
         if (lookahead.getType() == TokenType.KEYWORD && lookahead.getValue().equals("return")) {
             return returnStatement();
         }
@@ -77,6 +100,10 @@ public class Parser {
             return blockStatement();
         }
 
+        if (lookahead.getType() == TokenType.KEYWORD && lookahead.getValue().equals("import")) {
+            throw new ParseError("Files can only be imported at the top level", lookahead.getPosition(), lookahead.getLength());
+        }
+
         return expressionStatement();
     }
 
@@ -135,6 +162,25 @@ public class Parser {
         );
     }
 
+    Statement constantDeclarationStatement() throws ParseError {
+        Token constKeyword = consume(TokenType.KEYWORD, new String[]{"const"});
+        Token constantName = consume(TokenType.IDENTIFIER);
+
+        // A constant must be initialized
+        consume(OPERATOR, new String[]{"="});
+        Expression expression = expression();
+
+        Token semicolon = consume(TokenType.SYMBOL, new String[]{";"});
+
+        return new VariableDeclaration(
+                constantName.getValue(),
+                expression,
+                true,
+                constKeyword.getPosition(),
+                semicolon.getPosition() + semicolon.getLength() - constKeyword.getPosition()
+        );
+    }
+
     Statement returnStatement() throws ParseError {
         Token returnKeyword = consume(TokenType.KEYWORD, new String[]{"return"});
         Expression expression = null;
@@ -208,6 +254,21 @@ public class Parser {
         );
     }
 
+    Statement importStatement() throws ParseError {
+        Token importKeyword = consume(TokenType.KEYWORD, new String[]{"import"});
+        if (lookahead == null || lookahead.getType() != TokenType.STRING) {
+            throw new ParseError("Expected the path of a file after 'import'",
+                    importKeyword.getPosition(), importKeyword.getLength());
+        }
+        Token path = consume(TokenType.STRING);
+        Token semicolon = consume(TokenType.SYMBOL, new String[]{";"});
+        return new ImportStatement(
+                path.getValue().substring(1, path.getLength() - 1),
+                importKeyword.getPosition(),
+                semicolon.getPosition() + semicolon.getLength() - importKeyword.getPosition()
+        );
+    }
+
     Statement tryCatchStatement() throws ParseError {
         assertLookAheadNotNull();
         Token tryKeyword = consume(KEYWORD, new String[]{"try"});
@@ -275,6 +336,10 @@ public class Parser {
         int position = left.getPosition();
         int length = (right.getPosition() + right.getLength()) - left.getPosition();
 
+        if (left instanceof IndexExpression target) {
+            return new IndexAssignment(target, right, position, length);
+        }
+
         return new BinaryExpression(left, operator.getValue(), right, position, length, operator.getPosition(), operator.getLength());
     }
 
@@ -401,7 +466,7 @@ public class Parser {
 
         if (isUnaryOperator(lookahead.getValue())) {
             Token operator = consume(TokenType.OPERATOR, new String[]{"+", "-", "!"});
-            Expression expression = primaryExpression();
+            Expression expression = postfixExpression();
             return new UnaryExpression(operator.getValue(), expression,
                     operator.getPosition(),
                     expression.getPosition() + expression.getLength() - operator.getPosition(),
@@ -409,13 +474,27 @@ public class Parser {
                     operator.getLength());
         }
 
-        return primaryExpression();
+        return postfixExpression();
     }
 
     private boolean isUnaryOperator(String operator) {
         return "!+-".contains(operator);
     }
 
+    Expression postfixExpression() throws ParseError {
+        Expression expression = primaryExpression();
+
+        while (lookahead != null && lookahead.getType() == TokenType.SYMBOL && lookahead.getValue().equals("[")) {
+            consume(TokenType.SYMBOL, new String[]{"["});
+            Expression index = expression();
+            Token close = consume(TokenType.SYMBOL, new String[]{"]"});
+            expression = new IndexExpression(expression, index, expression.getPosition(),
+                    close.getPosition() + close.getLength() - expression.getPosition());
+        }
+
+        return expression;
+    }
+
     Expression primaryExpression() throws ParseError {
         assertLookAheadNotNull();
 
@@ -426,23 +505,33 @@ public class Parser {
             return expression;
         }
 
+        if (lookahead.getType() == TokenType.SYMBOL && lookahead.getValue().equals("[")) {
+            return arrayLiteral();
+        }
+
+        if (lookahead.getType() == TokenType.SYMBOL && lookahead.getValue().equals("{")) {
+            return mapLiteral();
+        }
+
+        if (lookahead.getType() == TokenType.KEYWORD && lookahead.getValue().equals("spawn")) {
+            Token spawn = consume(TokenType.KEYWORD, new String[]{"spawn"});
+            assertLookAheadNotNull();
+            if (lookahead.getType() != TokenType.IDENTIFIER) {
+                throw new ParseError("Expected a function call after 'spawn'", lookahead.getPosition(), lookahead.getLength());
+            }
+            Token token = consume(TokenType.IDENTIFIER);
+            if (lookahead == null || !lookahead.getValue().equals("(")) {
+                throw new ParseError("Expected a function call after 'spawn'", token.getPosition(), token.getLength());
+            }
+            FunctionCallExpression call = functionCall(token);
+            return new SpawnExpression(call, spawn.getPosition(),
+                    call.getPosition() + call.getLength() - spawn.getPosition());
+        }
+
         if (lookahead.getType() == TokenType.IDENTIFIER) {
             Token token = consume(TokenType.IDENTIFIER);
             if (lookahead != null && lookahead.getValue().equals("(")) {
-                // Function call
-                consume(TokenType.SYMBOL, new String[]{"("});
-                List<Expression> arguments = new ArrayList<>();
-                assertLookAheadNotNull();
-                while (!lookahead.getValue().equals(")")) {
-                    arguments.add(expression());
-                    if (lookahead.getValue().equals(",")) {
-                        consume(TokenType.SYMBOL, new String[]{","});
-                    }
-                }
-                Token close = consume(TokenType.SYMBOL, new String[]{")"});
-                return new FunctionCallExpression(token.getValue(), arguments,
-                        token.getPosition(),
-                        close.getPosition() + close.getLength() - token.getPosition());
+                return functionCall(token);
             }
             return new Identifier(token.getValue(), token.getPosition(), token.getLength());
         }
@@ -466,6 +555,61 @@ public class Parser {
         throw new ParseError("Expected a Number, String or Boolean literal", lookahead.getPosition(), lookahead.getLength());
     }
 
+    private ArrayLiteral arrayLiteral() throws ParseError {
+        Token open = consume(TokenType.SYMBOL, new String[]{"["});
+        List<Expression> elements = new ArrayList<>();
+        assertLookAheadNotNull();
+        while (!lookahead.getValue().equals("]")) {
+            elements.add(expression());
+            assertLookAheadNotNull();
+            if (!lookahead.getValue().equals("]")) {
+                consume(TokenType.SYMBOL, new String[]{","});
+                assertLookAheadNotNull();
+            }
+        }
+        Token close = consume(TokenType.SYMBOL, new String[]{"]"});
+        return new ArrayLiteral(elements,
+                open.getPosition(),
+                close.getPosition() + close.getLength() - open.getPosition());
+    }
+
+    private MapLiteral mapLiteral() throws ParseError {
+        Token open = consume(TokenType.SYMBOL, new String[]{"{"});
+        List<Expression> keys = new ArrayList<>();
+        List<Expression> values = new ArrayList<>();
+        assertLookAheadNotNull();
+        while (!lookahead.getValue().equals("}")) {
+            keys.add(expression());
+            consume(TokenType.SYMBOL, new String[]{":"});
+            values.add(expression());
+            assertLookAheadNotNull();
+            if (!lookahead.getValue().equals("}")) {
+                consume(TokenType.SYMBOL, new String[]{","});
+                assertLookAheadNotNull();
+            }
+        }
+        Token close = consume(TokenType.SYMBOL, new String[]{"}"});
+        return new MapLiteral(keys, values,
+                open.getPosition(),
+                close.getPosition() + close.getLength() - open.getPosition());
+    }
+
+    private FunctionCallExpression functionCall(Token name) throws ParseError {
+        consume(TokenType.SYMBOL, new String[]{"("});
+        List<Expression> arguments = new ArrayList<>();
+        assertLookAheadNotNull();
+        while (!lookahead.getValue().equals(")")) {
+            arguments.add(expression());
+            if (lookahead.getValue().equals(",")) {
+                consume(TokenType.SYMBOL, new String[]{","});
+            }
+        }
+        Token close = consume(TokenType.SYMBOL, new String[]{")"});
+        return new FunctionCallExpression(name.getValue(), arguments,
+                name.getPosition(),
+                close.getPosition() + close.getLength() - name.getPosition());
+    }
+
     Token consume(TokenType type) throws ParseError {
         assertLookAheadNotNull();
 
@@ -474,18 +618,12 @@ public class Parser {
         }
 
         Token token = lookahead;
-        tokenIdx++;
-        if (tokenIdx >= tokens.size()) {
-            lookahead = null;
-        } else {
-            lookahead = tokens.get(tokenIdx);
-        }
+        advance();
         return token;
     }
 
     Token consume(TokenType type, String[] values) throws ParseError {
         if (lookahead == null) {
-            Token last = tokens.get(tokens.size() - 1);
             throw new ParseError(
                     unexpectedTokenError(values, "End of stream reached unexpectedly"),
                     last.getPosition(),
@@ -511,15 +649,26 @@ public class Parser {
         }
 
         Token token = lookahead;
-        tokenIdx++;
-        if (tokenIdx >= tokens.size()) {
-            lookahead = null;
-        } else {
-            lookahead = tokens.get(tokenIdx);
-        }
+        advance();
         return token;
     }
 
+    private void advance() {
+        long start = timeLexer ? System.nanoTime() : 0;
+        Token token = lexer.next();
+        while (token != null && token.getType() == COMMENT) {
+            token = lexer.next();
+        }
+        if (timeLexer) {
+            lexDuration += System.nanoTime() - start;
+            tokens++;
+        }
+        lookahead = token;
+        if (token != null) {
+            last = token;
+        }
+    }
+
     private String unexpectedTokenError(String[] values, String defaultMessage) {
         if (values == null || values.length == 0) {
             return defaultMessage;
@@ -534,7 +683,6 @@ public class Parser {
 
     void assertLookAheadNotNull() throws ParseError {
         if (lookahead == null) {
-            Token last = tokens.get(tokens.size() - 1);
             throw new ParseError("End of file reached unexpectedly", last.getPosition(), last.getLength());
         }
     }
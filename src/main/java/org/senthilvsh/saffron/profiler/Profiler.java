@@ -0,0 +1,177 @@
+package org.senthilvsh.saffron.profiler;
+
+import org.senthilvsh.saffron.runtime.CallStack;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sampling profiler for Saffron programs.
+ * <p>
+ * A background thread takes a snapshot of the {@link CallStack} of the running program at a fixed
+ * interval, and counts how often each stack is seen. A frame of a stack is the name of a function and
+ * the line it is at, like {@code fib:5}. The counts can be written in the collapsed stack format read
+ * by flame graph tools (one line per stack, frames separated by semicolons, followed by the count),
+ * and summarized as the functions and lines that take the most time.
+ */
+public class Profiler {
+    public static final long DEFAULT_INTERVAL_MICROS = 1000;
+
+    private static final int MAX_DEPTH = 1024;
+
+    private final CallStack callStack;
+    private final long intervalNanos;
+
+    // Offsets in the source at which each line starts
+    private final int[] lineStarts;
+
+    // Number of times each collapsed stack was sampled, owned by the sampling thread until it stops
+    private final Map<String, long[]> samples = new HashMap<>();
+    private long sampleCount;
+
+    private volatile boolean running;
+    private Thread sampler;
+
+    public Profiler(CallStack callStack, String source, long intervalMicros) {
+        this.callStack = callStack;
+        this.intervalNanos = TimeUnit.MICROSECONDS.toNanos(intervalMicros);
+        this.lineStarts = lineStarts(source);
+    }
+
+    public void start() {
+        running = true;
+        sampler = new Thread(this::sample, "saffron-profiler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Stops sampling. The results are available once this returns.
+     */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(sampler);
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void writeCollapsedStacks(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, long[]> entry : sorted(samples)) {
+                out.write(entry.getKey());
+                out.write(' ');
+                out.write(Long.toString(entry.getValue()[0]));
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Prints the functions and the lines with the most samples: the samples in which they were
+     * running themselves (self), and for functions also those in which they were on the stack (total).
+     */
+    public void printSummary(PrintStream out, int limit) {
+        Map<String, long[]> functions = new HashMap<>();
+        Map<String, long[]> lines = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : samples.entrySet()) {
+            long count = entry.getValue()[0];
+            String[] frames = entry.getKey().split(";");
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i < frames.length; i++) {
+                String function = functionOf(frames[i]);
+                long[] counts = functions.computeIfAbsent(function, f -> new long[2]);
+                if (i == frames.length - 1) {
+                    counts[0] += count;
+                    lines.computeIfAbsent(frames[i], f -> new long[1])[0] += count;
+                }
+                if (seen.add(function)) {
+                    counts[1] += count;
+                }
+            }
+        }
+
+        out.printf("Profile: %d samples, one every %d us%n%n", sampleCount, TimeUnit.NANOSECONDS.toMicros(intervalNanos));
+        out.printf("%8s %8s  %s%n", "Self", "Total", "Function");
+        for (Map.Entry<String, long[]> entry : sorted(functions).subList(0, Math.min(limit, functions.size()))) {
+            out.printf("%7.1f%% %7.1f%%  %s%n", percent(entry.getValue()[0]), percent(entry.getValue()[1]), entry.getKey());
+        }
+        out.println();
+        out.printf("%8s  %s%n", "Self", "Line");
+        for (Map.Entry<String, long[]> entry : sorted(lines).subList(0, Math.min(limit, lines.size()))) {
+            out.printf("%7.1f%%  %s%n", percent(entry.getValue()[0]), entry.getKey());
+        }
+        out.println();
+    }
+
+    private void sample() {
+        String[] functions = new String[MAX_DEPTH];
+        int[] positions = new int[MAX_DEPTH];
+        StringBuilder sb = new StringBuilder();
+        long next = System.nanoTime() + intervalNanos;
+        while (running) {
+            long delay = next - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+                continue;
+            }
+            next += intervalNanos;
+
+            int depth = callStack.snapshot(functions, positions);
+            sb.setLength(0);
+            for (int i = 0; i < depth; i++) {
+                if (i > 0) {
+                    sb.append(';');
+                }
+                sb.append(functions[i]);
+                if (positions[i] >= 0) {
+                    sb.append(':').append(lineOf(positions[i]));
+                }
+            }
+            samples.computeIfAbsent(sb.toString(), s -> new long[1])[0]++;
+            sampleCount++;
+        }
+    }
+
+    private int lineOf(int position) {
+        int index = Arrays.binarySearch(lineStarts, position);
+        return (index >= 0 ? index : -index - 2) + 1;
+    }
+
+    private double percent(long count) {
+        return sampleCount == 0 ? 0 : 100.0 * count / sampleCount;
+    }
+
+    private static String functionOf(String frame) {
+        int colon = frame.lastIndexOf(':');
+        return colon >= 0 ? frame.substring(0, colon) : frame;
+    }
+
+    private static List<Map.Entry<String, long[]>> sorted(Map<String, long[]> counts) {
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, long[]> e) -> e.getValue()[0]).reversed()
+                .thenComparing(Map.Entry::getKey));
+        return entries;
+    }
+
+    private static int[] lineStarts(String source) {
+        // Lines are numbered the same way as in error messages
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                starts.add(i + 1);
+            }
+        }
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
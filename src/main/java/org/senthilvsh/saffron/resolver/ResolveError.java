@@ -0,0 +1,11 @@
+package org.senthilvsh.saffron.resolver;
+
+import org.senthilvsh.saffron.runtime.SaffronException;
+
+public class ResolveError extends SaffronException {
+    private static final long serialVersionUID = 1L;
+
+    public ResolveError(String s, int position, int length) {
+        super(s, position, length);
+    }
+}
@@ -0,0 +1,283 @@
+package org.senthilvsh.saffron.resolver;
+
+import org.senthilvsh.saffron.ast.*;
+
+import java.util.*;
+
+/**
+ * Binds every variable to a slot in a frame before the program is executed.
+ * <p>
+ * The global variables of a program live in one frame and each function call gets a frame of its
+ * own. Variables declared in nested blocks get their own slots in the frame of the enclosing function,
+ * so entering a block costs nothing at runtime. Every {@link Identifier} is annotated with the number
+ * of frames to walk up (0 for the current frame, 1 for the global frame when inside a function) and
+ * the slot index.
+ * <p>
+ * A variable can be re-declared only in a different function. Inside a function, the global
+ * variables declared at the top level of the program are visible, and so are those of the blocks
+ * that enclose the definition of the function, which live in the global frame too.
+ * <p>
+ * Calls whose result is returned straight from a function, outside of any loop and try-catch
+ * statement, are marked as tail calls (see {@link ReturnStatement#isTailCall()}).
+ * <p>
+ * Constants are resolved like variables, but cannot be assigned to, and their value must be a
+ * literal once the {@link org.senthilvsh.saffron.optimizer.Optimizer} has folded it.
+ * <p>
+ * Functions are bound by name to a slot of the function table of the program, which is filled in at
+ * runtime as the functions are defined (see {@link Program#getFunctionNames()}). A call therefore
+ * finds its function without looking up its name.
+ */
+public class Resolver {
+    private final List<FunctionDefinition> functions = new ArrayList<>();
+    private final Map<String, Integer> functionSlots = new LinkedHashMap<>();
+
+    private Map<String, Integer> globals;
+    private Set<Integer> globalConstants;
+
+    // The scopes of the global frame that enclose each function defined outside of a function,
+    // innermost first, and those that the function being resolved can see
+    private final Map<FunctionDefinition, List<Map<String, Integer>>> enclosingScopes = new IdentityHashMap<>();
+    private List<Map<String, Integer>> outerScopes;
+
+    private FrameLayout frame;
+
+    // Whether a 'return' at the current position returns from a function, with nothing left to do
+    // in it (such as catching an exception) after the returned call
+    private boolean tailPosition;
+
+    public void resolve(Program program) throws ResolveError {
+        resolve(program, List.of());
+    }
+
+    /**
+     * Resolves a program in which the given names are global variables that are declared before the
+     * first statement. They get the first slots of the global frame, in the given order.
+     */
+    public void resolve(Program program, Collection<String> inputs) throws ResolveError {
+        frame = new FrameLayout();
+        frame.beginScope();
+        for (String input : inputs) {
+            frame.declare(input);
+        }
+        for (Statement s : program.getStatements()) {
+            resolve(s);
+        }
+        globals = frame.scopes.peek();
+        globalConstants = frame.constants;
+        program.setFrameSize(frame.size);
+
+        // Function bodies are resolved last, so that they can see all global variables
+        for (int i = 0; i < functions.size(); i++) {
+            resolveFunctionBody(functions.get(i));
+        }
+        program.setFunctionNames(List.copyOf(functionSlots.keySet()));
+    }
+
+    /**
+     * Returns the slots of the variables declared at the top level of the last resolved program.
+     */
+    public Map<String, Integer> getGlobals() {
+        return Collections.unmodifiableMap(globals);
+    }
+
+    private void resolve(Statement statement) throws ResolveError {
+        if (statement instanceof ExpressionStatement es) {
+            resolve(es.getExpression());
+        } else if (statement instanceof BlockStatement bs) {
+            for (Statement s : bs.getStatements()) {
+                resolve(s);
+            }
+        } else if (statement instanceof ReturnStatement rs) {
+            if (rs.getExpression() != null) {
+                resolve(rs.getExpression());
+            }
+            rs.setTailCall(tailPosition && rs.getExpression() instanceof FunctionCallExpression);
+        } else if (statement instanceof ConditionalStatement cs) {
+            resolve(cs.getCondition());
+            resolveInScope(cs.getTrueClause());
+            if (cs.getFalseClause() != null) {
+                resolveInScope(cs.getFalseClause());
+            }
+        } else if (statement instanceof TryCatchStatement tcs) {
+            boolean outer = tailPosition;
+            tailPosition = false;
+            resolveInScope(tcs.getTryBlock());
+            frame.beginScope();
+            tcs.setExceptionSlots(
+                    frame.declare(tcs.getExceptionType()),
+                    frame.declare(tcs.getExceptionMessage())
+            );
+            resolve(tcs.getCatchBlock());
+            frame.endScope();
+            tailPosition = outer;
+        } else if (statement instanceof WhileLoop wl) {
+            resolve(wl.getCondition());
+            boolean outer = tailPosition;
+            tailPosition = false;
+            resolveInScope(wl.getBody());
+            tailPosition = outer;
+        } else if (statement instanceof VariableDeclaration vd) {
+            if (frame.isDeclared(vd.getName())) {
+                throw new ResolveError(String.format("Re-declaration of variable '%s'", vd.getName()),
+                        vd.getPosition(), vd.getLength());
+            }
+            // The initializer cannot see the variable being declared
+            if (vd.getExpression() != null) {
+                resolve(vd.getExpression());
+            }
+            vd.setSlot(frame.declare(vd.getName()));
+            if (vd.isConstant()) {
+                Expression value = vd.getExpression();
+                if (!(value instanceof NumberLiteral || value instanceof StringLiteral || value instanceof BooleanLiteral)) {
+                    throw new ResolveError(String.format("The value of constant '%s' must be a constant expression", vd.getName()),
+                            value.getPosition(), value.getLength());
+                }
+                frame.constants.add(vd.getSlot());
+            }
+        } else if (statement instanceof FunctionDefinition fd) {
+            fd.setSlot(functionSlot(fd.getName()));
+            functions.add(fd);
+            if (globals == null) {
+                // The scopes keep filling up, so the function sees the whole of the blocks it is in
+                enclosingScopes.put(fd, new ArrayList<>(frame.scopes));
+            }
+        } else if (statement instanceof ImportStatement is) {
+            // Imports are replaced by the imported functions when a program is loaded from a file
+            throw new ResolveError(String.format("Cannot import '%s' here", is.getPath()),
+                    is.getPosition(), is.getLength());
+        }
+    }
+
+    private void resolveInScope(Statement statement) throws ResolveError {
+        frame.beginScope();
+        resolve(statement);
+        frame.endScope();
+    }
+
+    private void resolveFunctionBody(FunctionDefinition fd) throws ResolveError {
+        outerScopes = enclosingScopes.getOrDefault(fd, List.of(globals));
+        frame = new FrameLayout();
+        frame.beginScope();
+        for (String argument : fd.getArguments()) {
+            frame.declare(argument);
+        }
+        tailPosition = true;
+        resolve(fd.getBody());
+        tailPosition = false;
+        frame.endScope();
+        fd.setFrameSize(frame.size);
+    }
+
+    private void resolve(Expression expression) throws ResolveError {
+        if (expression instanceof Identifier i) {
+            if (!bind(i)) {
+                throw new ResolveError(String.format("Undefined variable '%s'", i.getName()),
+                        i.getPosition(), i.getLength());
+            }
+        } else if (expression instanceof FunctionCallExpression call) {
+            call.setSlot(functionSlot(call.getName()));
+            for (Expression e : call.getArguments()) {
+                resolve(e);
+            }
+        } else if (expression instanceof SpawnExpression spawn) {
+            resolve(spawn.getCall());
+        } else if (expression instanceof ArrayLiteral a) {
+            for (Expression e : a.getElements()) {
+                resolve(e);
+            }
+        } else if (expression instanceof MapLiteral m) {
+            for (int i = 0; i < m.getKeys().size(); i++) {
+                resolve(m.getKeys().get(i));
+                resolve(m.getValues().get(i));
+            }
+        } else if (expression instanceof IndexExpression i) {
+            resolve(i.getArray());
+            resolve(i.getIndex());
+        } else if (expression instanceof IndexAssignment a) {
+            resolve(a.getTarget());
+            resolve(a.getValue());
+        } else if (expression instanceof UnaryExpression unaryExpression) {
+            resolve(unaryExpression.getOperand());
+        } else if (expression instanceof BinaryExpression binaryExpression) {
+            if ("=".equals(binaryExpression.getOperator())) {
+                Expression left = binaryExpression.getLeft();
+                if (!(left instanceof Identifier identifier)) {
+                    throw new ResolveError("Left side of assignment must be a variable",
+                            left.getPosition(), left.getLength());
+                }
+                if (!bind(identifier)) {
+                    throw new ResolveError(String.format("Undeclared variable '%s'", identifier.getName()),
+                            left.getPosition(), left.getLength());
+                }
+                Set<Integer> constants = identifier.getDepth() == 0 ? frame.constants : globalConstants;
+                if (constants.contains(identifier.getSlot())) {
+                    throw new ResolveError(String.format("Cannot assign to constant '%s'", identifier.getName()),
+                            left.getPosition(), left.getLength());
+                }
+            } else {
+                resolve(binaryExpression.getLeft());
+            }
+            resolve(binaryExpression.getRight());
+        }
+    }
+
+    private int functionSlot(String name) {
+        return functionSlots.computeIfAbsent(name, n -> functionSlots.size());
+    }
+
+    private boolean bind(Identifier identifier) {
+        Integer slot = frame.lookup(identifier.getName());
+        if (slot != null) {
+            identifier.bind(0, slot);
+            return true;
+        }
+        if (outerScopes != null) {
+            for (Map<String, Integer> scope : outerScopes) {
+                slot = scope.get(identifier.getName());
+                if (slot != null) {
+                    identifier.bind(1, slot);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Slot assignment for one frame. Slots are never reused, so a slot always belongs to a single
+     * declaration.
+     */
+    private static class FrameLayout {
+        private final Deque<Map<String, Integer>> scopes = new ArrayDeque<>();
+        private final Set<Integer> constants = new HashSet<>();
+        private int size;
+
+        void beginScope() {
+            scopes.push(new HashMap<>());
+        }
+
+        void endScope() {
+            scopes.pop();
+        }
+
+        int declare(String name) {
+            int slot = size++;
+            scopes.peek().put(name, slot);
+            return slot;
+        }
+
+        boolean isDeclared(String name) {
+            return lookup(name) != null;
+        }
+
+        Integer lookup(String name) {
+            for (Map<String, Integer> scope : scopes) {
+                Integer slot = scope.get(name);
+                if (slot != null) {
+                    return slot;
+                }
+            }
+            return null;
+        }
+    }
+}
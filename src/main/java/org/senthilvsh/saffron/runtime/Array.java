@@ -0,0 +1,257 @@
+package org.senthilvsh.saffron.runtime;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A Saffron array.
+ * <p>
+ * The elements are kept in a {@code double[]} for as long as they are all numbers, so arrays of numbers
+ * never box their elements (a number is only boxed when it is read into a variable). Storing anything
+ * other than a number moves the elements to an {@code Object[]} for good. Arrays grow by doubling their
+ * capacity, so adding an element at the end takes amortized constant time.
+ * <p>
+ * A slice is a view of a range of the elements of another array: it shares their storage, so changes
+ * made through either are visible in both. The length of a slice is fixed when it is made, and its
+ * elements can only be read and written while the array it was made from still has them.
+ * <p>
+ * Arrays are compared by identity. Like the other values, they are not synchronized: an array that is
+ * changed by one task while another uses it must be handed over through a channel.
+ */
+public final class Array {
+    private static final int MIN_CAPACITY = 8;
+
+    // The elements of an array, which its slices share
+    private static final class Storage {
+        private double[] numbers;
+        // Null for as long as the elements are all numbers
+        private Object[] values;
+        private int size;
+    }
+
+    private final Storage storage;
+    private final int offset;
+    // The length of a slice, or -1 for an array, whose length is the size of its storage
+    private final int length;
+
+    /**
+     * Creates an array of the given elements.
+     */
+    public Array(Object[] elements) {
+        storage = new Storage();
+        storage.size = elements.length;
+        offset = 0;
+        length = -1;
+        double[] numbers = new double[Math.max(elements.length, MIN_CAPACITY)];
+        for (int i = 0; i < elements.length; i++) {
+            if (!(elements[i] instanceof Double n)) {
+                storage.values = Arrays.copyOf(elements, numbers.length);
+                return;
+            }
+            numbers[i] = n;
+        }
+        storage.numbers = numbers;
+    }
+
+    /**
+     * Creates an array of the given numbers, which it takes ownership of.
+     */
+    public Array(double[] numbers) {
+        storage = new Storage();
+        storage.numbers = numbers;
+        storage.size = numbers.length;
+        offset = 0;
+        length = -1;
+    }
+
+    private Array(Storage storage, int offset, int length) {
+        this.storage = storage;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public int length() {
+        return length >= 0 ? length : storage.size;
+    }
+
+    public Object get(double index) throws NativeFunctionException {
+        int i = offset + checkIndex(index);
+        return storage.values != null ? storage.values[i] : (Object) storage.numbers[i];
+    }
+
+    public void set(double index, Object value) throws NativeFunctionException {
+        int i = offset + checkIndex(index);
+        if (storage.values == null) {
+            if (value instanceof Double n) {
+                storage.numbers[i] = n;
+                return;
+            }
+            generalize();
+        }
+        storage.values[i] = value;
+    }
+
+    /**
+     * Adds an element at the end of the array.
+     */
+    public void push(Object value) throws NativeFunctionException {
+        checkResizable();
+        Storage s = storage;
+        if (s.values == null && !(value instanceof Double)) {
+            generalize();
+        }
+        if (s.values == null) {
+            if (s.size == s.numbers.length) {
+                s.numbers = Arrays.copyOf(s.numbers, grow(s.size));
+            }
+            s.numbers[s.size++] = (Double) value;
+        } else {
+            if (s.size == s.values.length) {
+                s.values = Arrays.copyOf(s.values, grow(s.size));
+            }
+            s.values[s.size++] = value;
+        }
+    }
+
+    /**
+     * Removes the last element of the array and returns it.
+     */
+    public Object pop() throws NativeFunctionException {
+        checkResizable();
+        Storage s = storage;
+        if (s.size == 0) {
+            throw new NativeFunctionException("INDEX_OUT_OF_BOUNDS_EXCEPTION", "Array is empty");
+        }
+        s.size--;
+        if (s.values == null) {
+            return s.numbers[s.size];
+        }
+        Object value = s.values[s.size];
+        s.values[s.size] = null;
+        return value;
+    }
+
+    /**
+     * Returns a view of the elements from {@code start} to {@code end}, both inclusive. The view is
+     * empty if {@code end} is one less than {@code start}.
+     */
+    public Array slice(double start, double end) throws NativeFunctionException {
+        int length = length();
+        if (start != (int) start || end != (int) end || start < 0 || end >= length || end < start - 1) {
+            throw new NativeFunctionException("INDEX_OUT_OF_BOUNDS_EXCEPTION", "Index out of bounds");
+        }
+        return new Array(storage, offset + (int) start, (int) end - (int) start + 1);
+    }
+
+    /**
+     * Sorts the elements in ascending order. Only arrays of numbers, or of strings, can be sorted.
+     */
+    public void sort() throws NativeFunctionException {
+        int from = offset;
+        int to = offset + length();
+        if (to > storage.size) {
+            throw new NativeFunctionException("INDEX_OUT_OF_BOUNDS_EXCEPTION", "Index out of bounds");
+        }
+        if (storage.values == null) {
+            Arrays.sort(storage.numbers, from, to);
+            return;
+        }
+        Object[] values = storage.values;
+        boolean numbers = true;
+        boolean strings = true;
+        for (int i = from; i < to; i++) {
+            if (values[i] instanceof Rope rope) {
+                values[i] = rope.toString();
+            }
+            numbers &= values[i] instanceof Double;
+            strings &= values[i] instanceof String;
+        }
+        if (numbers) {
+            Arrays.sort(values, from, to, Comparator.comparingDouble(v -> (Double) v));
+        } else if (strings) {
+            Arrays.sort(values, from, to, Comparator.comparing(v -> (String) v));
+        } else {
+            throw new NativeFunctionException("INVALID_ARGUMENT_EXCEPTION",
+                    "Only arrays of numbers or of strings can be sorted");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        appendTo(result, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return result.toString();
+    }
+
+    /**
+     * Appends the elements. An array or map that contains itself, directly or through others, is printed
+     * as {@code [...]} or <code>{...}</code> where it comes up again inside itself.
+     */
+    void appendTo(StringBuilder result, Set<Object> printing) {
+        if (!printing.add(this)) {
+            result.append("[...]");
+            return;
+        }
+        result.append('[');
+        int length = Math.min(length(), storage.size - offset);
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            if (storage.values != null) {
+                appendValue(result, storage.values[offset + i], printing);
+            } else {
+                result.append((Object) storage.numbers[offset + i]);
+            }
+        }
+        result.append(']');
+        printing.remove(this);
+    }
+
+    /**
+     * Appends an element of an array or a value of a map.
+     */
+    static void appendValue(StringBuilder result, Object value, Set<Object> printing) {
+        if (value instanceof Array array) {
+            array.appendTo(result, printing);
+        } else if (value instanceof Dictionary map) {
+            map.appendTo(result, printing);
+        } else {
+            result.append(value);
+        }
+    }
+
+    private int checkIndex(double index) throws NativeFunctionException {
+        int i = (int) index;
+        if (i != index || i < 0 || i >= length() || offset + i >= storage.size) {
+            throw new NativeFunctionException("INDEX_OUT_OF_BOUNDS_EXCEPTION", "Index out of bounds");
+        }
+        return i;
+    }
+
+    private void checkResizable() throws NativeFunctionException {
+        if (length >= 0) {
+            throw new NativeFunctionException("INVALID_ARGUMENT_EXCEPTION", "The length of a slice cannot be changed");
+        }
+    }
+
+    private static int grow(int size) {
+        return Math.max(size * 2, MIN_CAPACITY);
+    }
+
+    /**
+     * Moves the elements to an {@code Object[]}, so that they can hold values other than numbers.
+     */
+    private void generalize() {
+        Storage s = storage;
+        Object[] values = new Object[s.numbers.length];
+        for (int i = 0; i < s.size; i++) {
+            values[i] = s.numbers[i];
+        }
+        s.values = values;
+        s.numbers = null;
+    }
+}
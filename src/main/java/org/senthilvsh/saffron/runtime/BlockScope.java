@@ -1,4 +0,0 @@
-package org.senthilvsh.saffron.runtime;
-
-public class BlockScope extends Scope {
-}
@@ -0,0 +1,98 @@
+package org.senthilvsh.saffron.runtime;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * The Saffron functions that an {@link Interpreter} is executing, outermost first, with the position
+ * of the statement each of them is at. The program itself is the outermost entry.
+ * <p>
+ * The interpreter only keeps a call stack while it is being profiled. The stack is updated by the
+ * thread running the program and read by the {@link org.senthilvsh.saffron.profiler.Profiler} from
+ * another thread without locking, so a snapshot can be slightly out of date, which does not matter
+ * for sampling.
+ */
+public final class CallStack {
+    public static final String PROGRAM = "<program>";
+
+    private static final VarHandle DEPTH;
+
+    static {
+        try {
+            DEPTH = MethodHandles.lookup().findVarHandle(CallStack.class, "depth", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private String[] functions = new String[64];
+    private int[] positions = new int[64];
+
+    // Written only by the thread running the program. The copy that other threads read is published
+    // with a release store, which unlike a volatile store costs nothing extra on every call.
+    private int top;
+    private int depth;
+
+    public CallStack() {
+        functions[0] = PROGRAM;
+        positions[0] = -1;
+        top = 0;
+        DEPTH.setRelease(this, 1);
+    }
+
+    void push(String function) {
+        if (top + 1 == functions.length) {
+            String[] newFunctions = Arrays.copyOf(functions, functions.length * 2);
+            int[] newPositions = Arrays.copyOf(positions, positions.length * 2);
+            functions = newFunctions;
+            positions = newPositions;
+        }
+        top++;
+        functions[top] = function;
+        positions[top] = -1;
+        DEPTH.setRelease(this, top + 1);
+    }
+
+    /**
+     * Replaces the innermost function, for a tail call.
+     */
+    void replace(String function) {
+        functions[top] = function;
+        positions[top] = -1;
+    }
+
+    void pop() {
+        top--;
+        DEPTH.setRelease(this, top + 1);
+    }
+
+    int size() {
+        return top + 1;
+    }
+
+    /**
+     * Drops the functions above the given size, which were interrupted by an exception.
+     */
+    void truncate(int size) {
+        top = size - 1;
+        DEPTH.setRelease(this, size);
+    }
+
+    void setPosition(int position) {
+        positions[top] = position;
+    }
+
+    /**
+     * Copies the stack into the given arrays, outermost first, and returns the number of entries.
+     * Entries that do not fit are left out.
+     */
+    public int snapshot(String[] functions, int[] positions) {
+        String[] currentFunctions = this.functions;
+        int[] currentPositions = this.positions;
+        int n = Math.min((int) DEPTH.getAcquire(this), Math.min(functions.length, Math.min(currentFunctions.length, currentPositions.length)));
+        System.arraycopy(currentFunctions, 0, functions, 0, n);
+        System.arraycopy(currentPositions, 0, positions, 0, n);
+        return n;
+    }
+}
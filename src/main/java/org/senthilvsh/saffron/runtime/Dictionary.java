@@ -0,0 +1,286 @@
+package org.senthilvsh.saffron.runtime;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A Saffron map.
+ * <p>
+ * Keys are compared the way {@link Operators#equal} compares values: numbers, strings and booleans by
+ * value, and arrays and maps by identity. A string key is always stored as a {@link String}, so a key
+ * built as a {@link Rope} finds the entry of an equal string literal. Keys of different types are never
+ * equal, so {@code 1} and {@code "1"} are different keys.
+ * <p>
+ * Entries are kept in an open-addressing table with linear probing, which remembers the hash of the key
+ * in each slot: a probe compares hashes before keys, and growing the table never hashes a key again.
+ * For as long as the keys are all numbers, they are kept in a {@code long[]} rather than boxed; the first
+ * key of another type moves them to an {@code Object[]} for good.
+ * <p>
+ * Like the other values, maps are not synchronized: a map that is changed by one task while another uses
+ * it must be handed over through a channel.
+ */
+public final class Dictionary {
+    private static final int MIN_CAPACITY = 8;
+
+    // The hash of the key in each slot, or 0 if the slot is empty
+    private int[] hashes;
+    // The keys as the bits of Double.doubleToLongBits, or null once a key is not a number
+    private long[] numberKeys;
+    // The keys, or null for as long as they are all numbers
+    private Object[] keys;
+    private Object[] values;
+    private int size;
+
+    public Dictionary() {
+        hashes = new int[MIN_CAPACITY];
+        numberKeys = new long[MIN_CAPACITY];
+        values = new Object[MIN_CAPACITY];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value of the given key, or raises a KEY_NOT_FOUND_EXCEPTION if there is none.
+     */
+    public Object get(Object key) throws NativeFunctionException {
+        int slot = find(normalize(key));
+        if (slot < 0) {
+            throw new NativeFunctionException("KEY_NOT_FOUND_EXCEPTION", "Key not found");
+        }
+        return values[slot];
+    }
+
+    /**
+     * Returns the value of the given key, or {@code defaultValue} if there is none.
+     */
+    public Object get(Object key, Object defaultValue) throws NativeFunctionException {
+        int slot = find(normalize(key));
+        return slot < 0 ? defaultValue : values[slot];
+    }
+
+    public boolean contains(Object key) throws NativeFunctionException {
+        return find(normalize(key)) >= 0;
+    }
+
+    public void put(Object key, Object value) throws NativeFunctionException {
+        key = normalize(key);
+        if (keys == null && !(key instanceof Double)) {
+            generalize();
+        }
+        int hash = hash(key);
+        int mask = hashes.length - 1;
+        int slot = hash & mask;
+        while (hashes[slot] != 0) {
+            if (hashes[slot] == hash && matches(slot, key)) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size + 1 > hashes.length - (hashes.length >> 2)) {
+            resize(hashes.length * 2);
+            put(key, value);
+            return;
+        }
+        hashes[slot] = hash;
+        if (keys == null) {
+            numberKeys[slot] = Double.doubleToLongBits((Double) key);
+        } else {
+            keys[slot] = key;
+        }
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * Removes the entry of the given key. Returns whether there was one.
+     */
+    public boolean remove(Object key) throws NativeFunctionException {
+        int slot = find(normalize(key));
+        if (slot < 0) {
+            return false;
+        }
+        // Move back the entries after the removed one that would no longer be found past the gap
+        int mask = hashes.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (hashes[next] != 0) {
+            int home = hashes[next] & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                move(next, gap);
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        hashes[gap] = 0;
+        if (keys != null) {
+            keys[gap] = null;
+        }
+        values[gap] = null;
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns an array of the keys, in no particular order.
+     */
+    public Array keys() {
+        Object[] result = new Object[size];
+        int n = 0;
+        for (int slot = 0; slot < hashes.length; slot++) {
+            if (hashes[slot] != 0) {
+                result[n++] = keyAt(slot);
+            }
+        }
+        return new Array(result);
+    }
+
+    /**
+     * Returns an array of the values, in the same order as {@link #keys()}.
+     */
+    public Array values() {
+        Object[] result = new Object[size];
+        int n = 0;
+        for (int slot = 0; slot < hashes.length; slot++) {
+            if (hashes[slot] != 0) {
+                result[n++] = values[slot];
+            }
+        }
+        return new Array(result);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        appendTo(result, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return result.toString();
+    }
+
+    /**
+     * Appends the entries. An array or map that contains itself, directly or through others, is printed
+     * as {@code [...]} or <code>{...}</code> where it comes up again inside itself.
+     */
+    void appendTo(StringBuilder result, Set<Object> printing) {
+        if (!printing.add(this)) {
+            result.append("{...}");
+            return;
+        }
+        result.append('{');
+        boolean first = true;
+        for (int slot = 0; slot < hashes.length; slot++) {
+            if (hashes[slot] != 0) {
+                if (!first) {
+                    result.append(", ");
+                }
+                first = false;
+                Array.appendValue(result, keyAt(slot), printing);
+                result.append(": ");
+                Array.appendValue(result, values[slot], printing);
+            }
+        }
+        result.append('}');
+        printing.remove(this);
+    }
+
+    private static Object normalize(Object key) throws NativeFunctionException {
+        if (key == null) {
+            throw new NativeFunctionException("INVALID_ARGUMENT_EXCEPTION", "A map key must have a value");
+        }
+        return key instanceof Rope rope ? rope.toString() : key;
+    }
+
+    private static int hash(Object key) {
+        long bits = key instanceof Double n ? Double.doubleToLongBits(n) : key.hashCode();
+        // Whole numbers have all their low bits zero, so every bit must reach the low bits of the hash,
+        // which pick the slot: fold the key and keep the middle bits of its product with a large odd number
+        int h = (int) (((bits ^ (bits >>> 32)) * 0x9E3779B97F4A7C15L) >>> 32);
+        return h != 0 ? h : 1;
+    }
+
+    private int find(Object key) {
+        if (keys == null && !(key instanceof Double)) {
+            return -1;
+        }
+        int hash = hash(key);
+        int mask = hashes.length - 1;
+        int slot = hash & mask;
+        while (hashes[slot] != 0) {
+            if (hashes[slot] == hash && matches(slot, key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean matches(int slot, Object key) {
+        if (keys == null) {
+            return numberKeys[slot] == Double.doubleToLongBits((Double) key);
+        }
+        Object k = keys[slot];
+        return k == key || k.equals(key);
+    }
+
+    private Object keyAt(int slot) {
+        return keys != null ? keys[slot] : (Object) Double.longBitsToDouble(numberKeys[slot]);
+    }
+
+    private void move(int from, int to) {
+        hashes[to] = hashes[from];
+        if (keys != null) {
+            keys[to] = keys[from];
+        } else {
+            numberKeys[to] = numberKeys[from];
+        }
+        values[to] = values[from];
+    }
+
+    private void resize(int capacity) {
+        int[] oldHashes = hashes;
+        long[] oldNumberKeys = numberKeys;
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        hashes = new int[capacity];
+        if (oldKeys == null) {
+            numberKeys = new long[capacity];
+        } else {
+            keys = new Object[capacity];
+        }
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] == 0) {
+                continue;
+            }
+            int slot = oldHashes[i] & mask;
+            while (hashes[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = oldHashes[i];
+            if (oldKeys == null) {
+                numberKeys[slot] = oldNumberKeys[i];
+            } else {
+                keys[slot] = oldKeys[i];
+            }
+            values[slot] = oldValues[i];
+        }
+    }
+
+    /**
+     * Moves the keys to an {@code Object[]}, so that they can hold values other than numbers.
+     */
+    private void generalize() {
+        Object[] objects = new Object[hashes.length];
+        for (int slot = 0; slot < hashes.length; slot++) {
+            if (hashes[slot] != 0) {
+                objects[slot] = Double.longBitsToDouble(numberKeys[slot]);
+            }
+        }
+        keys = objects;
+        numberKeys = null;
+    }
+}
@@ -0,0 +1,43 @@
+package org.senthilvsh.saffron.runtime;
+
+/**
+ * Storage for the variables of one function call, or for the global variables of a program.
+ * <p>
+ * Each frame links to the frame its function was defined in, which is where variables that are not
+ * local to the function are looked up. Slots are only allocated for frames that actually hold
+ * variables.
+ */
+public class Frame {
+    private static final Object[] EMPTY = new Object[0];
+
+    private final Frame parent;
+    private final Object[] slots;
+
+    public Frame(Frame parent, int size) {
+        this.parent = parent;
+        this.slots = size == 0 ? EMPTY : new Object[size];
+    }
+
+    public Frame getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the frame that is the given number of links above this frame.
+     */
+    public Frame ancestor(int depth) {
+        Frame frame = this;
+        for (int i = 0; i < depth; i++) {
+            frame = frame.parent;
+        }
+        return frame;
+    }
+
+    public Object get(int slot) {
+        return slots[slot];
+    }
+
+    public void set(int slot, Object value) {
+        slots[slot] = value;
+    }
+}
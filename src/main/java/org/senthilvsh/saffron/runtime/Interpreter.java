@@ -1,27 +1,99 @@
 package org.senthilvsh.saffron.runtime;
 
 import org.senthilvsh.saffron.ast.*;
+import org.senthilvsh.saffron.events.ExceptionCaughtEvent;
+import org.senthilvsh.saffron.events.FunctionCallEvent;
+import org.senthilvsh.saffron.events.NativeCallEvent;
+import org.senthilvsh.saffron.stdlib.Environment;
 import org.senthilvsh.saffron.stdlib.NativeFunctionsRegistry;
+import org.senthilvsh.saffron.stdlib.task.TaskTable;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class Interpreter {
     private final Stack<Statement> validationStack = new Stack<>();
-    private final Scopes scopes = new Scopes();
-    private final Map<String, FunctionDefinition> functions = new HashMap<>();
+    private Frame globals;
+    private Frame frame;
+    private final Map<String, NativeFunctionDefinition> natives;
+    // The function table of the running program, indexed by the slots of its functions. Shared
+    // with the interpreters of the tasks started by the program.
+    private AtomicReferenceArray<FunctionDefinition> functions;
+    private final TaskTable tasks;
+
+    // Kept up to date only when the program is being profiled
+    private final CallStack callStack;
 
     public Interpreter() {
-        functions.putAll(NativeFunctionsRegistry.getAll());
-        scopes.addFunctionScope();
+        this((CallStack) null);
+    }
+
+    /**
+     * Creates an interpreter that keeps the given call stack up to date while it runs a program.
+     */
+    public Interpreter(CallStack callStack) {
+        this(callStack, Environment.standard());
     }
 
+    /**
+     * Creates an interpreter whose programs use the given environment rather than that of the process.
+     */
+    public Interpreter(Environment environment) {
+        this(null, environment);
+    }
+
+    private Interpreter(CallStack callStack, Environment environment) {
+        this.callStack = callStack;
+        tasks = new TaskTable();
+        natives = NativeFunctionsRegistry.getAll(tasks, environment);
+    }
+
+    /**
+     * Creates an interpreter for a task started by the program that the given interpreter is running.
+     * Tasks share the functions and global variables of the program, and are not profiled.
+     */
+    private Interpreter(Interpreter parent) {
+        callStack = null;
+        tasks = parent.tasks;
+        natives = parent.natives;
+        functions = parent.functions;
+        globals = parent.globals;
+        frame = globals;
+    }
+
+    /**
+     * Executes a program that has been processed by the
+     * {@link org.senthilvsh.saffron.resolver.Resolver}.
+     */
     public void execute(Program program) throws RuntimeError {
+        execute(program, new Frame(null, program.getFrameSize()));
+    }
+
+    /**
+     * Executes a program with the given frame of global variables, which may already hold values.
+     * <p>
+     * The program itself is not modified, so a program can be executed by several interpreters on
+     * different threads at the same time. An interpreter can execute one program at a time.
+     */
+    public void execute(Program program, Frame globals) throws RuntimeError {
+        this.globals = globals;
+        frame = globals;
+        validationStack.clear();
+        // Functions defined by an earlier run are defined again by this one
+        List<String> names = program.getFunctionNames();
+        functions = new AtomicReferenceArray<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            functions.set(i, natives.get(names.get(i)));
+        }
         for (Statement s : program.getStatements()) {
             execute(s);
         }
     }
 
     private StatementResult execute(Statement statement) throws RuntimeError {
+        if (callStack != null) {
+            callStack.setPosition(statement.getPosition());
+        }
         if (statement instanceof ExpressionStatement es) {
             return executeExpressionStatement(es);
         } else if (statement instanceof BlockStatement bs) {
@@ -73,6 +145,16 @@ public class Interpreter {
             );
         }
         Expression expression = rs.getExpression();
+        if (rs.isTailCall()) {
+            FunctionCallExpression call = (FunctionCallExpression) expression;
+            Object[] args = evaluateArguments(call);
+            FunctionDefinition fd = lookupFunction(call, args);
+            if (!(fd instanceof NativeFunctionDefinition)) {
+                // Made by the caller once this function has returned
+                return new TailCallResult(fd, args);
+            }
+            return new ReturnStatementResult(call(fd, args));
+        }
         Object returnValue = null;
         if (expression != null) {
             returnValue = evaluate(expression);
@@ -89,67 +171,42 @@ public class Interpreter {
                     condition.getPosition(), condition.getLength());
         }
         if (conditionResult) {
-            StatementResult result;
-            scopes.addBlockScope();
-            result = execute(cs.getTrueClause());
-            scopes.remove();
-            return result;
+            return execute(cs.getTrueClause());
         } else {
             if (cs.getFalseClause() != null) {
-                StatementResult result;
-                scopes.addBlockScope();
-                result = execute(cs.getFalseClause());
-                scopes.remove();
-                return result;
+                return execute(cs.getFalseClause());
             }
         }
         return new StatementResult(StatementResultType.NORMAL);
     }
 
     private StatementResult executeTryCatchStatement(TryCatchStatement tcs) throws RuntimeError {
-        StatementResult result;
         Statement tryBlock = tcs.getTryBlock();
+        Frame tryFrame = frame;
+        int validationDepth = validationStack.size();
+        int callDepth = callStack != null ? callStack.size() : 0;
 
         try {
-            scopes.addBlockScope();
-            result = execute(tryBlock);
-            scopes.remove();
-            return result;
+            return execute(tryBlock);
         } catch (NativeFunctionException ex) {
-            scopes.remove();
-
-            Statement catchBlock = tcs.getCatchBlock();
-
-            scopes.addBlockScope();
+            // Drop the frames of any function calls and loops that were interrupted by the exception
+            frame = tryFrame;
+            validationStack.setSize(validationDepth);
+            if (callStack != null) {
+                callStack.truncate(callDepth);
+            }
 
-            String typeArgName = tcs.getExceptionType();
-            String typeArgValue = ex.getType();
-            Variable typeArgVariable = new Variable(
-                    typeArgName,
-                    typeArgValue,
-                    scopes.getDepth()
-            );
+            new ExceptionCaughtEvent(ex.getType(), ex.getMessage()).commit();
 
-            String msgArgName = tcs.getExceptionMessage();
-            String msgArgValue = ex.getMessage();
-            Variable msgArgVariable = new Variable(
-                    msgArgName,
-                    msgArgValue,
-                    scopes.getDepth()
-            );
+            Statement catchBlock = tcs.getCatchBlock();
 
-            scopes.current().put(typeArgName, typeArgVariable);
-            scopes.current().put(msgArgName, msgArgVariable);
+            frame.set(tcs.getExceptionTypeSlot(), ex.getType());
+            frame.set(tcs.getExceptionMessageSlot(), ex.getMessage());
 
-            try {
-                execute(catchBlock);
-                return new StatementResult(StatementResultType.NORMAL);
-            } catch (NativeFunctionException catchBlockException) {
-                scopes.remove();
-                // This is the case where code inside the catch block throws an exception,
-                // and it is not handled with a nested try-catch. All we can do it throw it upstream.
-                throw catchBlockException;
-            }
+            // If code inside the catch block throws an exception and it is not handled with a nested
+            // try-catch, it simply propagates upstream.
+            execute(catchBlock);
+            return new StatementResult(StatementResultType.NORMAL);
         }
     }
 
@@ -163,12 +220,14 @@ public class Interpreter {
 
         validationStack.push(wl);
         while (conditionResult != null && conditionResult) {
-            scopes.addBlockScope();
             StatementResult result = execute(wl.getBody());
-            scopes.remove();
             if (result.getType() == StatementResultType.BREAK) {
                 break;
             }
+            checkInterrupted(wl);
+            if (callStack != null) {
+                callStack.setPosition(condition.getPosition());
+            }
             conditionResult = (Boolean) evaluate(condition);
         }
         validationStack.pop();
@@ -198,30 +257,21 @@ public class Interpreter {
     }
 
     private StatementResult executeVariableDeclaration(VariableDeclaration vd) throws RuntimeError {
-        String name = vd.getName();
-        Scope scope = scopes.current();
-        if (scope.containsKey(name) && scope.get(name).getScopeDepth() == scopes.getDepth()) {
-            throw new RuntimeError(String.format("Re-declaration of variable '%s'", name),
-                    vd.getPosition(), vd.getLength());
-        }
         Object initValue = null;
         if (vd.getExpression() != null) {
             initValue = evaluate(vd.getExpression());
         }
-        Variable v = new Variable(name, initValue, scopes.getDepth());
-        scope.put(name, v);
+        frame.set(vd.getSlot(), initValue);
         return new StatementResult(StatementResultType.NORMAL);
     }
 
     private StatementResult executeFunctionDefinition(FunctionDefinition fd) throws RuntimeError {
-        String name = fd.getName();
-        if (functions.containsKey(name)) {
+        if (!functions.compareAndSet(fd.getSlot(), null, fd)) {
             throw new RuntimeError(
                     String.format("Function re-declaration: %s", fd.getName()),
                     fd.getNamePosition(),
                     fd.getNameLength());
         }
-        functions.put(name, fd);
         return new StatementResult(StatementResultType.NORMAL);
     }
 
@@ -236,89 +286,43 @@ public class Interpreter {
             return b.getValue();
         }
         if (expression instanceof Identifier i) {
-            Scope scope = scopes.current();
-            if (!scope.containsKey(i.getName())) {
-                throw new RuntimeError(String.format("Undefined variable '%s'", i.getName()),
-                        i.getPosition(), i.getLength());
-            }
-            Variable variable = scope.get(i.getName());
-            if (variable.getValue() == null) {
+            Object value = frame.ancestor(i.getDepth()).get(i.getSlot());
+            if (value == null) {
                 throw new RuntimeError(String.format("Variable '%s' is used before being assigned", i.getName()),
                         i.getPosition(), i.getLength());
             }
-            return variable.getValue();
+            return value;
         }
         if (expression instanceof FunctionCallExpression call) {
-            String name = call.getName();
-            List<Object> args = new ArrayList<>();
-            for (Expression e : call.getArguments()) {
-                args.add(evaluate(e));
-            }
-            if (!functions.containsKey(name)) {
-                throw new RuntimeError(
-                        String.format("Undeclared function %s", name),
-                        call.getPosition(), call.getLength());
-            }
-            FunctionDefinition fd = functions.get(name);
-            scopes.addFunctionScope();
-            Scope scope = scopes.current();
-            var arguments = fd.getArguments();
-            for (int i = 0; i < arguments.size(); i++) {
-                scope.put(arguments.get(i), new Variable(arguments.get(i), args.get(i), scopes.getDepth()));
-            }
-
-            validationStack.push(fd);
-
-            StatementResult result;
-            if (fd instanceof NativeFunctionDefinition nfd) {
-                try {
-                    result = nfd.getFunction().run(scope);
-                } catch (NativeFunctionException ex) {
-                    validationStack.pop();
-                    scopes.remove();
-                    throw ex;
-                }
-            } else {
-                result = execute(functions.get(name).getBody());
-            }
-
-            validationStack.pop();
-            scopes.remove();
-
-            if (result instanceof ReturnStatementResult rsr) {
-                return rsr.getReturnValue();
-            }
-
-            return null;
+            Object[] args = evaluateArguments(call);
+            return call(lookupFunction(call, args), args);
+        }
+        if (expression instanceof SpawnExpression spawn) {
+            FunctionCallExpression call = spawn.getCall();
+            Object[] args = evaluateArguments(call);
+            FunctionDefinition fd = lookupFunction(call, args);
+            return tasks.spawn(() -> new Interpreter(this).call(fd, args));
         }
         if (expression instanceof UnaryExpression unaryExpression) {
             String operator = unaryExpression.getOperator();
             Expression operand = unaryExpression.getOperand();
             Object baseObj = evaluate(operand);
-            if ("+-".contains(operator)) {
-                if (!(baseObj instanceof Double numberObj)) {
-                    throw new RuntimeError(
-                            String.format("Operation '%s' cannot be applied to '%s'", operator, baseObj.getClass()),
-                            unaryExpression.getOperatorPosition(),
-                            unaryExpression.getOperatorLength()
-                    );
-                }
+            try {
                 if ("+".equals(operator)) {
-                    return numberObj;
+                    return Operators.plus(baseObj);
                 }
                 if ("-".equals(operator)) {
-                    return -1 * numberObj;
+                    return Operators.negate(baseObj);
                 }
-            }
-            if ("!".contains(operator)) {
-                if (!(baseObj instanceof Boolean booleanObj)) {
-                    throw new RuntimeError(
-                            String.format("Operation '%s' cannot be applied to '%s'", operator, baseObj.getClass()),
-                            unaryExpression.getOperatorPosition(),
-                            unaryExpression.getOperatorLength()
-                    );
+                if ("!".equals(operator)) {
+                    return Operators.not(baseObj);
                 }
-                return !booleanObj;
+            } catch (RuntimeException ex) {
+                throw new RuntimeError(
+                        String.format("Operation '%s' cannot be applied to '%s'", operator, Operators.typeOf(baseObj)),
+                        unaryExpression.getOperatorPosition(),
+                        unaryExpression.getOperatorLength()
+                );
             }
             throw new RuntimeError(
                     String.format("Invalid unary operator '%s'", operator),
@@ -338,174 +342,198 @@ public class Interpreter {
 
             try {
                 if ("+".equals(operator)) {
-                    return add(left, right);
+                    return Operators.add(left, right);
                 }
                 if ("-".equals(operator)) {
-                    return subtract(left, right);
+                    return Operators.subtract(left, right);
                 }
                 if ("*".equals(operator)) {
-                    return multiply(left, right);
+                    return Operators.multiply(left, right);
                 }
                 if ("/".equals(operator)) {
-                    return divide(left, right);
+                    return Operators.divide(left, right);
                 }
                 if ("%".equals(operator)) {
-                    return modulo(left, right);
+                    return Operators.modulo(left, right);
                 }
                 if (">".equals(operator)) {
-                    return greaterThan(left, right);
+                    return Operators.greaterThan(left, right);
                 }
                 if (">=".equals(operator)) {
-                    return greaterThanOrEqual(left, right);
+                    return Operators.greaterThanOrEqual(left, right);
                 }
                 if ("<".equals(operator)) {
-                    return lessThan(left, right);
+                    return Operators.lessThan(left, right);
                 }
                 if ("<=".equals(operator)) {
-                    return lessThanOrEqual(left, right);
+                    return Operators.lessThanOrEqual(left, right);
                 }
                 if ("==".equals(operator)) {
-                    return equal(left, right);
+                    return Operators.equal(left, right);
                 }
                 if ("!=".equals(operator)) {
-                    return notEqual(left, right);
+                    return Operators.notEqual(left, right);
                 }
                 if ("&&".equals(operator)) {
-                    return logicalAnd(left, right);
+                    return Operators.logicalAnd(left, right);
                 }
                 if ("||".equals(operator)) {
-                    return logicalOr(left, right);
+                    return Operators.logicalOr(left, right);
                 }
             } catch (RuntimeException ex) {
                 throw new RuntimeError(String.format("Cannot perform operation '%s' on %s and %s", operator,
-                        left.getClass(), right.getClass()), binaryExpression.getOperatorPosition(), binaryExpression.getOperatorLength());
+                        Operators.typeOf(left), Operators.typeOf(right)), binaryExpression.getOperatorPosition(), binaryExpression.getOperatorLength());
             }
         }
-        throw new RuntimeError("Unknown expression type", expression.getPosition(), expression.getLength());
-    }
-
-    private Object add(Object left, Object right) {
-        if (left instanceof Double l && right instanceof Double r) {
-            return l + r;
-        }
-        if (left instanceof String l || right instanceof String r) {
-            String leftStr = left.toString();
-            String rightStr = right.toString();
-            return leftStr + rightStr;
-        }
-        throw new RuntimeException();
-    }
-
-    private Object subtract(Object left, Object right) {
-        if (left instanceof Double l && right instanceof Double r) {
-            return l - r;
+        if (expression instanceof ArrayLiteral arrayLiteral) {
+            List<Expression> elements = arrayLiteral.getElements();
+            Object[] values = new Object[elements.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = evaluate(elements.get(i));
+            }
+            return new Array(values);
+        }
+        if (expression instanceof MapLiteral mapLiteral) {
+            List<Expression> keys = mapLiteral.getKeys();
+            List<Expression> values = mapLiteral.getValues();
+            Dictionary map = new Dictionary();
+            for (int i = 0; i < keys.size(); i++) {
+                Object key = evaluate(keys.get(i));
+                map.put(key, evaluate(values.get(i)));
+            }
+            return map;
         }
-        throw new RuntimeException();
-    }
-
-    private Object multiply(Object left, Object right) {
-        if (left instanceof Double l && right instanceof Double r) {
-            return l * r;
+        if (expression instanceof IndexExpression indexExpression) {
+            Object array = evaluate(indexExpression.getArray());
+            Object index = evaluate(indexExpression.getIndex());
+            if (array instanceof Dictionary map) {
+                return map.get(index);
+            }
+            if (!(array instanceof Array a) || !(index instanceof Double i)) {
+                throw indexError(indexExpression, array, index);
+            }
+            return a.get(i);
+        }
+        if (expression instanceof IndexAssignment indexAssignment) {
+            IndexExpression target = indexAssignment.getTarget();
+            Object array = evaluate(target.getArray());
+            Object index = evaluate(target.getIndex());
+            Object value = evaluate(indexAssignment.getValue());
+            if (array instanceof Dictionary map) {
+                map.put(index, value);
+                return value;
+            }
+            if (!(array instanceof Array a) || !(index instanceof Double i)) {
+                throw indexError(target, array, index);
+            }
+            a.set(i, value);
+            return value;
         }
-        throw new RuntimeException();
+        throw new RuntimeError("Unknown expression type", expression.getPosition(), expression.getLength());
     }
 
-    private Object divide(Object left, Object right) {
-        if (left instanceof Double l && right instanceof Double r) {
-            return l / r;
-        }
-        throw new RuntimeException();
+    private static RuntimeError indexError(IndexExpression indexExpression, Object array, Object index) {
+        return new RuntimeError(String.format("Cannot perform operation '[]' on %s and %s",
+                Operators.typeOf(array), Operators.typeOf(index)), indexExpression.getPosition(), indexExpression.getLength());
     }
 
-    private Object modulo(Object left, Object right) {
-        if (left instanceof Double l && right instanceof Double r) {
-            return l % r;
+    private Object[] evaluateArguments(FunctionCallExpression call) throws RuntimeError {
+        List<Expression> arguments = call.getArguments();
+        Object[] args = new Object[arguments.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = evaluate(arguments.get(i));
         }
-        throw new RuntimeException();
+        return args;
     }
 
-    private Object greaterThan(Object left, Object right) {
-        if (left instanceof Double l && right instanceof Double r) {
-            return l > r;
+    /**
+     * Returns the function called by the given call, checking that it is declared and takes the
+     * given arguments.
+     */
+    private FunctionDefinition lookupFunction(FunctionCallExpression call, Object[] args) throws RuntimeError {
+        FunctionDefinition fd = functions.get(call.getSlot());
+        if (fd == null) {
+            throw new RuntimeError(
+                    String.format("Undeclared function %s", call.getName()),
+                    call.getPosition(), call.getLength());
         }
-        throw new RuntimeException();
-    }
-
-    private Object greaterThanOrEqual(Object left, Object right) {
-        if (left instanceof Double l && right instanceof Double r) {
-            return l >= r;
+        if (fd.getArguments().size() != args.length) {
+            throw new RuntimeError(
+                    String.format("Function %s takes %d argument(s), but %d were given",
+                            call.getName(), fd.getArguments().size(), args.length),
+                    call.getPosition(), call.getLength());
         }
-        throw new RuntimeException();
+        return fd;
     }
 
-    private Object lessThan(Object left, Object right) {
-        if (left instanceof Double l && right instanceof Double r) {
-            return l < r;
+    private Object call(FunctionDefinition fd, Object[] args) throws RuntimeError {
+        validationStack.push(fd);
+        if (callStack != null) {
+            callStack.push(fd.getName());
         }
-        throw new RuntimeException();
-    }
 
-    private Object lessThanOrEqual(Object left, Object right) {
-        if (left instanceof Double l && right instanceof Double r) {
-            return l <= r;
+        Object returnValue = null;
+        if (fd instanceof NativeFunctionDefinition nfd) {
+            NativeCallEvent event = new NativeCallEvent(fd.getName());
+            event.begin();
+            returnValue = nfd.call(args);
+            event.commit();
+        } else {
+            FunctionCallEvent event = new FunctionCallEvent(fd.getName());
+            event.begin();
+            Frame caller = frame;
+            StatementResult result = invoke(fd, args);
+            // Tail calls replace the returning call instead of being nested inside it
+            while (result instanceof TailCallResult tc) {
+                validationStack.set(validationStack.size() - 1, tc.getFunction());
+                if (callStack != null) {
+                    callStack.replace(tc.getFunction().getName());
+                }
+                result = invoke(tc.getFunction(), tc.getArguments());
+            }
+            frame = caller;
+            event.commit();
+            if (result instanceof ReturnStatementResult rsr) {
+                returnValue = rsr.getReturnValue();
+            }
         }
-        throw new RuntimeException();
-    }
 
-    private Object equal(Object left, Object right) {
-        if (left.getClass().equals(right.getClass())) {
-            return left.equals(right);
+        validationStack.pop();
+        if (callStack != null) {
+            callStack.pop();
         }
-        // Types of left and right are different
-        throw new RuntimeException();
-    }
 
-    private Object notEqual(Object left, Object right) {
-        if (left.getClass().equals(right.getClass())) {
-            return !left.equals(right);
-        }
-        // Types of left and right are different
-        throw new RuntimeException();
+        return returnValue;
     }
 
-    private Object logicalAnd(Object left, Object right) {
-        if (left instanceof Boolean l && right instanceof Boolean r) {
-            return l && r;
+    private StatementResult invoke(FunctionDefinition fd, Object[] args) throws RuntimeError {
+        checkInterrupted(fd);
+        frame = new Frame(globals, fd.getFrameSize());
+        for (int i = 0; i < args.length; i++) {
+            frame.set(i, args[i]);
         }
-        throw new RuntimeException();
+        return execute(fd.getBody());
     }
 
-    private Object logicalOr(Object left, Object right) {
-        if (left instanceof Boolean l && right instanceof Boolean r) {
-            return l || r;
+    /**
+     * Stops the program when the thread running it has been interrupted, along with the tasks it started.
+     * This is checked on every loop iteration and function call, so that a program that no one is waiting
+     * for any more can be stopped however long it would run.
+     */
+    private void checkInterrupted(Statement statement) throws RuntimeError {
+        if (Thread.currentThread().isInterrupted()) {
+            tasks.cancel();
+            throw new RuntimeError("The program was interrupted", statement.getPosition(), statement.getLength());
         }
-        throw new RuntimeException();
     }
 
     private Object assign(BinaryExpression binaryExpression) throws RuntimeError {
-        String variableName = getVariableName(binaryExpression);
+        Identifier identifier = (Identifier) binaryExpression.getLeft();
 
         Object right = evaluate(binaryExpression.getRight());
 
-        Variable variable = scopes.current().get(variableName);
-        variable.setValue(right);
+        frame.ancestor(identifier.getDepth()).set(identifier.getSlot(), right);
 
         return right;
     }
-
-    private String getVariableName(BinaryExpression binaryExpression) throws RuntimeError {
-        Expression left = binaryExpression.getLeft();
-
-        if (!(left instanceof Identifier identifier)) {
-            throw new RuntimeError("Left side of assignment must be a variable", left.getPosition(), left.getLength());
-        }
-
-        Scope scope = scopes.current();
-        String variableName = identifier.getName();
-        if (!scope.containsKey(variableName)) {
-            throw new RuntimeError(String.format("Undeclared variable '%s'", identifier.getName()),
-                    left.getPosition(), left.getLength());
-        }
-        return variableName;
-    }
 }
@@ -0,0 +1,153 @@
+package org.senthilvsh.saffron.runtime;
+
+/**
+ * Implementation of the unary and binary operators, shared by all execution engines.
+ * <p>
+ * Each method throws a {@link RuntimeException} if the operator cannot be applied to the given
+ * operands. The caller is expected to report it as a {@link RuntimeError} at the position of the
+ * operator.
+ */
+public class Operators {
+    private Operators() {
+    }
+
+    public static Object add(Object left, Object right) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l + r;
+        }
+        if (Rope.isString(left) || Rope.isString(right)) {
+            return Rope.concat(asString(left), asString(right));
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object subtract(Object left, Object right) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l - r;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object multiply(Object left, Object right) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l * r;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object divide(Object left, Object right) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l / r;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object modulo(Object left, Object right) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l % r;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object greaterThan(Object left, Object right) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l > r;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object greaterThanOrEqual(Object left, Object right) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l >= r;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object lessThan(Object left, Object right) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l < r;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object lessThanOrEqual(Object left, Object right) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l <= r;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object equal(Object left, Object right) {
+        if (left instanceof CharSequence l && right instanceof CharSequence r) {
+            return contentEquals(l, r);
+        }
+        if (left.getClass().equals(right.getClass())) {
+            return left.equals(right);
+        }
+        // Types of left and right are different
+        throw new RuntimeException();
+    }
+
+    public static Object notEqual(Object left, Object right) {
+        if (left instanceof CharSequence l && right instanceof CharSequence r) {
+            return !contentEquals(l, r);
+        }
+        if (left.getClass().equals(right.getClass())) {
+            return !left.equals(right);
+        }
+        // Types of left and right are different
+        throw new RuntimeException();
+    }
+
+    /**
+     * Returns the type of a value as reported in error messages. Strings are always reported as
+     * {@link String}, whether or not they are ropes.
+     */
+    public static Class<?> typeOf(Object value) {
+        return value instanceof Rope ? String.class : value.getClass();
+    }
+
+    public static Object logicalAnd(Object left, Object right) {
+        if (left instanceof Boolean l && right instanceof Boolean r) {
+            return l && r;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object logicalOr(Object left, Object right) {
+        if (left instanceof Boolean l && right instanceof Boolean r) {
+            return l || r;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object plus(Object operand) {
+        if (operand instanceof Double n) {
+            return n;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object negate(Object operand) {
+        if (operand instanceof Double n) {
+            return -1 * n;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object not(Object operand) {
+        if (operand instanceof Boolean b) {
+            return !b;
+        }
+        throw new RuntimeException();
+    }
+
+    private static CharSequence asString(Object value) {
+        return value instanceof CharSequence s ? s : value.toString();
+    }
+
+    private static boolean contentEquals(CharSequence left, CharSequence right) {
+        // Strings of different lengths are told apart without flattening a rope
+        return left.length() == right.length() && left.toString().equals(right.toString());
+    }
+}
@@ -0,0 +1,114 @@
+package org.senthilvsh.saffron.runtime;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A string value produced by concatenating two strings, without copying either of them.
+ * <p>
+ * Programs that build a long string by appending to it in a loop would otherwise copy everything
+ * built so far on every iteration. A rope only records its two parts, so concatenation takes
+ * constant time, and the characters are copied into a single string when the contents are first
+ * needed (see {@link #toString()}). Short results are still concatenated directly, since copying a
+ * few characters is cheaper than keeping track of the parts.
+ * <p>
+ * A rope is a Saffron string like any {@link String}: {@link Operators} treat the two the same, and
+ * native functions only ever see the flattened string (see
+ * {@link org.senthilvsh.saffron.ast.NativeFunctionDefinition#call}). Ropes are immutable, so they can
+ * be shared freely.
+ */
+public final class Rope implements CharSequence {
+    // Results shorter than this are plain strings, and so are the leaves that short parts are merged into
+    private static final int LEAF_LENGTH = 128;
+
+    private final CharSequence left;
+    private final CharSequence right;
+    private final int length;
+
+    // The contents, once they have been needed. Computing it twice is harmless, like String.hashCode.
+    private String flat;
+
+    private Rope(CharSequence left, CharSequence right) {
+        this.left = left;
+        this.right = right;
+        this.length = Math.addExact(left.length(), right.length());
+    }
+
+    /**
+     * Concatenates two strings, each of which is a {@link String} or a rope.
+     */
+    public static CharSequence concat(CharSequence left, CharSequence right) {
+        int length = left.length() + right.length();
+        if (length < LEAF_LENGTH) {
+            return left.toString() + right;
+        }
+        if (left instanceof Rope rope && rope.flat == null && rope.right instanceof String last
+                && right instanceof String s && last.length() + s.length() < LEAF_LENGTH) {
+            // Appending a short string: merge it into the last leaf instead of adding a level to the rope
+            return new Rope(rope.left, last + s);
+        }
+        return new Rope(left, right);
+    }
+
+    /**
+     * Returns whether a runtime value is a string, which is either a {@link String} or a rope.
+     */
+    public static boolean isString(Object value) {
+        return value instanceof String || value instanceof Rope;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        String s = flat;
+        if (s == null) {
+            s = flatten();
+            flat = s;
+        }
+        return s;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Rope rope && length == rope.length && toString().equals(rope.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    private String flatten() {
+        char[] chars = new char[length];
+        // Parts are copied from the end, so that the long chains of left parts built by appending in a
+        // loop are walked without recursion
+        int end = length;
+        Deque<CharSequence> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            CharSequence part = pending.pop();
+            while (part instanceof Rope rope && rope.flat == null) {
+                pending.push(rope.left);
+                part = rope.right;
+            }
+            String s = part.toString();
+            end -= s.length();
+            s.getChars(0, s.length(), chars, end);
+        }
+        return new String(chars);
+    }
+}
@@ -1,6 +0,0 @@
-package org.senthilvsh.saffron.runtime;
-
-import java.util.HashMap;
-
-public class Scope extends HashMap<String, Variable> {
-}
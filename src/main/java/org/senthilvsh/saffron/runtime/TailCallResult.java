@@ -0,0 +1,26 @@
+package org.senthilvsh.saffron.runtime;
+
+import org.senthilvsh.saffron.ast.FunctionDefinition;
+
+/**
+ * The result of a 'return' statement that returns the result of a tail call. The caller makes the
+ * call after the current function has returned, so the Java stack does not grow with each call.
+ */
+public class TailCallResult extends StatementResult {
+    private final FunctionDefinition function;
+    private final Object[] arguments;
+
+    public TailCallResult(FunctionDefinition function, Object[] arguments) {
+        super(StatementResultType.RETURN);
+        this.function = function;
+        this.arguments = arguments;
+    }
+
+    public FunctionDefinition getFunction() {
+        return function;
+    }
+
+    public Object[] getArguments() {
+        return arguments;
+    }
+}
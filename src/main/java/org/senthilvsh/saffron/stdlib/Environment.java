@@ -0,0 +1,97 @@
+package org.senthilvsh.saffron.stdlib;
+
+import org.senthilvsh.saffron.stdlib.console.ConsoleInput;
+import org.senthilvsh.saffron.stdlib.console.ConsoleOutput;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What a program uses of the process that runs it: the console, the stream that errors are reported
+ * to, and the directory that relative file paths are resolved against.
+ * <p>
+ * Programs run from the command line use the {@link #standard()} environment, which is that of the
+ * process. The daemon gives each program that it runs an environment of its own, which ends with the
+ * program (see {@link #exit()}).
+ */
+public final class Environment {
+    private static Environment standard;
+
+    private final ConsoleInput input;
+    private final ConsoleOutput output;
+    private final PrintStream error;
+    // Null in the standard environment, whose relative paths are resolved by the JVM
+    private final Path workingDirectory;
+    // Null in the standard environment, which leaves them to the shutdown hooks of the JVM
+    private final List<Runnable> exitActions;
+
+    public Environment(ConsoleInput input, ConsoleOutput output, PrintStream error, Path workingDirectory) {
+        this(input, output, error, workingDirectory, new ArrayList<>());
+    }
+
+    private Environment(ConsoleInput input, ConsoleOutput output, PrintStream error, Path workingDirectory,
+                        List<Runnable> exitActions) {
+        this.input = input;
+        this.output = output;
+        this.error = error;
+        this.workingDirectory = workingDirectory;
+        this.exitActions = exitActions;
+    }
+
+    public static synchronized Environment standard() {
+        if (standard == null) {
+            standard = new Environment(ConsoleInput.standard(), ConsoleOutput.standard(), System.err, null, null);
+        }
+        return standard;
+    }
+
+    public ConsoleInput getInput() {
+        return input;
+    }
+
+    public ConsoleOutput getOutput() {
+        return output;
+    }
+
+    public PrintStream getError() {
+        return error;
+    }
+
+    public Path resolve(String path) {
+        return workingDirectory != null ? workingDirectory.resolve(path) : Path.of(path);
+    }
+
+    /**
+     * Runs an action when the program ends, such as closing the files it left open.
+     */
+    public void atExit(Runnable action) {
+        if (exitActions == null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(action, "saffron-exit"));
+            return;
+        }
+        synchronized (exitActions) {
+            exitActions.add(action);
+        }
+    }
+
+    /**
+     * Ends the program that uses this environment: runs the actions registered with {@link #atExit}, and
+     * flushes and closes the output. Does nothing in the standard environment, which ends with the JVM.
+     */
+    public void exit() {
+        if (exitActions == null) {
+            return;
+        }
+        List<Runnable> actions;
+        synchronized (exitActions) {
+            actions = new ArrayList<>(exitActions);
+            exitActions.clear();
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+        output.close();
+    }
+}
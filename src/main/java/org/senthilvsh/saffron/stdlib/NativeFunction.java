@@ -1,8 +1,6 @@
 package org.senthilvsh.saffron.stdlib;
 
 import org.senthilvsh.saffron.runtime.NativeFunctionException;
-import org.senthilvsh.saffron.runtime.Scope;
-import org.senthilvsh.saffron.runtime.StatementResult;
 
 import java.util.List;
 
@@ -11,5 +9,11 @@ public interface NativeFunction {
 
     List<String> getArguments();
 
-    StatementResult run(Scope scope) throws NativeFunctionException;
+    /**
+     * Runs the function. The arguments are given in the order of {@link #getArguments()}, and there
+     * are always exactly as many as it declares; strings are always given as a {@link String}.
+     *
+     * @return the return value of the function, or {@code null} if it does not return one
+     */
+    Object call(Object[] args) throws NativeFunctionException;
 }
@@ -1,6 +1,9 @@
 package org.senthilvsh.saffron.stdlib;
 
 import org.senthilvsh.saffron.ast.NativeFunctionDefinition;
+import org.senthilvsh.saffron.stdlib.array.*;
+import org.senthilvsh.saffron.stdlib.console.EndOfInput;
+import org.senthilvsh.saffron.stdlib.console.ReadAll;
 import org.senthilvsh.saffron.stdlib.console.ReadLine;
 import org.senthilvsh.saffron.stdlib.console.Write;
 import org.senthilvsh.saffron.stdlib.console.WriteNL;
@@ -8,7 +11,10 @@ import org.senthilvsh.saffron.stdlib.conversion.BooleanToString;
 import org.senthilvsh.saffron.stdlib.conversion.NumberToString;
 import org.senthilvsh.saffron.stdlib.conversion.StringToBoolean;
 import org.senthilvsh.saffron.stdlib.conversion.StringToNumber;
+import org.senthilvsh.saffron.stdlib.file.*;
+import org.senthilvsh.saffron.stdlib.map.*;
 import org.senthilvsh.saffron.stdlib.string.*;
+import org.senthilvsh.saffron.stdlib.task.*;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -17,11 +23,28 @@ import java.util.Map;
 
 public class NativeFunctionsRegistry {
     public static Map<String, NativeFunctionDefinition> getAll() {
+        return getAll(new TaskTable());
+    }
+
+    /**
+     * Returns the native functions, with {@code join} waiting for the tasks in the given table. An engine
+     * that supports {@code spawn} starts its tasks in the same table.
+     */
+    public static Map<String, NativeFunctionDefinition> getAll(TaskTable tasks) {
+        return getAll(tasks, Environment.standard());
+    }
+
+    /**
+     * Returns the native functions, with the console and the files of the given environment.
+     */
+    public static Map<String, NativeFunctionDefinition> getAll(TaskTable tasks, Environment environment) {
         List<NativeFunction> nativeFunctions = new ArrayList<>();
 
-        nativeFunctions.add(new Write());
-        nativeFunctions.add(new WriteNL());
-        nativeFunctions.add(new ReadLine());
+        nativeFunctions.add(new Write(environment.getOutput()));
+        nativeFunctions.add(new WriteNL(environment.getOutput()));
+        nativeFunctions.add(new ReadLine(environment.getInput()));
+        nativeFunctions.add(new ReadAll(environment.getInput()));
+        nativeFunctions.add(new EndOfInput(environment.getInput()));
 
         nativeFunctions.add(new StringLength());
         nativeFunctions.add(new StringSubString());
@@ -31,11 +54,41 @@ public class NativeFunctionsRegistry {
         nativeFunctions.add(new StringStartsWith());
         nativeFunctions.add(new StringEndsWith());
 
+        nativeFunctions.add(new ArrayLength());
+        nativeFunctions.add(new ArrayPush());
+        nativeFunctions.add(new ArrayPop());
+        nativeFunctions.add(new ArraySlice());
+        nativeFunctions.add(new ArraySort());
+
+        nativeFunctions.add(new MapGet());
+        nativeFunctions.add(new MapPut());
+        nativeFunctions.add(new MapRemove());
+        nativeFunctions.add(new MapContains());
+        nativeFunctions.add(new MapSize());
+        nativeFunctions.add(new MapKeys());
+        nativeFunctions.add(new MapValues());
+
         nativeFunctions.add(new StringToNumber());
         nativeFunctions.add(new StringToBoolean());
         nativeFunctions.add(new NumberToString());
         nativeFunctions.add(new BooleanToString());
 
+        // The files opened through these functions belong to the caller of this method
+        FileTable files = new FileTable(environment);
+        nativeFunctions.add(new FileOpen(files));
+        nativeFunctions.add(new FileReadLine(files));
+        nativeFunctions.add(new FileRead(files));
+        nativeFunctions.add(new FileEndOfFile(files));
+        nativeFunctions.add(new FileWrite(files));
+        nativeFunctions.add(new FileClose(files));
+
+        ChannelTable channels = new ChannelTable();
+        nativeFunctions.add(new Join(tasks));
+        nativeFunctions.add(new ChannelNew(channels));
+        nativeFunctions.add(new ChannelSend(channels));
+        nativeFunctions.add(new ChannelReceive(channels));
+        nativeFunctions.add(new ChannelClose(channels));
+
         Map<String, NativeFunctionDefinition> definitions = new HashMap<>();
 
         for (NativeFunction nf : nativeFunctions) {
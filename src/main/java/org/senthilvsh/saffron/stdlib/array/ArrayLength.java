@@ -0,0 +1,25 @@
+package org.senthilvsh.saffron.stdlib.array;
+
+import org.senthilvsh.saffron.runtime.Array;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class ArrayLength implements NativeFunction {
+    @Override
+    public String getName() {
+        return "arr_length";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("array");
+    }
+
+    @Override
+    public Object call(Object[] args) {
+        Array array = (Array) args[0];
+
+        return (double) array.length();
+    }
+}
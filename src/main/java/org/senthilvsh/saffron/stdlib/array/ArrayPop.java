@@ -0,0 +1,26 @@
+package org.senthilvsh.saffron.stdlib.array;
+
+import org.senthilvsh.saffron.runtime.Array;
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class ArrayPop implements NativeFunction {
+    @Override
+    public String getName() {
+        return "arr_pop";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("array");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        Array array = (Array) args[0];
+
+        return array.pop();
+    }
+}
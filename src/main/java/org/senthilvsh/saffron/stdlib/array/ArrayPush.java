@@ -0,0 +1,26 @@
+package org.senthilvsh.saffron.stdlib.array;
+
+import org.senthilvsh.saffron.runtime.Array;
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class ArrayPush implements NativeFunction {
+    @Override
+    public String getName() {
+        return "arr_push";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("array", "value");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        Array array = (Array) args[0];
+        array.push(args[1]);
+        return null;
+    }
+}
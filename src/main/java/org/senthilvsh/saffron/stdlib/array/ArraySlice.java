@@ -0,0 +1,28 @@
+package org.senthilvsh.saffron.stdlib.array;
+
+import org.senthilvsh.saffron.runtime.Array;
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class ArraySlice implements NativeFunction {
+    @Override
+    public String getName() {
+        return "arr_slice";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("array", "start", "end");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        Array array = (Array) args[0];
+        double start = (Double) args[1];
+        double end = (Double) args[2];
+
+        return array.slice(start, end);
+    }
+}
@@ -0,0 +1,75 @@
+package org.senthilvsh.saffron.stdlib.console;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * The input of a Saffron program, shared by all native functions that read. Programs read the standard
+ * input of the process unless they run in an {@link org.senthilvsh.saffron.stdlib.Environment} of their own.
+ * <p>
+ * All reads go through one large buffer, so input that has been read ahead for one call is still
+ * there for the next. Output is flushed before each read, so that a prompt is visible while the
+ * program waits for input.
+ */
+public final class ConsoleInput {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static ConsoleInput standard;
+
+    private final BufferedReader in;
+    private final ConsoleOutput output;
+
+    /**
+     * Creates an input that reads from the given stream, and flushes the given output before each read.
+     */
+    public ConsoleInput(InputStream in, Charset charset, ConsoleOutput output) {
+        this.in = new BufferedReader(new InputStreamReader(in, charset), BUFFER_SIZE);
+        this.output = output;
+    }
+
+    public static synchronized ConsoleInput standard() {
+        if (standard == null) {
+            standard = new ConsoleInput(
+                    new FileInputStream(FileDescriptor.in),
+                    Charset.forName(System.getProperty("sun.stdin.encoding", Charset.defaultCharset().name())),
+                    ConsoleOutput.standard()
+            );
+        }
+        return standard;
+    }
+
+    /**
+     * Returns the next line without its line terminator, or null at the end of the input.
+     */
+    public synchronized String readLine() throws IOException {
+        output.flush();
+        return in.readLine();
+    }
+
+    /**
+     * Returns all the remaining input, which is empty at the end of the input.
+     */
+    public synchronized String readAll() throws IOException {
+        output.flush();
+        StringBuilder sb = new StringBuilder();
+        char[] chars = new char[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(chars)) >= 0) {
+            sb.append(chars, 0, n);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns whether the end of the input has been reached, waiting for more input if necessary.
+     */
+    public synchronized boolean isAtEnd() throws IOException {
+        output.flush();
+        in.mark(1);
+        if (in.read() < 0) {
+            return true;
+        }
+        in.reset();
+        return false;
+    }
+}
@@ -0,0 +1,159 @@
+package org.senthilvsh.saffron.stdlib.console;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * The output of a Saffron program, shared by all native functions that print. Programs write to the
+ * standard output of the process unless they run in an {@link org.senthilvsh.saffron.stdlib.Environment}
+ * of their own.
+ * <p>
+ * Printing through {@link System#out} writes to the operating system on every line, which limits
+ * programs that print a lot to the speed of those calls. This class collects the output in a large
+ * buffer instead, encoding it with a single reused encoder, and writes it out
+ * <ul>
+ *     <li>when the buffer is full,</li>
+ *     <li>when output has been waiting for longer than the flush interval,</li>
+ *     <li>at the end of every line when the output is an interactive console, and</li>
+ *     <li>whenever {@link #flush()} is called: before reading input, before an error is reported and
+ *     when the program ends.</li>
+ * </ul>
+ * The buffer size in bytes and the flush interval in milliseconds can be set with the
+ * {@code SAFFRON_OUTPUT_BUFFER} and {@code SAFFRON_OUTPUT_FLUSH_MS} environment variables. The buffer
+ * size is at most 16 MiB, and an interval of 0 flushes after every write.
+ */
+public final class ConsoleOutput {
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final int MAX_BUFFER_SIZE = 1 << 24;
+    private static final long DEFAULT_FLUSH_INTERVAL = 100;
+
+    private static ConsoleOutput standard;
+
+    private final Writer out;
+    private final long flushInterval;
+    private final boolean lineBuffered;
+
+    // Whether there is output that has not been flushed, whether the thread that flushes it after the
+    // interval has been started, and whether that thread is to stop
+    private boolean pending;
+    private boolean flusherStarted;
+    private boolean closed;
+
+    public ConsoleOutput(OutputStream out, Charset charset, int bufferSize, long flushInterval, boolean lineBuffered) {
+        // The encoder of the writer is reused for all output, and its output is collected in the buffer
+        this.out = new OutputStreamWriter(new BufferedOutputStream(out, bufferSize), charset);
+        this.flushInterval = flushInterval;
+        this.lineBuffered = lineBuffered;
+    }
+
+    /**
+     * Returns the output of the process, which is flushed at the latest when the JVM exits.
+     */
+    public static synchronized ConsoleOutput standard() {
+        if (standard == null) {
+            standard = create(
+                    new FileOutputStream(FileDescriptor.out),
+                    Charset.forName(System.getProperty("sun.stdout.encoding", Charset.defaultCharset().name())),
+                    System.console() != null
+            );
+            Runtime.getRuntime().addShutdownHook(new Thread(standard::flush, "saffron-output-exit"));
+        }
+        return standard;
+    }
+
+    /**
+     * Creates an output with the buffer size and flush interval set by the environment variables.
+     */
+    public static ConsoleOutput create(OutputStream out, Charset charset, boolean lineBuffered) {
+        return new ConsoleOutput(out, charset,
+                Math.clamp(setting("SAFFRON_OUTPUT_BUFFER", DEFAULT_BUFFER_SIZE), 1, MAX_BUFFER_SIZE),
+                setting("SAFFRON_OUTPUT_FLUSH_MS", DEFAULT_FLUSH_INTERVAL),
+                lineBuffered);
+    }
+
+    public synchronized void write(String s) {
+        try {
+            out.write(s);
+        } catch (IOException e) {
+            // Like System.out, output that cannot be written is dropped
+            return;
+        }
+        written();
+    }
+
+    public synchronized void writeLine(String s) {
+        try {
+            out.write(s);
+            out.write(System.lineSeparator());
+        } catch (IOException e) {
+            return;
+        }
+        if (lineBuffered) {
+            flush();
+        } else {
+            written();
+        }
+    }
+
+    public synchronized void flush() {
+        pending = false;
+        try {
+            out.flush();
+        } catch (IOException e) {
+            // Dropped, as in write()
+        }
+    }
+
+    /**
+     * Flushes the output and stops the thread that flushes it after the interval. Output written
+     * afterwards is only flushed when the buffer is full or {@link #flush()} is called.
+     */
+    public synchronized void close() {
+        flush();
+        closed = true;
+    }
+
+    private void written() {
+        if (flushInterval <= 0) {
+            flush();
+            return;
+        }
+        pending = true;
+        if (!flusherStarted) {
+            flusherStarted = true;
+            Thread flusher = new Thread(this::flushPeriodically, "saffron-output-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    private void flushPeriodically() {
+        while (true) {
+            try {
+                Thread.sleep(flushInterval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (pending) {
+                    flush();
+                }
+            }
+        }
+    }
+
+    private static long setting(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                // Ignored, like an unset variable
+            }
+        }
+        return defaultValue;
+    }
+}
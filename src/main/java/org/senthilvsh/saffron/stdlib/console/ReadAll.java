@@ -0,0 +1,34 @@
+package org.senthilvsh.saffron.stdlib.console;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.io.IOException;
+import java.util.List;
+
+public class ReadAll implements NativeFunction {
+    private final ConsoleInput input;
+
+    public ReadAll(ConsoleInput input) {
+        this.input = input;
+    }
+
+    @Override
+    public String getName() {
+        return "readall";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of();
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        try {
+            return input.readAll();
+        } catch (IOException e) {
+            throw new NativeFunctionException("IO_EXCEPTION", "Unable to read input");
+        }
+    }
+}
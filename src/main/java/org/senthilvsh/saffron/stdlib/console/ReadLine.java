@@ -1,15 +1,19 @@
 package org.senthilvsh.saffron.stdlib.console;
 
-import org.senthilvsh.saffron.runtime.ReturnStatementResult;
-import org.senthilvsh.saffron.runtime.Scope;
-import org.senthilvsh.saffron.runtime.StatementResult;
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
 import org.senthilvsh.saffron.stdlib.NativeFunction;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
 
 public class ReadLine implements NativeFunction {
+    private final ConsoleInput input;
+
+    public ReadLine(ConsoleInput input) {
+        this.input = input;
+    }
+
     @Override
     public String getName() {
         return "readln";
@@ -21,7 +25,16 @@ public class ReadLine implements NativeFunction {
     }
 
     @Override
-    public StatementResult run(Scope scope) {
-        return new ReturnStatementResult(new Scanner(System.in).nextLine());
+    public Object call(Object[] args) throws NativeFunctionException {
+        String line;
+        try {
+            line = input.readLine();
+        } catch (IOException e) {
+            throw new NativeFunctionException("IO_EXCEPTION", "Unable to read input");
+        }
+        if (line == null) {
+            throw new NativeFunctionException("END_OF_INPUT_EXCEPTION", "End of input");
+        }
+        return line;
     }
 }
@@ -1,13 +1,16 @@
 package org.senthilvsh.saffron.stdlib.console;
 
-import org.senthilvsh.saffron.runtime.ReturnStatementResult;
-import org.senthilvsh.saffron.runtime.Scope;
-import org.senthilvsh.saffron.runtime.StatementResult;
 import org.senthilvsh.saffron.stdlib.NativeFunction;
 
 import java.util.List;
 
 public class Write implements NativeFunction {
+    private final ConsoleOutput output;
+
+    public Write(ConsoleOutput output) {
+        this.output = output;
+    }
+
     @Override
     public String getName() {
         return "write";
@@ -19,9 +22,8 @@ public class Write implements NativeFunction {
     }
 
     @Override
-    public StatementResult run(Scope scope) {
-        Object baseObj = scope.get("value").getValue();
-        System.out.print(baseObj.toString());
-        return new ReturnStatementResult(null);
+    public Object call(Object[] args) {
+        output.write(args[0].toString());
+        return null;
     }
 }
@@ -1,13 +1,16 @@
 package org.senthilvsh.saffron.stdlib.console;
 
-import org.senthilvsh.saffron.runtime.ReturnStatementResult;
-import org.senthilvsh.saffron.runtime.Scope;
-import org.senthilvsh.saffron.runtime.StatementResult;
 import org.senthilvsh.saffron.stdlib.NativeFunction;
 
 import java.util.List;
 
 public class WriteNL implements NativeFunction {
+    private final ConsoleOutput output;
+
+    public WriteNL(ConsoleOutput output) {
+        this.output = output;
+    }
+
     @Override
     public String getName() {
         return "writeln";
@@ -19,9 +22,8 @@ public class WriteNL implements NativeFunction {
     }
 
     @Override
-    public StatementResult run(Scope scope) {
-        Object baseObj = scope.get("value").getValue();
-        System.out.println(baseObj.toString());
-        return new ReturnStatementResult(null);
+    public Object call(Object[] args) {
+        output.writeLine(args[0].toString());
+        return null;
     }
 }
@@ -1,9 +1,5 @@
 package org.senthilvsh.saffron.stdlib.conversion;
 
-import org.senthilvsh.saffron.runtime.ReturnStatementResult;
-import org.senthilvsh.saffron.runtime.Scope;
-import org.senthilvsh.saffron.runtime.StatementResult;
-import org.senthilvsh.saffron.runtime.Variable;
 import org.senthilvsh.saffron.stdlib.NativeFunction;
 
 import java.util.List;
@@ -20,12 +16,9 @@ public class BooleanToString implements NativeFunction {
     }
 
     @Override
-    public StatementResult run(Scope scope) {
-        Variable sourceVar = scope.get("source");
-        boolean source = (Boolean) sourceVar.getValue();
+    public Object call(Object[] args) {
+        boolean source = (Boolean) args[0];
 
-        String result = String.valueOf(source);
-
-        return new ReturnStatementResult(result);
+        return String.valueOf(source);
     }
 }
@@ -1,9 +1,5 @@
 package org.senthilvsh.saffron.stdlib.conversion;
 
-import org.senthilvsh.saffron.runtime.ReturnStatementResult;
-import org.senthilvsh.saffron.runtime.Scope;
-import org.senthilvsh.saffron.runtime.StatementResult;
-import org.senthilvsh.saffron.runtime.Variable;
 import org.senthilvsh.saffron.stdlib.NativeFunction;
 
 import java.util.List;
@@ -20,17 +16,12 @@ public class NumberToString implements NativeFunction {
     }
 
     @Override
-    public StatementResult run(Scope scope) {
-        Variable sourceVar = scope.get("source");
-        double source = (Double) sourceVar.getValue();
+    public Object call(Object[] args) {
+        double source = (Double) args[0];
 
-        String result;
         if ((long) source == source) {
-            result = String.valueOf((long) source);
-        } else {
-            result = String.valueOf(source);
+            return String.valueOf((long) source);
         }
-
-        return new ReturnStatementResult(result);
+        return String.valueOf(source);
     }
 }
@@ -1,6 +1,6 @@
 package org.senthilvsh.saffron.stdlib.conversion;
 
-import org.senthilvsh.saffron.runtime.*;
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
 import org.senthilvsh.saffron.stdlib.NativeFunction;
 
 import java.util.List;
@@ -17,20 +17,14 @@ public class StringToBoolean implements NativeFunction {
     }
 
     @Override
-    public StatementResult run(Scope scope) throws NativeFunctionException {
-        Variable sourceVar = scope.get("source");
-        String source = (String) sourceVar.getValue();
-
-        boolean result;
+    public Object call(Object[] args) throws NativeFunctionException {
+        String source = (String) args[0];
 
         if ("true".equals(source)) {
-            result = true;
+            return true;
         } else if ("false".equals(source)) {
-            result = false;
-        } else {
-            throw new NativeFunctionException("FORMAT_EXCEPTION", "Not a valid boolean");
+            return false;
         }
-
-        return new ReturnStatementResult(result);
+        throw new NativeFunctionException("FORMAT_EXCEPTION", "Not a valid boolean");
     }
 }
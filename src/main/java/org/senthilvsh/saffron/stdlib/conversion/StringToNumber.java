@@ -1,6 +1,6 @@
 package org.senthilvsh.saffron.stdlib.conversion;
 
-import org.senthilvsh.saffron.runtime.*;
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
 import org.senthilvsh.saffron.stdlib.NativeFunction;
 
 import java.util.List;
@@ -17,17 +17,13 @@ public class StringToNumber implements NativeFunction {
     }
 
     @Override
-    public StatementResult run(Scope scope) throws NativeFunctionException {
-        Variable sourceVar = scope.get("source");
-        String source = (String) sourceVar.getValue();
+    public Object call(Object[] args) throws NativeFunctionException {
+        String source = (String) args[0];
 
-        double result;
         try {
-            result = Double.parseDouble(source);
+            return Double.parseDouble(source);
         } catch (NumberFormatException e) {
             throw new NativeFunctionException("FORMAT_EXCEPTION", "Not a valid number");
         }
-
-        return new ReturnStatementResult(result);
     }
 }
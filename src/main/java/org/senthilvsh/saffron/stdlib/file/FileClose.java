@@ -0,0 +1,30 @@
+package org.senthilvsh.saffron.stdlib.file;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class FileClose implements NativeFunction {
+    private final FileTable files;
+
+    public FileClose(FileTable files) {
+        this.files = files;
+    }
+
+    @Override
+    public String getName() {
+        return "file_close";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("handle");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        files.close(args[0]);
+        return null;
+    }
+}
@@ -0,0 +1,35 @@
+package org.senthilvsh.saffron.stdlib.file;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.io.IOException;
+import java.util.List;
+
+public class FileEndOfFile implements NativeFunction {
+    private final FileTable files;
+
+    public FileEndOfFile(FileTable files) {
+        this.files = files;
+    }
+
+    @Override
+    public String getName() {
+        return "file_eof";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("handle");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        FileHandle file = files.get(args[0], false);
+        try {
+            return file.isAtEnd();
+        } catch (IOException e) {
+            throw new NativeFunctionException("IO_EXCEPTION", "Unable to read file");
+        }
+    }
+}
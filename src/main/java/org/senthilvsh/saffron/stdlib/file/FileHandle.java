@@ -0,0 +1,210 @@
+package org.senthilvsh.saffron.stdlib.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A file opened by a Saffron program, read or written as UTF-8 text.
+ * <p>
+ * Reads go through a window onto the file: a memory-mapped region for large files, or a buffer filled
+ * with positional reads for small ones. The window is decoded straight into a buffer of characters
+ * that lines and chunks are taken from. Writes are collected in a buffer that is written out when it
+ * is full and when the file is closed.
+ */
+class FileHandle {
+    // Files of at least this size are mapped into memory, one window of at most MAP_SIZE bytes at a time
+    private static final long MAP_THRESHOLD = 1 << 20;
+    private static final long MAP_SIZE = 1 << 28;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final boolean writable;
+
+    // Reading: the window onto the file, the position of the window in the file, and the characters
+    // decoded from it that have not been read yet
+    private ByteBuffer window;
+    private long windowEnd;
+    private CharsetDecoder decoder;
+    private CharBuffer chars;
+    private boolean endOfInput;
+
+    // Whether a '\r' ended the last line, in which case a '\n' right after it belongs to that line
+    private boolean skipLineFeed;
+
+    // Writing
+    private CharsetEncoder encoder;
+    private ByteBuffer output;
+
+    FileHandle(FileChannel channel, boolean writable) {
+        this.channel = channel;
+        this.writable = writable;
+    }
+
+    boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * Returns the next line without its line terminator, or null at the end of the file.
+     */
+    String readLine() throws IOException {
+        StringBuilder line = null;
+        while (true) {
+            if (!chars().hasRemaining() && !fill()) {
+                return line != null ? line.toString() : null;
+            }
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (chars.get(chars.position()) == '\n') {
+                    chars.get();
+                    continue;
+                }
+            }
+            int start = chars.position();
+            int end = chars.limit();
+            for (int i = start; i < end; i++) {
+                char c = chars.get(i);
+                if (c == '\n' || c == '\r') {
+                    String segment = new String(chars.array(), chars.arrayOffset() + start, i - start);
+                    chars.position(i + 1);
+                    skipLineFeed = c == '\r';
+                    return line != null ? line.append(segment).toString() : segment;
+                }
+            }
+            if (line == null) {
+                line = new StringBuilder(end - start + 16);
+            }
+            line.append(chars.array(), chars.arrayOffset() + start, end - start);
+            chars.position(end);
+        }
+    }
+
+    /**
+     * Returns up to the given number of characters, which is fewer only at the end of the file.
+     */
+    String read(int count) throws IOException {
+        StringBuilder sb = new StringBuilder(Math.min(count, BUFFER_SIZE));
+        while (sb.length() < count && (chars().hasRemaining() || fill())) {
+            if (skipLineFeed) {
+                // The '\n' of a "\r\n" that ended a line read with readLine()
+                skipLineFeed = false;
+                if (chars.get(chars.position()) == '\n') {
+                    chars.get();
+                    continue;
+                }
+            }
+            int n = Math.min(count - sb.length(), chars.remaining());
+            sb.append(chars.array(), chars.arrayOffset() + chars.position(), n);
+            chars.position(chars.position() + n);
+        }
+        return sb.toString();
+    }
+
+    boolean isAtEnd() throws IOException {
+        if (skipLineFeed && (chars().hasRemaining() || fill()) && chars.get(chars.position()) == '\n') {
+            skipLineFeed = false;
+            chars.get();
+        }
+        return !chars().hasRemaining() && !fill();
+    }
+
+    void write(String s) throws IOException {
+        if (encoder == null) {
+            encoder = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            output = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        CharBuffer in = CharBuffer.wrap(s);
+        while (encoder.encode(in, output, false).isOverflow()) {
+            flush();
+        }
+    }
+
+    void close() throws IOException {
+        try {
+            if (output != null) {
+                flush();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            channel.write(output);
+        }
+        output.clear();
+    }
+
+    private CharBuffer chars() {
+        if (chars == null) {
+            decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            chars = CharBuffer.allocate(BUFFER_SIZE);
+            chars.flip();
+        }
+        return chars;
+    }
+
+    /**
+     * Decodes more characters. Returns false if there are none left in the file.
+     */
+    private boolean fill() throws IOException {
+        chars.compact();
+        try {
+            while (chars.position() == 0 && !endOfInput) {
+                if (window == null || !window.hasRemaining() || decoder.decode(window, chars, false).isUnderflow()) {
+                    if (!nextWindow()) {
+                        // Bytes of an incomplete character at the end of the file decode to a replacement
+                        decoder.decode(window != null ? window : ByteBuffer.allocate(0), chars, true);
+                        decoder.flush(chars);
+                        endOfInput = true;
+                    }
+                }
+            }
+        } finally {
+            chars.flip();
+        }
+        return chars.hasRemaining();
+    }
+
+    /**
+     * Moves the window to the bytes that follow it, keeping any bytes of a character that was cut off
+     * at the end of the current window. Returns false at the end of the file.
+     */
+    private boolean nextWindow() throws IOException {
+        long size = channel.size();
+        // Up to 3 bytes of a character cut off at the end of the window are read again
+        long start = windowEnd - (window != null ? window.remaining() : 0);
+        // If the window already reaches the end of the file, those bytes are all that is left, and
+        // reading them again would never complete the character
+        if (start >= size || (window != null && windowEnd >= size)) {
+            return false;
+        }
+        if (size >= MAP_THRESHOLD) {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAP_SIZE, size - start));
+        } else {
+            if (window == null || window.isDirect()) {
+                window = ByteBuffer.allocate(BUFFER_SIZE);
+            }
+            window.clear();
+            while (window.hasRemaining() && channel.read(window, start + window.position()) > 0) {
+                // Positional reads do not move the position of the channel
+            }
+            window.flip();
+        }
+        windowEnd = start + window.remaining();
+        return window.hasRemaining();
+    }
+}
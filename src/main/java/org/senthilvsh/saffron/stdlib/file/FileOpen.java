@@ -0,0 +1,29 @@
+package org.senthilvsh.saffron.stdlib.file;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class FileOpen implements NativeFunction {
+    private final FileTable files;
+
+    public FileOpen(FileTable files) {
+        this.files = files;
+    }
+
+    @Override
+    public String getName() {
+        return "file_open";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("path", "mode");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        return files.open(args[0].toString(), args[1].toString());
+    }
+}
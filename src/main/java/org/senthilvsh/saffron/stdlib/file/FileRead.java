@@ -0,0 +1,36 @@
+package org.senthilvsh.saffron.stdlib.file;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.io.IOException;
+import java.util.List;
+
+public class FileRead implements NativeFunction {
+    private final FileTable files;
+
+    public FileRead(FileTable files) {
+        this.files = files;
+    }
+
+    @Override
+    public String getName() {
+        return "file_read";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("handle", "count");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        FileHandle file = files.get(args[0], false);
+        double count = (Double) args[1];
+        try {
+            return file.read((int) Math.max(0, count));
+        } catch (IOException e) {
+            throw new NativeFunctionException("IO_EXCEPTION", "Unable to read file");
+        }
+    }
+}
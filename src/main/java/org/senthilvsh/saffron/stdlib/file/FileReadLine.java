@@ -0,0 +1,40 @@
+package org.senthilvsh.saffron.stdlib.file;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.io.IOException;
+import java.util.List;
+
+public class FileReadLine implements NativeFunction {
+    private final FileTable files;
+
+    public FileReadLine(FileTable files) {
+        this.files = files;
+    }
+
+    @Override
+    public String getName() {
+        return "file_read_line";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("handle");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        FileHandle file = files.get(args[0], false);
+        String line;
+        try {
+            line = file.readLine();
+        } catch (IOException e) {
+            throw new NativeFunctionException("IO_EXCEPTION", "Unable to read file");
+        }
+        if (line == null) {
+            throw new NativeFunctionException("END_OF_INPUT_EXCEPTION", "End of file");
+        }
+        return line;
+    }
+}
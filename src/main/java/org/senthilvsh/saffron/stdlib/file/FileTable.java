@@ -0,0 +1,94 @@
+package org.senthilvsh.saffron.stdlib.file;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.Environment;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The files opened by a program, shared by the file functions of one set of native functions (see
+ * {@link org.senthilvsh.saffron.stdlib.NativeFunctionsRegistry#getAll()}). A file is identified in
+ * the program by a number, its handle. Relative paths are resolved in the {@link Environment} of the
+ * program, and files that are still open when the program ends are closed, so that everything written
+ * to them is saved.
+ */
+public class FileTable {
+    private final Map<Integer, FileHandle> files = new HashMap<>();
+    private final Environment environment;
+    private int lastHandle;
+    private boolean closeOnExit;
+
+    public FileTable(Environment environment) {
+        this.environment = environment;
+    }
+
+    synchronized double open(String path, String mode) {
+        OpenOption[] options = switch (mode) {
+            case "r" -> new OpenOption[]{StandardOpenOption.READ};
+            case "w" -> new OpenOption[]{StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING};
+            case "a" -> new OpenOption[]{StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND};
+            default -> throw new NativeFunctionException("INVALID_MODE_EXCEPTION",
+                    String.format("Invalid file mode '%s'", mode));
+        };
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(environment.resolve(path), options);
+        } catch (NoSuchFileException e) {
+            throw new NativeFunctionException("FILE_NOT_FOUND_EXCEPTION", String.format("File not found: %s", path));
+        } catch (IOException | InvalidPathException e) {
+            throw new NativeFunctionException("IO_EXCEPTION", String.format("Unable to open file: %s", path));
+        }
+        if (!closeOnExit) {
+            closeOnExit = true;
+            environment.atExit(this::closeAll);
+        }
+        files.put(++lastHandle, new FileHandle(channel, !mode.equals("r")));
+        return lastHandle;
+    }
+
+    /**
+     * Returns the open file with the given handle.
+     *
+     * @param writable whether the file is to be written to, rather than read from
+     */
+    synchronized FileHandle get(Object handle, boolean writable) {
+        FileHandle file = handle instanceof Double d && d == Math.rint(d) ? files.get(d.intValue()) : null;
+        if (file == null) {
+            throw new NativeFunctionException("INVALID_HANDLE_EXCEPTION", "Not an open file");
+        }
+        if (file.isWritable() != writable) {
+            throw new NativeFunctionException("IO_EXCEPTION",
+                    writable ? "File is not open for writing" : "File is not open for reading");
+        }
+        return file;
+    }
+
+    synchronized void close(Object handle) {
+        FileHandle file = handle instanceof Double d && d == Math.rint(d) ? files.remove(d.intValue()) : null;
+        if (file == null) {
+            throw new NativeFunctionException("INVALID_HANDLE_EXCEPTION", "Not an open file");
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            throw new NativeFunctionException("IO_EXCEPTION", "Unable to close file");
+        }
+    }
+
+    private synchronized void closeAll() {
+        for (FileHandle file : files.values()) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // Nothing can be reported this late
+            }
+        }
+        files.clear();
+    }
+}
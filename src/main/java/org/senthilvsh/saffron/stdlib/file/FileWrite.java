@@ -0,0 +1,36 @@
+package org.senthilvsh.saffron.stdlib.file;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.io.IOException;
+import java.util.List;
+
+public class FileWrite implements NativeFunction {
+    private final FileTable files;
+
+    public FileWrite(FileTable files) {
+        this.files = files;
+    }
+
+    @Override
+    public String getName() {
+        return "file_write";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("handle", "value");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        FileHandle file = files.get(args[0], true);
+        try {
+            file.write(args[1].toString());
+        } catch (IOException e) {
+            throw new NativeFunctionException("IO_EXCEPTION", "Unable to write file");
+        }
+        return null;
+    }
+}
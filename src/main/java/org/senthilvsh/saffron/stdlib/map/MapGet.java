@@ -0,0 +1,26 @@
+package org.senthilvsh.saffron.stdlib.map;
+
+import org.senthilvsh.saffron.runtime.Dictionary;
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class MapGet implements NativeFunction {
+    @Override
+    public String getName() {
+        return "map_get";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("map", "key", "default");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        Dictionary map = (Dictionary) args[0];
+
+        return map.get(args[1], args[2]);
+    }
+}
@@ -0,0 +1,25 @@
+package org.senthilvsh.saffron.stdlib.map;
+
+import org.senthilvsh.saffron.runtime.Dictionary;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class MapKeys implements NativeFunction {
+    @Override
+    public String getName() {
+        return "map_keys";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("map");
+    }
+
+    @Override
+    public Object call(Object[] args) {
+        Dictionary map = (Dictionary) args[0];
+
+        return map.keys();
+    }
+}
@@ -0,0 +1,26 @@
+package org.senthilvsh.saffron.stdlib.map;
+
+import org.senthilvsh.saffron.runtime.Dictionary;
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class MapPut implements NativeFunction {
+    @Override
+    public String getName() {
+        return "map_put";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("map", "key", "value");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        Dictionary map = (Dictionary) args[0];
+        map.put(args[1], args[2]);
+        return null;
+    }
+}
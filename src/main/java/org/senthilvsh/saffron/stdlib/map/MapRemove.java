@@ -0,0 +1,26 @@
+package org.senthilvsh.saffron.stdlib.map;
+
+import org.senthilvsh.saffron.runtime.Dictionary;
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class MapRemove implements NativeFunction {
+    @Override
+    public String getName() {
+        return "map_remove";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("map", "key");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        Dictionary map = (Dictionary) args[0];
+
+        return map.remove(args[1]);
+    }
+}
@@ -0,0 +1,25 @@
+package org.senthilvsh.saffron.stdlib.map;
+
+import org.senthilvsh.saffron.runtime.Dictionary;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class MapValues implements NativeFunction {
+    @Override
+    public String getName() {
+        return "map_values";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("map");
+    }
+
+    @Override
+    public Object call(Object[] args) {
+        Dictionary map = (Dictionary) args[0];
+
+        return map.values();
+    }
+}
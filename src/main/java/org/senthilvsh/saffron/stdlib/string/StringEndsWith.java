@@ -1,9 +1,5 @@
 package org.senthilvsh.saffron.stdlib.string;
 
-import org.senthilvsh.saffron.runtime.ReturnStatementResult;
-import org.senthilvsh.saffron.runtime.Scope;
-import org.senthilvsh.saffron.runtime.StatementResult;
-import org.senthilvsh.saffron.runtime.Variable;
 import org.senthilvsh.saffron.stdlib.NativeFunction;
 
 import java.util.List;
@@ -20,15 +16,10 @@ public class StringEndsWith implements NativeFunction {
     }
 
     @Override
-    public StatementResult run(Scope scope) {
-        Variable sourceVar = scope.get("source");
-        String source = (String) sourceVar.getValue();
+    public Object call(Object[] args) {
+        String source = (String) args[0];
+        String search = (String) args[1];
 
-        Variable searchVar = scope.get("search");
-        String search = (String) searchVar.getValue();
-
-        boolean result = source.endsWith(search);
-
-        return new ReturnStatementResult(result);
+        return source.endsWith(search);
     }
 }
@@ -1,9 +1,5 @@
 package org.senthilvsh.saffron.stdlib.string;
 
-import org.senthilvsh.saffron.runtime.ReturnStatementResult;
-import org.senthilvsh.saffron.runtime.Scope;
-import org.senthilvsh.saffron.runtime.StatementResult;
-import org.senthilvsh.saffron.runtime.Variable;
 import org.senthilvsh.saffron.stdlib.NativeFunction;
 
 import java.util.List;
@@ -20,12 +16,9 @@ public class StringLength implements NativeFunction {
     }
 
     @Override
-    public StatementResult run(Scope scope) {
-        Variable variable = scope.get("source");
-        String source = (String) variable.getValue();
+    public Object call(Object[] args) {
+        String source = (String) args[0];
 
-        double result = source.length();
-
-        return new ReturnStatementResult(result);
+        return (double) source.length();
     }
 }
@@ -1,6 +1,6 @@
 package org.senthilvsh.saffron.stdlib.string;
 
-import org.senthilvsh.saffron.runtime.*;
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
 import org.senthilvsh.saffron.stdlib.NativeFunction;
 
 import java.util.List;
@@ -17,22 +17,15 @@ public class StringSubString implements NativeFunction {
     }
 
     @Override
-    public StatementResult run(Scope scope) throws NativeFunctionException {
-        Variable sourceVar = scope.get("source");
-        String source = (String) sourceVar.getValue();
-
-        Variable startVar = scope.get("start");
-        double start = (Double) startVar.getValue();
-
-        Variable endVar = scope.get("end");
-        double end = (Double) endVar.getValue();
+    public Object call(Object[] args) throws NativeFunctionException {
+        String source = (String) args[0];
+        double start = (Double) args[1];
+        double end = (Double) args[2];
 
         if (start < 0 || end >= source.length()) {
             throw new NativeFunctionException("INDEX_OUT_OF_BOUNDS_EXCEPTION", "Index out of bounds");
         }
 
-        String result = source.substring((int) start, (int) end + 1);
-
-        return new ReturnStatementResult(result);
+        return source.substring((int) start, (int) end + 1);
     }
 }
@@ -0,0 +1,92 @@
+package org.senthilvsh.saffron.stdlib.task;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A queue of values with a fixed capacity, for sending values from one task to another. Sending to a
+ * full channel and receiving from an empty one wait until that is possible. The waiting is done with
+ * a {@link ReentrantLock} rather than a monitor, so that waiting tasks do not hold on to the carrier
+ * thread of their virtual thread.
+ */
+class Channel {
+    private final Object[] values;
+    private int first;
+    private int count;
+    private boolean closed;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    Channel(int capacity) {
+        values = new Object[capacity];
+    }
+
+    void send(Object value) {
+        lock.lock();
+        try {
+            while (count == values.length && !closed) {
+                await(notFull);
+            }
+            if (closed) {
+                throw new NativeFunctionException("CHANNEL_CLOSED_EXCEPTION", "Channel is closed");
+            }
+            values[(first + count) % values.length] = value;
+            count++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the oldest value in the channel. Values sent before the channel was closed can still be
+     * received after it.
+     */
+    Object receive() {
+        lock.lock();
+        try {
+            while (count == 0 && !closed) {
+                await(notEmpty);
+            }
+            if (count == 0) {
+                throw new NativeFunctionException("CHANNEL_CLOSED_EXCEPTION", "Channel is closed");
+            }
+            Object value = values[first];
+            values[first] = null;
+            first = (first + 1) % values.length;
+            count--;
+            notFull.signal();
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new NativeFunctionException("CHANNEL_CLOSED_EXCEPTION", "Channel is already closed");
+            }
+            closed = true;
+            // Tasks waiting to send fail, and tasks waiting to receive fail once the channel is empty
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void await(Condition condition) {
+        try {
+            condition.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NativeFunctionException("INTERRUPTED_EXCEPTION", "Interrupted while waiting for a channel");
+        }
+    }
+}
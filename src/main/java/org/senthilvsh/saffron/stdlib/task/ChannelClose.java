@@ -0,0 +1,30 @@
+package org.senthilvsh.saffron.stdlib.task;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class ChannelClose implements NativeFunction {
+    private final ChannelTable channels;
+
+    public ChannelClose(ChannelTable channels) {
+        this.channels = channels;
+    }
+
+    @Override
+    public String getName() {
+        return "chan_close";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("channel");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        channels.get(args[0]).close();
+        return null;
+    }
+}
@@ -0,0 +1,29 @@
+package org.senthilvsh.saffron.stdlib.task;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class ChannelNew implements NativeFunction {
+    private final ChannelTable channels;
+
+    public ChannelNew(ChannelTable channels) {
+        this.channels = channels;
+    }
+
+    @Override
+    public String getName() {
+        return "chan_new";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("capacity");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        return channels.create(args[0]);
+    }
+}
@@ -0,0 +1,29 @@
+package org.senthilvsh.saffron.stdlib.task;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class ChannelReceive implements NativeFunction {
+    private final ChannelTable channels;
+
+    public ChannelReceive(ChannelTable channels) {
+        this.channels = channels;
+    }
+
+    @Override
+    public String getName() {
+        return "chan_recv";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("channel");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        return channels.get(args[0]).receive();
+    }
+}
@@ -0,0 +1,31 @@
+package org.senthilvsh.saffron.stdlib.task;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class ChannelSend implements NativeFunction {
+    private final ChannelTable channels;
+
+    public ChannelSend(ChannelTable channels) {
+        this.channels = channels;
+    }
+
+    @Override
+    public String getName() {
+        return "chan_send";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("channel", "value");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        Channel channel = channels.get(args[0]);
+        channel.send(args[1]);
+        return null;
+    }
+}
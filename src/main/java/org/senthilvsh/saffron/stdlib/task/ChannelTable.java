@@ -0,0 +1,37 @@
+package org.senthilvsh.saffron.stdlib.task;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The channels created by a program, shared by all of its tasks. A channel is identified in the
+ * program by a number, its handle. Closed channels keep their handle, so that the values left in them
+ * can still be received.
+ */
+public class ChannelTable {
+    private static final int MAX_CAPACITY = 1 << 20;
+
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+    private final AtomicLong lastHandle = new AtomicLong();
+
+    double create(Object capacity) {
+        if (!(capacity instanceof Double d) || d != Math.rint(d) || d < 1 || d > MAX_CAPACITY) {
+            throw new NativeFunctionException("INVALID_ARGUMENT_EXCEPTION",
+                    String.format("The capacity of a channel must be a whole number from 1 to %d", MAX_CAPACITY));
+        }
+        long handle = lastHandle.incrementAndGet();
+        channels.put(handle, new Channel(d.intValue()));
+        return handle;
+    }
+
+    Channel get(Object handle) {
+        Channel channel = handle instanceof Double d && d == Math.rint(d) ? channels.get(d.longValue()) : null;
+        if (channel == null) {
+            throw new NativeFunctionException("INVALID_HANDLE_EXCEPTION", "Not a channel");
+        }
+        return channel;
+    }
+}
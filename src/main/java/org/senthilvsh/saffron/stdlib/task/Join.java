@@ -0,0 +1,29 @@
+package org.senthilvsh.saffron.stdlib.task;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.stdlib.NativeFunction;
+
+import java.util.List;
+
+public class Join implements NativeFunction {
+    private final TaskTable tasks;
+
+    public Join(TaskTable tasks) {
+        this.tasks = tasks;
+    }
+
+    @Override
+    public String getName() {
+        return "join";
+    }
+
+    @Override
+    public List<String> getArguments() {
+        return List.of("task");
+    }
+
+    @Override
+    public Object call(Object[] args) throws NativeFunctionException {
+        return tasks.join(args[0]);
+    }
+}
@@ -0,0 +1,74 @@
+package org.senthilvsh.saffron.stdlib.task;
+
+import org.senthilvsh.saffron.runtime.NativeFunctionException;
+import org.senthilvsh.saffron.runtime.SaffronException;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The tasks started by a program with {@code spawn}, shared by all tasks of the program. Each task runs
+ * on a virtual thread of its own, and is identified in the program by a number, its handle, until it is
+ * joined.
+ * <p>
+ * A program ends when its main code ends, without waiting for tasks that have not been joined.
+ */
+public class TaskTable {
+    private final Map<Long, FutureTask<Object>> tasks = new ConcurrentHashMap<>();
+    private final AtomicLong lastHandle = new AtomicLong();
+
+    /**
+     * Starts a task, which returns the value of a function call, and returns its handle.
+     */
+    public double spawn(Callable<Object> call) {
+        FutureTask<Object> task = new FutureTask<>(call);
+        long handle = lastHandle.incrementAndGet();
+        tasks.put(handle, task);
+        Thread.ofVirtual().name("saffron-task-" + handle).start(task);
+        return handle;
+    }
+
+    /**
+     * Interrupts the tasks that have not been joined, which stops those that are still running.
+     */
+    public void cancel() {
+        for (FutureTask<Object> task : tasks.values()) {
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * Waits for a task to end and returns its result. An exception that the task did not catch is
+     * raised again here, and a runtime error in the task is raised as a TASK_ERROR exception.
+     */
+    Object join(Object handle) {
+        FutureTask<Object> task = handle instanceof Double d && d == Math.rint(d) ? tasks.remove(d.longValue()) : null;
+        if (task == null) {
+            throw new NativeFunctionException("INVALID_HANDLE_EXCEPTION", "Not a task that can be joined");
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            // The task is no longer in the table, and would not be stopped along with the program
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new NativeFunctionException("INTERRUPTED_EXCEPTION", "Interrupted while waiting for a task");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SaffronException error) {
+                throw new NativeFunctionException("TASK_ERROR", error.getMessage());
+            }
+            if (cause instanceof RuntimeException exception) {
+                throw exception;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
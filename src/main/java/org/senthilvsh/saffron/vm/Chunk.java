@@ -0,0 +1,104 @@
+package org.senthilvsh.saffron.vm;
+
+import java.util.List;
+
+/**
+ * Compiled code of a function, or of the top level of a program.
+ */
+public class Chunk {
+    private final String name;
+    private final List<String> arguments;
+    private final int argumentCount;
+    private final int[] code;
+    private final Object[] constants;
+    private final int[] handlers;
+    private final int frameSize;
+    private final int globalCount;
+    private final List<String> functionNames;
+    private final int maxStack;
+    private final int namePosition;
+    private final int nameLength;
+
+    Chunk(String name, List<String> arguments, int[] code, Object[] constants, int[] handlers,
+          int frameSize, int globalCount, List<String> functionNames, int maxStack, int namePosition,
+          int nameLength) {
+        this.name = name;
+        this.arguments = arguments;
+        this.argumentCount = arguments.size();
+        this.code = code;
+        this.constants = constants;
+        this.handlers = handlers;
+        this.frameSize = frameSize;
+        this.globalCount = globalCount;
+        this.functionNames = functionNames;
+        this.maxStack = maxStack;
+        this.namePosition = namePosition;
+        this.nameLength = nameLength;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    int getArgumentCount() {
+        return argumentCount;
+    }
+
+    int[] getCode() {
+        return code;
+    }
+
+    Object[] getConstants() {
+        return constants;
+    }
+
+    int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * Returns the number of global variables of a program. The top level of a program keeps its
+     * variables in the globals, so its own frame is empty.
+     */
+    int getGlobalCount() {
+        return globalCount;
+    }
+
+    /**
+     * Returns the names of the functions of a program, in the order of the slots that calls refer to
+     * them by (see {@link org.senthilvsh.saffron.ast.Program#getFunctionNames()}).
+     */
+    List<String> getFunctionNames() {
+        return functionNames;
+    }
+
+    int getMaxStack() {
+        return maxStack;
+    }
+
+    int getNamePosition() {
+        return namePosition;
+    }
+
+    int getNameLength() {
+        return nameLength;
+    }
+
+    /**
+     * Returns the code index of the innermost catch block whose try block contains the given code
+     * index, or -1 if there is none.
+     */
+    int findHandler(int pc) {
+        // Entries are (start, end, handler), innermost try blocks first
+        for (int i = 0; i < handlers.length; i += 3) {
+            if (pc >= handlers[i] && pc < handlers[i + 1]) {
+                return handlers[i + 2];
+            }
+        }
+        return -1;
+    }
+}
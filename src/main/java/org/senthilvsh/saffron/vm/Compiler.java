@@ -0,0 +1,430 @@
+package org.senthilvsh.saffron.vm;
+
+import org.senthilvsh.saffron.ast.*;
+
+import java.util.*;
+
+import static org.senthilvsh.saffron.vm.OpCode.*;
+
+/**
+ * Compiles a program that has been processed by the {@link org.senthilvsh.saffron.resolver.Resolver}
+ * into bytecode for the {@link VirtualMachine}.
+ * <p>
+ * Control flow that the tree-walking interpreter checks at runtime is decided here: a 'return',
+ * 'break' or 'continue' in a place where it is not allowed compiles to an {@link OpCode#ERROR}
+ * instruction, so the error is still raised only when the statement is reached.
+ */
+public class Compiler {
+    private static final Map<String, Integer> BINARY_OPERATORS = Map.ofEntries(
+            Map.entry("+", ADD),
+            Map.entry("-", SUBTRACT),
+            Map.entry("*", MULTIPLY),
+            Map.entry("/", DIVIDE),
+            Map.entry("%", MODULO),
+            Map.entry(">", GREATER_THAN),
+            Map.entry(">=", GREATER_THAN_OR_EQUAL),
+            Map.entry("<", LESS_THAN),
+            Map.entry("<=", LESS_THAN_OR_EQUAL),
+            Map.entry("==", EQUAL),
+            Map.entry("!=", NOT_EQUAL),
+            Map.entry("&&", AND),
+            Map.entry("||", OR)
+    );
+
+    private ChunkBuilder chunk;
+
+    public Chunk compile(Program program) {
+        chunk = new ChunkBuilder(Context.Kind.PROGRAM);
+        for (Statement s : program.getStatements()) {
+            compile(s);
+        }
+        chunk.emit(HALT, 0);
+        return chunk.build("<program>", List.of(), 0, program.getFrameSize(), program.getFunctionNames(), 0, 0);
+    }
+
+    private Chunk compileFunction(FunctionDefinition fd) {
+        ChunkBuilder enclosing = chunk;
+        chunk = new ChunkBuilder(Context.Kind.FUNCTION);
+        compile(fd.getBody());
+        chunk.emit(NULL, 1);
+        chunk.emit(RETURN, -1);
+        Chunk compiled = chunk.build(fd.getName(), fd.getArguments(), fd.getFrameSize(), 0, List.of(),
+                fd.getNamePosition(), fd.getNameLength());
+        chunk = enclosing;
+        return compiled;
+    }
+
+    private void compile(Statement statement) {
+        if (statement instanceof ExpressionStatement es) {
+            if (es.getExpression() instanceof BinaryExpression be && "=".equals(be.getOperator())) {
+                // The value of an assignment is not needed when it is used as a statement
+                compileAssignment(be, false);
+                return;
+            }
+            compile(es.getExpression());
+            chunk.emit(POP, -1);
+        } else if (statement instanceof BlockStatement bs) {
+            for (Statement s : bs.getStatements()) {
+                compile(s);
+            }
+        } else if (statement instanceof ReturnStatement rs) {
+            compileReturn(rs);
+        } else if (statement instanceof ConditionalStatement cs) {
+            compileConditional(cs);
+        } else if (statement instanceof TryCatchStatement tcs) {
+            compileTryCatch(tcs);
+        } else if (statement instanceof WhileLoop wl) {
+            compileWhileLoop(wl);
+        } else if (statement instanceof BreakStatement bs) {
+            compileBreakOrContinue(true, bs);
+        } else if (statement instanceof ContinueStatement cs) {
+            compileBreakOrContinue(false, cs);
+        } else if (statement instanceof VariableDeclaration vd) {
+            if (vd.getExpression() != null) {
+                compile(vd.getExpression());
+            } else {
+                chunk.emit(NULL, 1);
+            }
+            chunk.emit(store(0), -1, vd.getSlot());
+        } else if (statement instanceof FunctionDefinition fd) {
+            chunk.emit(DEFINE_FUNCTION, 0, chunk.constant(compileFunction(fd)), fd.getSlot());
+        }
+    }
+
+    private void compileReturn(ReturnStatement rs) {
+        if (chunk.enclosing(Context.Kind.FUNCTION, Context.Kind.LOOP, Context.Kind.PROGRAM).kind != Context.Kind.FUNCTION) {
+            chunk.emit(ERROR, 0, chunk.site("A 'return' statement can only be present inside a function", rs.getPosition(), rs.getLength()));
+            return;
+        }
+        if (rs.isTailCall()) {
+            // Tail calls are never inside a try-catch statement, so there is no catch block to leave
+            FunctionCallExpression call = (FunctionCallExpression) rs.getExpression();
+            List<Expression> arguments = call.getArguments();
+            for (Expression e : arguments) {
+                compile(e);
+            }
+            int site = chunk.site(call.getName(), call.getPosition(), call.getLength());
+            chunk.emit(TAIL_CALL, -arguments.size(), call.getSlot(), arguments.size(), site);
+            return;
+        }
+        if (rs.getExpression() != null) {
+            compile(rs.getExpression());
+        } else {
+            chunk.emit(NULL, 1);
+        }
+        Context target = chunk.enclosing(Context.Kind.FUNCTION, Context.Kind.CATCH);
+        if (target.kind == Context.Kind.CATCH) {
+            // The result of a catch block is discarded
+            chunk.emit(POP, -1);
+            target.exits.add(chunk.emitJump(JUMP));
+        } else {
+            chunk.emit(RETURN, -1);
+        }
+    }
+
+    private void compileBreakOrContinue(boolean isBreak, Statement statement) {
+        if (chunk.enclosing(Context.Kind.FUNCTION, Context.Kind.LOOP, Context.Kind.PROGRAM).kind != Context.Kind.LOOP) {
+            String message = isBreak
+                    ? "A 'break' statement can be present only inside a loop"
+                    : "A 'continue' statement can be present only inside a loop";
+            chunk.emit(ERROR, 0, chunk.site(message, statement.getPosition(), statement.getLength()));
+            return;
+        }
+        Context target = chunk.enclosing(Context.Kind.LOOP, Context.Kind.CATCH);
+        if (target.kind == Context.Kind.CATCH) {
+            target.exits.add(chunk.emitJump(JUMP));
+        } else if (isBreak) {
+            target.exits.add(chunk.emitJump(JUMP));
+        } else {
+            chunk.emit(JUMP, 0, target.start);
+        }
+    }
+
+    private void compileConditional(ConditionalStatement cs) {
+        Expression condition = cs.getCondition();
+        compile(condition);
+        int toElse = chunk.emitJump(JUMP_IF_FALSE, -1, chunk.site(
+                "The condition of an 'if' statement must be a boolean expression",
+                condition.getPosition(), condition.getLength()));
+        compile(cs.getTrueClause());
+        if (cs.getFalseClause() == null) {
+            chunk.patch(toElse);
+            return;
+        }
+        int toEnd = chunk.emitJump(JUMP);
+        chunk.patch(toElse);
+        compile(cs.getFalseClause());
+        chunk.patch(toEnd);
+    }
+
+    private void compileWhileLoop(WhileLoop wl) {
+        Expression condition = wl.getCondition();
+        Context loop = chunk.begin(Context.Kind.LOOP);
+        compile(condition);
+        loop.exits.add(chunk.emitJump(JUMP_IF_FALSE, -1, chunk.site(
+                "The condition of a 'while' loop must be a boolean expression",
+                condition.getPosition(), condition.getLength())));
+        compile(wl.getBody());
+        chunk.emit(JUMP, 0, loop.start);
+        chunk.end(loop);
+    }
+
+    private void compileTryCatch(TryCatchStatement tcs) {
+        int start = chunk.pc();
+        compile(tcs.getTryBlock());
+        int end = chunk.pc();
+        int toEnd = chunk.emitJump(JUMP);
+
+        // The virtual machine pushes the type and the message of the exception
+        int handler = chunk.pc();
+        chunk.adjustStack(2);
+        chunk.emit(store(0), -1, tcs.getExceptionMessageSlot());
+        chunk.emit(store(0), -1, tcs.getExceptionTypeSlot());
+        Context catchBlock = chunk.begin(Context.Kind.CATCH);
+        compile(tcs.getCatchBlock());
+        chunk.end(catchBlock);
+        chunk.patch(toEnd);
+        chunk.handler(start, end, handler);
+    }
+
+    private void compile(Expression expression) {
+        if (expression instanceof NumberLiteral n) {
+            chunk.emit(CONST, 1, chunk.constant(n.getValue()));
+        } else if (expression instanceof StringLiteral s) {
+            chunk.emit(CONST, 1, chunk.constant(s.getValue()));
+        } else if (expression instanceof BooleanLiteral b) {
+            chunk.emit(CONST, 1, chunk.constant(b.getValue()));
+        } else if (expression instanceof Identifier i) {
+            int site = chunk.site(String.format("Variable '%s' is used before being assigned", i.getName()),
+                    i.getPosition(), i.getLength());
+            chunk.emit(isGlobal(i.getDepth()) ? LOAD_GLOBAL : LOAD_LOCAL, 1, i.getSlot(), site);
+        } else if (expression instanceof FunctionCallExpression call) {
+            List<Expression> arguments = call.getArguments();
+            for (Expression e : arguments) {
+                compile(e);
+            }
+            int site = chunk.site(call.getName(), call.getPosition(), call.getLength());
+            chunk.emit(CALL, 1 - arguments.size(), call.getSlot(), arguments.size(), site);
+        } else if (expression instanceof SpawnExpression spawn) {
+            FunctionCallExpression call = spawn.getCall();
+            List<Expression> arguments = call.getArguments();
+            for (Expression e : arguments) {
+                compile(e);
+            }
+            int site = chunk.site(call.getName(), call.getPosition(), call.getLength());
+            chunk.emit(SPAWN, 1 - arguments.size(), call.getSlot(), arguments.size(), site);
+        } else if (expression instanceof UnaryExpression unaryExpression) {
+            compile(unaryExpression.getOperand());
+            String operator = unaryExpression.getOperator();
+            int opCode = switch (operator) {
+                case "+" -> PLUS;
+                case "-" -> NEGATE;
+                case "!" -> NOT;
+                default -> ERROR;
+            };
+            String text = opCode == ERROR ? String.format("Invalid unary operator '%s'", operator) : operator;
+            chunk.emit(opCode, 0, chunk.site(text,
+                    unaryExpression.getOperatorPosition(), unaryExpression.getOperatorLength()));
+        } else if (expression instanceof BinaryExpression binaryExpression) {
+            compileBinary(binaryExpression);
+        } else if (expression instanceof ArrayLiteral arrayLiteral) {
+            List<Expression> elements = arrayLiteral.getElements();
+            for (Expression e : elements) {
+                compile(e);
+            }
+            chunk.emit(NEW_ARRAY, 1 - elements.size(), elements.size());
+        } else if (expression instanceof MapLiteral mapLiteral) {
+            List<Expression> keys = mapLiteral.getKeys();
+            for (int i = 0; i < keys.size(); i++) {
+                compile(keys.get(i));
+                compile(mapLiteral.getValues().get(i));
+            }
+            chunk.emit(NEW_MAP, 1 - 2 * keys.size(), keys.size());
+        } else if (expression instanceof IndexExpression indexExpression) {
+            compile(indexExpression.getArray());
+            compile(indexExpression.getIndex());
+            chunk.emit(GET_INDEX, -1, chunk.site("[]",
+                    indexExpression.getPosition(), indexExpression.getLength()));
+        } else if (expression instanceof IndexAssignment indexAssignment) {
+            IndexExpression target = indexAssignment.getTarget();
+            compile(target.getArray());
+            compile(target.getIndex());
+            compile(indexAssignment.getValue());
+            chunk.emit(SET_INDEX, -2, chunk.site("[]", target.getPosition(), target.getLength()));
+        } else {
+            chunk.emit(ERROR, 1, chunk.site("Unknown expression type",
+                    expression.getPosition(), expression.getLength()));
+        }
+    }
+
+    private void compileBinary(BinaryExpression binaryExpression) {
+        String operator = binaryExpression.getOperator();
+        if ("=".equals(operator)) {
+            compileAssignment(binaryExpression, true);
+            return;
+        }
+        compile(binaryExpression.getLeft());
+        compile(binaryExpression.getRight());
+        Integer opCode = BINARY_OPERATORS.get(operator);
+        if (opCode == null) {
+            chunk.emit(ERROR, -1, chunk.site("Unknown expression type",
+                    binaryExpression.getPosition(), binaryExpression.getLength()));
+            return;
+        }
+        chunk.emit(opCode, -1, chunk.site(operator,
+                binaryExpression.getOperatorPosition(), binaryExpression.getOperatorLength()));
+    }
+
+    private void compileAssignment(BinaryExpression assignment, boolean keepValue) {
+        Identifier identifier = (Identifier) assignment.getLeft();
+        compile(assignment.getRight());
+        if (keepValue) {
+            chunk.emit(DUP, 1);
+        }
+        chunk.emit(store(identifier.getDepth()), -1, identifier.getSlot());
+    }
+
+    /**
+     * Variables of the top level of the program are the global variables, which are kept apart from
+     * the operand stack so that tasks can share them.
+     */
+    private boolean isGlobal(int depth) {
+        return depth > 0 || chunk.enclosing(Context.Kind.FUNCTION, Context.Kind.PROGRAM).kind == Context.Kind.PROGRAM;
+    }
+
+    private int store(int depth) {
+        return isGlobal(depth) ? STORE_GLOBAL : STORE_LOCAL;
+    }
+
+    /**
+     * A construct that 'return', 'break' and 'continue' statements may transfer control out of.
+     */
+    private static class Context {
+        enum Kind {PROGRAM, FUNCTION, LOOP, CATCH}
+
+        final Kind kind;
+        final int start;
+        // Jumps to be patched with the end of the construct
+        final List<Integer> exits = new ArrayList<>();
+
+        Context(Kind kind, int start) {
+            this.kind = kind;
+            this.start = start;
+        }
+    }
+
+    private static class ChunkBuilder {
+        private int[] code = new int[64];
+        private int size;
+        private final List<Object> constants = new ArrayList<>();
+        private final Map<Object, Integer> constantIndexes = new HashMap<>();
+        private final List<Integer> handlers = new ArrayList<>();
+        private final Deque<Context> contexts = new ArrayDeque<>();
+        private int stack;
+        private int maxStack;
+
+        ChunkBuilder(Context.Kind kind) {
+            contexts.push(new Context(kind, 0));
+        }
+
+        int pc() {
+            return size;
+        }
+
+        void emit(int opCode, int stackEffect, int... operands) {
+            ensure(1 + operands.length);
+            code[size++] = opCode;
+            for (int operand : operands) {
+                code[size++] = operand;
+            }
+            adjustStack(stackEffect);
+        }
+
+        /**
+         * Emits a jump whose target is patched later, and returns the index of the target operand.
+         */
+        int emitJump(int opCode, int stackEffect, int... operands) {
+            emit(opCode, stackEffect);
+            int target = size;
+            ensure(1 + operands.length);
+            code[size++] = -1;
+            for (int operand : operands) {
+                code[size++] = operand;
+            }
+            return target;
+        }
+
+        int emitJump(int opCode) {
+            return emitJump(opCode, 0);
+        }
+
+        void patch(int target) {
+            code[target] = size;
+        }
+
+        void adjustStack(int stackEffect) {
+            stack += stackEffect;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        int constant(Object value) {
+            // Keep 1.0 and true, or "1" and 1.0, apart
+            Object key = List.of(value.getClass(), value);
+            Integer index = constantIndexes.get(key);
+            if (index == null) {
+                index = constants.size();
+                constants.add(value);
+                constantIndexes.put(key, index);
+            }
+            return index;
+        }
+
+        int site(String text, int position, int length) {
+            return constant(new Site(text, position, length));
+        }
+
+        void handler(int start, int end, int handler) {
+            handlers.add(start);
+            handlers.add(end);
+            handlers.add(handler);
+        }
+
+        Context begin(Context.Kind kind) {
+            Context context = new Context(kind, size);
+            contexts.push(context);
+            return context;
+        }
+
+        void end(Context context) {
+            contexts.pop();
+            for (int exit : context.exits) {
+                patch(exit);
+            }
+        }
+
+        Context enclosing(Context.Kind... kinds) {
+            for (Context context : contexts) {
+                for (Context.Kind kind : kinds) {
+                    if (context.kind == kind) {
+                        return context;
+                    }
+                }
+            }
+            // The outermost context is always the program or a function
+            return contexts.getLast();
+        }
+
+        Chunk build(String name, List<String> arguments, int frameSize, int globalCount,
+                    List<String> functionNames, int namePosition, int nameLength) {
+            return new Chunk(name, arguments, Arrays.copyOf(code, size), constants.toArray(),
+                    handlers.stream().mapToInt(Integer::intValue).toArray(),
+                    frameSize, globalCount, functionNames, maxStack, namePosition, nameLength);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > code.length) {
+                code = Arrays.copyOf(code, Math.max(code.length * 2, size + extra));
+            }
+        }
+    }
+}
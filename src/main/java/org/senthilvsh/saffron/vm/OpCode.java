@@ -0,0 +1,88 @@
+package org.senthilvsh.saffron.vm;
+
+/**
+ * Instruction set of the virtual machine.
+ * <p>
+ * An instruction is an opcode followed by its operands, each occupying one element of the code array.
+ * Operands named {@code site} are indexes of a {@link Site} in the constant pool, which holds the
+ * source position used when the instruction fails. The slots of functions index the function table of
+ * the running program, which holds the functions in the order of
+ * {@link org.senthilvsh.saffron.ast.Program#getFunctionNames()}.
+ */
+final class OpCode {
+    private OpCode() {
+    }
+
+    /** {@code CONST index} - push a constant. */
+    static final int CONST = 0;
+    /** {@code NULL} - push the absence of a value. */
+    static final int NULL = 1;
+    /** {@code POP} - discard the top of the stack. */
+    static final int POP = 2;
+    /** {@code DUP} - duplicate the top of the stack. */
+    static final int DUP = 3;
+    /** {@code LOAD_LOCAL slot site} - push a variable of the current frame. */
+    static final int LOAD_LOCAL = 4;
+    /** {@code LOAD_GLOBAL slot site} - push a global variable. */
+    static final int LOAD_GLOBAL = 5;
+    /** {@code STORE_LOCAL slot} - pop into a variable of the current frame. */
+    static final int STORE_LOCAL = 6;
+    /** {@code STORE_GLOBAL slot} - pop into a global variable. */
+    static final int STORE_GLOBAL = 7;
+    /** {@code ADD site} and the following arithmetic, comparison and logical operators pop two operands. */
+    static final int ADD = 8;
+    static final int SUBTRACT = 9;
+    static final int MULTIPLY = 10;
+    static final int DIVIDE = 11;
+    static final int MODULO = 12;
+    static final int GREATER_THAN = 13;
+    static final int GREATER_THAN_OR_EQUAL = 14;
+    static final int LESS_THAN = 15;
+    static final int LESS_THAN_OR_EQUAL = 16;
+    static final int EQUAL = 17;
+    static final int NOT_EQUAL = 18;
+    static final int AND = 19;
+    static final int OR = 20;
+    /** {@code PLUS site}, {@code NEGATE site} and {@code NOT site} pop one operand. */
+    static final int PLUS = 21;
+    static final int NEGATE = 22;
+    static final int NOT = 23;
+    /** {@code JUMP target} - continue at an absolute code index. */
+    static final int JUMP = 24;
+    /** {@code JUMP_IF_FALSE target site} - pop a condition, which must be a boolean, and jump if it is false. */
+    static final int JUMP_IF_FALSE = 25;
+    /** {@code CALL slot argc site} - call the function in a slot of the function table. */
+    static final int CALL = 26;
+    /** {@code RETURN} - return the top of the stack to the caller. */
+    static final int RETURN = 27;
+    /**
+     * {@code TAIL_CALL slot argc site} - call the function in a slot of the function table in place of the
+     * current function, and return its result to the caller of the current function.
+     */
+    static final int TAIL_CALL = 28;
+    /**
+     * {@code DEFINE_FUNCTION index slot} - put the function whose {@link Chunk} is in the constant pool into
+     * a slot of the function table.
+     */
+    static final int DEFINE_FUNCTION = 29;
+    /**
+     * {@code SPAWN slot argc site} - start a call of the function in a slot of the function table as a task,
+     * and push the handle of the task.
+     */
+    static final int SPAWN = 30;
+    /** {@code ERROR site} - raise a runtime error with the message in the site. */
+    static final int ERROR = 31;
+    /** {@code HALT} - end of the program, or of the call made by a task. */
+    static final int HALT = 32;
+    /** {@code NEW_ARRAY count} - pop the given number of elements and push an array of them. */
+    static final int NEW_ARRAY = 33;
+    /** {@code GET_INDEX site} - pop an index and an array, and push the element of the array at the index. */
+    static final int GET_INDEX = 34;
+    /**
+     * {@code SET_INDEX site} - pop a value, an index and an array, store the value in the array at the index
+     * and push the value.
+     */
+    static final int SET_INDEX = 35;
+    /** {@code NEW_MAP count} - pop the given number of key and value pairs and push a map of them. */
+    static final int NEW_MAP = 36;
+}
@@ -0,0 +1,8 @@
+package org.senthilvsh.saffron.vm;
+
+/**
+ * Source location of an instruction that can fail. Depending on the instruction, the text is either
+ * the complete error message or the operator or function name to be used in it.
+ */
+record Site(String text, int position, int length) {
+}
@@ -0,0 +1,447 @@
+package org.senthilvsh.saffron.vm;
+
+import org.senthilvsh.saffron.ast.NativeFunctionDefinition;
+import org.senthilvsh.saffron.events.ExceptionCaughtEvent;
+import org.senthilvsh.saffron.events.NativeCallEvent;
+import org.senthilvsh.saffron.runtime.*;
+import org.senthilvsh.saffron.stdlib.NativeFunctionsRegistry;
+import org.senthilvsh.saffron.stdlib.task.TaskTable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.senthilvsh.saffron.vm.OpCode.*;
+
+/**
+ * Stack-based virtual machine that executes the bytecode produced by the {@link Compiler}.
+ * <p>
+ * All values other than the global variables live on a single operand stack. The frame of a function
+ * call is a region of that stack holding its arguments and local variables. Saffron function calls do
+ * not use the Java call stack, and a tail call reuses the frame of the function making it instead of
+ * adding a caller. Popped values are not cleared from the stack; a frame is cleared when its function
+ * returns.
+ * <p>
+ * A task started by the program runs on a virtual machine of its own, with its own stack, which shares
+ * the functions and the global variables of the program.
+ */
+public class VirtualMachine {
+    private final Map<String, NativeFunctionDefinition> natives;
+    // The function table of the running program, indexed by the slots of its functions: a Chunk, a
+    // NativeFunctionDefinition or null for a function that has not been defined
+    private AtomicReferenceArray<Object> functions;
+    private final TaskTable tasks;
+    private Object[] globals;
+
+    private Object[] stack = new Object[1024];
+
+    // Saved state of the callers of the current function
+    private Chunk[] callerChunks = new Chunk[64];
+    private int[] callerBases = new int[64];
+    private int[] callerPcs = new int[64];
+    private int callDepth;
+
+    public VirtualMachine() {
+        tasks = new TaskTable();
+        natives = NativeFunctionsRegistry.getAll(tasks);
+    }
+
+    private VirtualMachine(VirtualMachine parent) {
+        tasks = parent.tasks;
+        natives = parent.natives;
+        functions = parent.functions;
+        globals = parent.globals;
+    }
+
+    public void execute(Chunk program) throws RuntimeError {
+        globals = new Object[program.getGlobalCount()];
+        // Functions defined by an earlier run are defined again by this one
+        List<String> names = program.getFunctionNames();
+        functions = new AtomicReferenceArray<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            functions.set(i, natives.get(names.get(i)));
+        }
+        ensureStack(program.getFrameSize() + program.getMaxStack());
+        Arrays.fill(stack, null);
+        callDepth = 0;
+        run(program, program.getFrameSize());
+    }
+
+    /**
+     * Makes a call for a task, on this virtual machine, through a chunk of its own that makes the call
+     * and halts with the result on the stack.
+     */
+    private Object spawned(Object function, Object[] args, int slot, Site site) throws RuntimeError {
+        if (function instanceof NativeFunctionDefinition nfd) {
+            return callNative(nfd, args, 0, args.length);
+        }
+        Chunk call = new Chunk("<task>", List.of(), new int[]{CALL, slot, args.length, 0, HALT},
+                new Object[]{site}, new int[0], 0, 0, List.of(), args.length + 1, 0, 0);
+        ensureStack(args.length + 1);
+        System.arraycopy(args, 0, stack, 0, args.length);
+        return run(call, args.length);
+    }
+
+    /**
+     * Runs a chunk from its start, with the given number of values already on the stack, and returns
+     * the value on the top of the stack when it halts.
+     */
+    private Object run(Chunk program, int sp) throws RuntimeError {
+        Chunk chunk = program;
+        int[] code = chunk.getCode();
+        Object[] constants = chunk.getConstants();
+        Object[] stack = this.stack;
+        Object[] globals = this.globals;
+        int base = 0;
+        int pc = 0;
+
+        int instruction = 0;
+        while (true) {
+            try {
+                while (true) {
+                    instruction = pc;
+                    switch (code[pc++]) {
+                        case CONST -> stack[sp++] = constants[code[pc++]];
+                        case NULL -> stack[sp++] = null;
+                        case POP -> sp--;
+                        case DUP -> {
+                            stack[sp] = stack[sp - 1];
+                            sp++;
+                        }
+                        case LOAD_LOCAL -> {
+                            Object value = stack[base + code[pc]];
+                            if (value == null) {
+                                throw error(constants, code[pc + 1]);
+                            }
+                            pc += 2;
+                            stack[sp++] = value;
+                        }
+                        case LOAD_GLOBAL -> {
+                            Object value = globals[code[pc]];
+                            if (value == null) {
+                                throw error(constants, code[pc + 1]);
+                            }
+                            pc += 2;
+                            stack[sp++] = value;
+                        }
+                        case STORE_LOCAL -> stack[base + code[pc++]] = stack[--sp];
+                        case STORE_GLOBAL -> globals[code[pc++]] = stack[--sp];
+                        case ADD -> {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            // Numbers are the common case, so they skip the generic operator dispatch
+                            stack[sp - 1] = left instanceof Double l && right instanceof Double r
+                                    ? (Object) (l + r)
+                                    : binary(ADD, left, right, constants, code[pc]);
+                            pc++;
+                        }
+                        case SUBTRACT -> {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            stack[sp - 1] = left instanceof Double l && right instanceof Double r
+                                    ? (Object) (l - r)
+                                    : binary(SUBTRACT, left, right, constants, code[pc]);
+                            pc++;
+                        }
+                        case LESS_THAN -> {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            stack[sp - 1] = left instanceof Double l && right instanceof Double r
+                                    ? (Object) (l < r)
+                                    : binary(LESS_THAN, left, right, constants, code[pc]);
+                            pc++;
+                        }
+                        case MULTIPLY, DIVIDE, MODULO, GREATER_THAN, GREATER_THAN_OR_EQUAL,
+                                LESS_THAN_OR_EQUAL, EQUAL, NOT_EQUAL, AND, OR -> {
+                            Object right = stack[--sp];
+                            Object left = stack[sp - 1];
+                            stack[sp - 1] = binary(code[instruction], left, right, constants, code[pc++]);
+                        }
+                        case PLUS, NEGATE, NOT -> stack[sp - 1] = unary(code[instruction], stack[sp - 1], constants, code[pc++]);
+                        case JUMP -> pc = code[pc];
+                        case JUMP_IF_FALSE -> {
+                            Object condition = stack[--sp];
+                            if (!(condition instanceof Boolean b)) {
+                                throw error(constants, code[pc + 1]);
+                            }
+                            pc = b ? pc + 2 : code[pc];
+                        }
+                        case CALL -> {
+                            Object function = functions.get(code[pc++]);
+                            int argc = code[pc++];
+                            int site = code[pc++];
+                            if (!(function instanceof Chunk callee)) {
+                                Object result = callNative(function, stack, sp - argc, argc, constants, site);
+                                Arrays.fill(stack, sp - argc, sp, null);
+                                sp -= argc;
+                                stack[sp++] = result;
+                                break;
+                            }
+                            if (callee.getArgumentCount() != argc) {
+                                throw argumentsError(callee.getArgumentCount(), argc, constants, site);
+                            }
+                            pushCaller(chunk, base, pc);
+                            base = sp - argc;
+                            ensureStack(base + callee.getFrameSize() + callee.getMaxStack());
+                            stack = this.stack;
+                            // Locals start out unassigned
+                            Arrays.fill(stack, sp, base + callee.getFrameSize(), null);
+                            sp = base + callee.getFrameSize();
+                            chunk = callee;
+                            code = chunk.getCode();
+                            constants = chunk.getConstants();
+                            pc = 0;
+                        }
+                        case RETURN -> {
+                            Object result = stack[--sp];
+                            Arrays.fill(stack, base, sp, null);
+                            sp = base;
+                            stack[sp++] = result;
+                            callDepth--;
+                            chunk = callerChunks[callDepth];
+                            base = callerBases[callDepth];
+                            pc = callerPcs[callDepth];
+                            code = chunk.getCode();
+                            constants = chunk.getConstants();
+                        }
+                        case TAIL_CALL -> {
+                            Object function = functions.get(code[pc++]);
+                            int argc = code[pc++];
+                            int site = code[pc++];
+                            if (!(function instanceof Chunk callee)) {
+                                Object result = callNative(function, stack, sp - argc, argc, constants, site);
+                                Arrays.fill(stack, base, sp, null);
+                                sp = base;
+                                stack[sp++] = result;
+                                callDepth--;
+                                chunk = callerChunks[callDepth];
+                                base = callerBases[callDepth];
+                                pc = callerPcs[callDepth];
+                                code = chunk.getCode();
+                                constants = chunk.getConstants();
+                                break;
+                            }
+                            if (callee.getArgumentCount() != argc) {
+                                throw argumentsError(callee.getArgumentCount(), argc, constants, site);
+                            }
+                            // The frame of the current function is reused for the callee, which returns
+                            // straight to the caller of the current function
+                            ensureStack(base + callee.getFrameSize() + callee.getMaxStack());
+                            stack = this.stack;
+                            System.arraycopy(stack, sp - argc, stack, base, argc);
+                            Arrays.fill(stack, base + argc, Math.max(sp, base + callee.getFrameSize()), null);
+                            sp = base + callee.getFrameSize();
+                            chunk = callee;
+                            code = chunk.getCode();
+                            constants = chunk.getConstants();
+                            pc = 0;
+                        }
+                        case DEFINE_FUNCTION -> {
+                            Chunk function = (Chunk) constants[code[pc++]];
+                            if (!functions.compareAndSet(code[pc++], null, function)) {
+                                throw new RuntimeError(
+                                        String.format("Function re-declaration: %s", function.getName()),
+                                        function.getNamePosition(),
+                                        function.getNameLength());
+                            }
+                        }
+                        case SPAWN -> {
+                            int slot = code[pc++];
+                            int argc = code[pc++];
+                            int site = code[pc++];
+                            Object function = functions.get(slot);
+                            checkArguments(function, argc, constants, site);
+                            Object[] args = Arrays.copyOfRange(stack, sp - argc, sp);
+                            Arrays.fill(stack, sp - argc, sp, null);
+                            sp -= argc;
+                            Site callSite = (Site) constants[site];
+                            stack[sp++] = tasks.spawn(() -> new VirtualMachine(this).spawned(function, args, slot, callSite));
+                        }
+                        case NEW_ARRAY -> {
+                            int count = code[pc++];
+                            Object[] elements = Arrays.copyOfRange(stack, sp - count, sp);
+                            Arrays.fill(stack, sp - count, sp, null);
+                            sp -= count;
+                            stack[sp++] = new Array(elements);
+                        }
+                        case NEW_MAP -> {
+                            int count = code[pc++];
+                            Dictionary map = new Dictionary();
+                            for (int i = sp - 2 * count; i < sp; i += 2) {
+                                map.put(stack[i], stack[i + 1]);
+                            }
+                            Arrays.fill(stack, sp - 2 * count, sp, null);
+                            sp -= 2 * count;
+                            stack[sp++] = map;
+                        }
+                        case GET_INDEX -> {
+                            Object index = stack[--sp];
+                            Object array = stack[sp - 1];
+                            if (array instanceof Dictionary map) {
+                                stack[sp - 1] = map.get(index);
+                            } else if (array instanceof Array a && index instanceof Double i) {
+                                stack[sp - 1] = a.get(i);
+                            } else {
+                                throw indexError(array, index, constants, code[pc]);
+                            }
+                            pc++;
+                        }
+                        case SET_INDEX -> {
+                            Object value = stack[--sp];
+                            Object index = stack[--sp];
+                            Object array = stack[sp - 1];
+                            if (array instanceof Dictionary map) {
+                                map.put(index, value);
+                            } else if (array instanceof Array a && index instanceof Double i) {
+                                a.set(i, value);
+                            } else {
+                                throw indexError(array, index, constants, code[pc]);
+                            }
+                            stack[sp - 1] = value;
+                            pc++;
+                        }
+                        case ERROR -> throw error(constants, code[pc]);
+                        case HALT -> {
+                            return sp > 0 ? stack[sp - 1] : null;
+                        }
+                        default -> throw new IllegalStateException("Invalid opcode " + code[instruction]);
+                    }
+                }
+            } catch (NativeFunctionException ex) {
+                // Unwind to the innermost enclosing try block, which may be in a caller
+                int handler = chunk.findHandler(instruction);
+                while (handler < 0) {
+                    if (callDepth == 0) {
+                        throw ex;
+                    }
+                    Arrays.fill(stack, base, sp, null);
+                    sp = base;
+                    callDepth--;
+                    chunk = callerChunks[callDepth];
+                    base = callerBases[callDepth];
+                    // The call instruction is the last one before the return address
+                    instruction = callerPcs[callDepth] - 1;
+                    handler = chunk.findHandler(instruction);
+                }
+                new ExceptionCaughtEvent(ex.getType(), ex.getMessage()).commit();
+                int frameEnd = base + chunk.getFrameSize();
+                Arrays.fill(stack, frameEnd, sp, null);
+                sp = frameEnd;
+                stack[sp++] = ex.getType();
+                stack[sp++] = ex.getMessage();
+                code = chunk.getCode();
+                constants = chunk.getConstants();
+                pc = handler;
+            }
+        }
+    }
+
+    private Object binary(int opCode, Object left, Object right, Object[] constants, int site) throws RuntimeError {
+        try {
+            return switch (opCode) {
+                case ADD -> Operators.add(left, right);
+                case SUBTRACT -> Operators.subtract(left, right);
+                case MULTIPLY -> Operators.multiply(left, right);
+                case DIVIDE -> Operators.divide(left, right);
+                case MODULO -> Operators.modulo(left, right);
+                case GREATER_THAN -> Operators.greaterThan(left, right);
+                case GREATER_THAN_OR_EQUAL -> Operators.greaterThanOrEqual(left, right);
+                case LESS_THAN -> Operators.lessThan(left, right);
+                case LESS_THAN_OR_EQUAL -> Operators.lessThanOrEqual(left, right);
+                case EQUAL -> Operators.equal(left, right);
+                case NOT_EQUAL -> Operators.notEqual(left, right);
+                case AND -> Operators.logicalAnd(left, right);
+                default -> Operators.logicalOr(left, right);
+            };
+        } catch (RuntimeException ex) {
+            Site s = (Site) constants[site];
+            throw new RuntimeError(String.format("Cannot perform operation '%s' on %s and %s", s.text(),
+                    Operators.typeOf(left), Operators.typeOf(right)), s.position(), s.length());
+        }
+    }
+
+    private static RuntimeError indexError(Object array, Object index, Object[] constants, int site) {
+        Site s = (Site) constants[site];
+        return new RuntimeError(String.format("Cannot perform operation '%s' on %s and %s", s.text(),
+                Operators.typeOf(array), Operators.typeOf(index)), s.position(), s.length());
+    }
+
+    private Object unary(int opCode, Object operand, Object[] constants, int site) throws RuntimeError {
+        try {
+            return switch (opCode) {
+                case PLUS -> Operators.plus(operand);
+                case NEGATE -> Operators.negate(operand);
+                default -> Operators.not(operand);
+            };
+        } catch (RuntimeException ex) {
+            Site s = (Site) constants[site];
+            throw new RuntimeError(String.format("Operation '%s' cannot be applied to '%s'", s.text(),
+                    Operators.typeOf(operand)), s.position(), s.length());
+        }
+    }
+
+    /**
+     * Calls a function that is not compiled, which is either a native function or one that has not been
+     * defined.
+     */
+    private Object callNative(Object function, Object[] stack, int from, int argc, Object[] constants, int site)
+            throws RuntimeError {
+        checkArguments(function, argc, constants, site);
+        return callNative((NativeFunctionDefinition) function, stack, from, argc);
+    }
+
+    private Object callNative(NativeFunctionDefinition nfd, Object[] stack, int from, int argc) {
+        NativeCallEvent event = new NativeCallEvent(nfd.getName());
+        event.begin();
+        Object result = nfd.call(Arrays.copyOfRange(stack, from, from + argc));
+        event.commit();
+        return result;
+    }
+
+    /**
+     * Checks that a function has been defined and takes the given number of arguments.
+     */
+    private static void checkArguments(Object function, int argc, Object[] constants, int site)
+            throws RuntimeError {
+        if (function == null) {
+            Site s = (Site) constants[site];
+            throw new RuntimeError(String.format("Undeclared function %s", s.text()), s.position(), s.length());
+        }
+        int count = function instanceof Chunk chunk
+                ? chunk.getArgumentCount()
+                : ((NativeFunctionDefinition) function).getArguments().size();
+        if (argc != count) {
+            throw argumentsError(count, argc, constants, site);
+        }
+    }
+
+    private static RuntimeError argumentsError(int count, int argc, Object[] constants, int site) {
+        Site s = (Site) constants[site];
+        return new RuntimeError(String.format("Function %s takes %d argument(s), but %d were given",
+                s.text(), count, argc), s.position(), s.length());
+    }
+
+    private static RuntimeError error(Object[] constants, int site) {
+        Site s = (Site) constants[site];
+        return new RuntimeError(s.text(), s.position(), s.length());
+    }
+
+    private void pushCaller(Chunk chunk, int base, int pc) {
+        if (callDepth == callerChunks.length) {
+            callerChunks = Arrays.copyOf(callerChunks, callDepth * 2);
+            callerBases = Arrays.copyOf(callerBases, callDepth * 2);
+            callerPcs = Arrays.copyOf(callerPcs, callDepth * 2);
+        }
+        callerChunks[callDepth] = chunk;
+        callerBases[callDepth] = base;
+        callerPcs[callDepth] = pc;
+        callDepth++;
+    }
+
+    private void ensureStack(int size) {
+        if (size > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(stack.length * 2, size));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+#!/bin/sh
+# A file that ends in the middle of a UTF-8 character is read to its end, with the cut-off character
+# read as U+FFFD, both from a buffered file and from a memory-mapped one.
+# usage: file-truncated-utf8.sh [saffron.jar]
+
+jar="${1:-$(dirname "$0")/../../../target/saffron.jar}"
+jar="$(cd "$(dirname "$jar")" && pwd)/$(basename "$jar")"
+dir="$(mktemp -d)"
+trap 'rm -rf "$dir"' EXIT
+
+printf 'abc\n\342\202' > "$dir/small.txt"
+head -c 2000000 /dev/zero | tr '\0' 'x' > "$dir/large.txt"
+printf '\n\342\202' >> "$dir/large.txt"
+
+cat > "$dir/read.sfr" <<'EOF'
+var small = file_open("small.txt", "r");
+while (!file_eof(small)) {
+    writeln(str_length(file_read_line(small)));
+}
+var large = file_open("large.txt", "r");
+while (!file_eof(large)) {
+    writeln(str_length(file_read_line(large)));
+}
+EOF
+
+expected='3.0
+1.0
+2000000.0
+1.0'
+actual="$(cd "$dir" && timeout 30 java -jar "$jar" --no-cache read.sfr)"
+status=$?
+if [ $status -ne 0 ] || [ "$actual" != "$expected" ]; then
+    echo "FAIL (status $status)"
+    echo "$actual"
+    exit 1
+fi
+echo "OK"